@@ -2,10 +2,15 @@ package org.moire.ultrasonic.domain
 
 /**
  * The criteria for a music search.
+ *
+ * Offsets allow to page through the results of the same query.
  */
-data class SearchCriteria(
+data class SearchCriteria @JvmOverloads constructor(
     val query: String,
     val artistCount: Int,
     val albumCount: Int,
-    val songCount: Int
+    val songCount: Int,
+    val artistOffset: Int = 0,
+    val albumOffset: Int = 0,
+    val songOffset: Int = 0
 )
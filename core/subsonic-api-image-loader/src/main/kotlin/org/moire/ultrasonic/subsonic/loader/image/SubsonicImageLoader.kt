@@ -2,6 +2,7 @@ package org.moire.ultrasonic.subsonic.loader.image
 
 import android.content.Context
 import android.widget.ImageView
+import com.squareup.picasso.OkHttp3Downloader
 import com.squareup.picasso.Picasso
 import com.squareup.picasso.RequestCreator
 import org.moire.ultrasonic.api.subsonic.SubsonicAPIClient
@@ -11,6 +12,7 @@ class SubsonicImageLoader(
     apiClient: SubsonicAPIClient
 ) {
     private val picasso = Picasso.Builder(context)
+        .downloader(OkHttp3Downloader(apiClient.okHttpClient))
         .addRequestHandler(CoverArtRequestHandler(apiClient))
         .addRequestHandler(AvatarRequestHandler(apiClient))
         .build().apply { setIndicatorsEnabled(BuildConfig.DEBUG) }
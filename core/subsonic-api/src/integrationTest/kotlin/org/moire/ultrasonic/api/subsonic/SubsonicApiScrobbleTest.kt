@@ -58,4 +58,16 @@ class SubsonicApiScrobbleTest : SubsonicAPIClientTest() {
             client.api.scrobble(id = "some-id", submission = submission).execute()
         }
     }
+
+    @Test
+    fun `Should pass multiple id and time params in request`() {
+        val times = listOf(1000L, 2000L)
+
+        mockWebServerRule.assertRequestParam(
+            responseResourceName = "ping_ok.json",
+            expectedParam = "id=first-id&id=second-id&time=${times[0]}&time=${times[1]}"
+        ) {
+            client.api.scrobble(ids = listOf("first-id", "second-id"), times = times).execute()
+        }
+    }
 }
@@ -144,4 +144,16 @@ class SubsonicApiSearchThreeTest : SubsonicAPIClientTest() {
             client.api.search3("some", musicFolderId = musicFolderId).execute()
         }
     }
+
+    @Test
+    fun `Should pass song offset as request param`() {
+        val songOffset = 30
+
+        mockWebServerRule.assertRequestParam(
+            responseResourceName = "search3_ok.json",
+            expectedParam = "songOffset=$songOffset"
+        ) {
+            client.api.search3("some", songOffset = songOffset).execute()
+        }
+    }
 }
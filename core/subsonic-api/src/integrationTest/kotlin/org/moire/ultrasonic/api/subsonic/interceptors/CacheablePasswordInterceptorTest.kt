@@ -0,0 +1,56 @@
+package org.moire.ultrasonic.api.subsonic.interceptors
+
+import okhttp3.Interceptor
+import okhttp3.mockwebserver.MockResponse
+import org.amshove.kluent.`should contain`
+import org.amshove.kluent.`should not contain`
+import org.amshove.kluent.`should not equal`
+import org.junit.Test
+import org.moire.ultrasonic.api.subsonic.SubsonicAPIVersions
+
+/**
+ * Integration test for [CacheablePasswordInterceptor].
+ */
+class CacheablePasswordInterceptorTest : BaseInterceptorTest() {
+    override val interceptor: Interceptor
+        get() = CacheablePasswordInterceptor(
+            ProxyPasswordInterceptor(
+                SubsonicAPIVersions.V1_16_0,
+                PasswordHexInterceptor("some-password"),
+                PasswordMD5Interceptor("some-password")
+            )
+        )
+
+    @Test
+    fun `Should add new password params to each cover art request`() {
+        mockWebServerRule.mockWebServer.enqueue(MockResponse())
+        mockWebServerRule.mockWebServer.enqueue(MockResponse())
+        val request = createRequest {
+            it.url(mockWebServerRule.mockWebServer.url("/rest/getCoverArt.view?id=1"))
+        }
+
+        client.newCall(request).execute()
+        client.newCall(request).execute()
+
+        val firstRequestLine = mockWebServerRule.mockWebServer.takeRequest().requestLine
+        val secondRequestLine = mockWebServerRule.mockWebServer.takeRequest().requestLine
+        firstRequestLine `should contain` "t="
+        firstRequestLine `should contain` "s="
+        firstRequestLine `should not equal` secondRequestLine
+    }
+
+    @Test
+    fun `Should not add password params to other requests`() {
+        mockWebServerRule.mockWebServer.enqueue(MockResponse())
+        val request = createRequest {
+            it.url(mockWebServerRule.mockWebServer.url("/rest/stream.view?id=1"))
+        }
+
+        client.newCall(request).execute()
+
+        with(mockWebServerRule.mockWebServer.takeRequest()) {
+            requestLine `should not contain` "t="
+            requestLine `should not contain` "s="
+        }
+    }
+}
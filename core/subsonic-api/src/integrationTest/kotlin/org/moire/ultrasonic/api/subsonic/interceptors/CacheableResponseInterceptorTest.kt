@@ -0,0 +1,88 @@
+package org.moire.ultrasonic.api.subsonic.interceptors
+
+import okhttp3.Interceptor
+import okhttp3.mockwebserver.MockResponse
+import org.amshove.kluent.`should be equal to`
+import org.amshove.kluent.`should be`
+import org.junit.Test
+
+/**
+ * Integration test for [CacheableResponseInterceptor].
+ */
+class CacheableResponseInterceptorTest : BaseInterceptorTest() {
+    private val maxAge = 100
+
+    override val interceptor: Interceptor get() = CacheableResponseInterceptor(maxAge)
+
+    @Test
+    fun `Should add cache control header to cover art response`() {
+        mockWebServerRule.mockWebServer.enqueue(
+            MockResponse().setHeader("Content-Type", "image/jpeg")
+        )
+        val request = createRequest {
+            it.url(mockWebServerRule.mockWebServer.url("/rest/getCoverArt.view"))
+        }
+
+        val response = client.newCall(request).execute()
+
+        response.header("Cache-Control") `should be equal to` "max-age=$maxAge"
+    }
+
+    @Test
+    fun `Should keep server cache control header`() {
+        mockWebServerRule.mockWebServer.enqueue(
+            MockResponse().setHeader("Cache-Control", "no-store")
+        )
+        val request = createRequest {
+            it.url(mockWebServerRule.mockWebServer.url("/rest/getCoverArt.view"))
+        }
+
+        val response = client.newCall(request).execute()
+
+        response.header("Cache-Control") `should be equal to` "no-store"
+    }
+
+    @Test
+    fun `Should not add cache control header to cover art error response`() {
+        mockWebServerRule.mockWebServer.enqueue(
+            MockResponse()
+                .setHeader("Content-Type", "application/json")
+                .setBody("{\"subsonic-response\":{\"status\":\"failed\"}}")
+        )
+        val request = createRequest {
+            it.url(mockWebServerRule.mockWebServer.url("/rest/getCoverArt.view"))
+        }
+
+        val response = client.newCall(request).execute()
+
+        response.header("Cache-Control") `should be` null
+    }
+
+    @Test
+    fun `Should not add cache control header to avatar xml error response`() {
+        mockWebServerRule.mockWebServer.enqueue(
+            MockResponse()
+                .setHeader("Content-Type", "text/xml")
+                .setBody("<subsonic-response status=\"failed\"/>")
+        )
+        val request = createRequest {
+            it.url(mockWebServerRule.mockWebServer.url("/rest/getAvatar.view"))
+        }
+
+        val response = client.newCall(request).execute()
+
+        response.header("Cache-Control") `should be` null
+    }
+
+    @Test
+    fun `Should not add cache control header to other responses`() {
+        mockWebServerRule.mockWebServer.enqueue(MockResponse())
+        val request = createRequest {
+            it.url(mockWebServerRule.mockWebServer.url("/rest/stream.view"))
+        }
+
+        val response = client.newCall(request).execute()
+
+        response.header("Cache-Control") `should be` null
+    }
+}
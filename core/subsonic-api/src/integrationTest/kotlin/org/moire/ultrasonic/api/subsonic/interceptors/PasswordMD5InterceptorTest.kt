@@ -5,6 +5,7 @@ import okhttp3.Interceptor
 import okhttp3.mockwebserver.MockResponse
 import org.amshove.kluent.`should contain`
 import org.amshove.kluent.`should not contain`
+import org.amshove.kluent.`should not equal`
 import org.apache.commons.codec.binary.Hex
 import org.junit.Test
 
@@ -39,4 +40,20 @@ class PasswordMD5InterceptorTest : BaseInterceptorTest() {
             requestLine `should contain` "t=$expectedToken"
         }
     }
+
+    @Test
+    fun `Should use new salt for each request`() {
+        mockWebServerRule.mockWebServer.enqueue(MockResponse())
+        mockWebServerRule.mockWebServer.enqueue(MockResponse())
+
+        client.newCall(createRequest { }).execute()
+        client.newCall(createRequest { }).execute()
+
+        val firstSalt = mockWebServerRule.mockWebServer.takeRequest().requestLine.getSalt()
+        val secondSalt = mockWebServerRule.mockWebServer.takeRequest().requestLine.getSalt()
+        firstSalt `should not equal` secondSalt
+    }
+
+    private fun String.getSalt() = split('&', '?').find { it.startsWith("s=") }
+        ?.substringAfter('=')?.substringBefore(" ")
 }
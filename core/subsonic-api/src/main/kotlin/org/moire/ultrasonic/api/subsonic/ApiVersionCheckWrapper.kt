@@ -78,12 +78,14 @@ internal class ApiVersionCheckWrapper(
         albumCount: Int?,
         albumOffset: Int?,
         songCount: Int?,
-        musicFolderId: String?
+        musicFolderId: String?,
+        songOffset: Int?
     ): Call<SearchTwoResponse> {
         checkVersion(V1_4_0)
         checkParamVersion(musicFolderId, V1_12_0)
         return api.search2(
-            query, artistCount, artistOffset, albumCount, albumOffset, songCount, musicFolderId
+            query, artistCount, artistOffset, albumCount, albumOffset, songCount, musicFolderId,
+            songOffset
         )
     }
 
@@ -94,12 +96,14 @@ internal class ApiVersionCheckWrapper(
         albumCount: Int?,
         albumOffset: Int?,
         songCount: Int?,
-        musicFolderId: String?
+        musicFolderId: String?,
+        songOffset: Int?
     ): Call<SearchThreeResponse> {
         checkVersion(V1_8_0)
         checkParamVersion(musicFolderId, V1_12_0)
         return api.search3(
-            query, artistCount, artistOffset, albumCount, albumOffset, songCount, musicFolderId
+            query, artistCount, artistOffset, albumCount, albumOffset, songCount, musicFolderId,
+            songOffset
         )
     }
 
@@ -152,6 +156,15 @@ internal class ApiVersionCheckWrapper(
         return api.scrobble(id, time, submission)
     }
 
+    override fun scrobble(
+        ids: List<String>,
+        times: List<Long>,
+        submission: Boolean?
+    ): Call<SubsonicResponse> {
+        checkVersion(V1_8_0)
+        return api.scrobble(ids, times, submission)
+    }
+
     override fun getAlbumList(
         type: AlbumListType,
         size: Int?,
@@ -12,6 +12,9 @@ import javax.net.ssl.X509TrustManager
 import okhttp3.OkHttpClient
 import okhttp3.ResponseBody
 import okhttp3.logging.HttpLoggingInterceptor
+import org.moire.ultrasonic.api.subsonic.interceptors.CacheablePasswordInterceptor
+import org.moire.ultrasonic.api.subsonic.interceptors.CacheableResponseInterceptor
+import org.moire.ultrasonic.api.subsonic.interceptors.DefaultParamsInterceptor
 import org.moire.ultrasonic.api.subsonic.interceptors.PasswordHexInterceptor
 import org.moire.ultrasonic.api.subsonic.interceptors.PasswordMD5Interceptor
 import org.moire.ultrasonic.api.subsonic.interceptors.ProxyPasswordInterceptor
@@ -32,12 +35,15 @@ private const val READ_TIMEOUT = 60_000L
  * Client will automatically adjust [protocolVersion] to the current server version on
  * doing successful requests.
  *
+ * To share network resources between several clients pass the same [baseOkClient], created by
+ * [SubsonicNetworkConfiguration.createBaseClient].
+ *
  * @author Yahor Berdnikau
  */
 class SubsonicAPIClient(
     config: SubsonicClientConfiguration,
     private val okLogger: HttpLoggingInterceptor.Logger = HttpLoggingInterceptor.Logger.DEFAULT,
-    baseOkClient: OkHttpClient = OkHttpClient.Builder().build()
+    baseOkClient: OkHttpClient = config.network.createBaseClient()
 ) {
     private val versionInterceptor = VersionInterceptor(config.minimalProtocolVersion)
 
@@ -50,31 +56,38 @@ class SubsonicAPIClient(
 
     /**
      * Get currently used protocol version.
+     *
+     * Every response reports the version of the server, so the interceptors and the api wrapper
+     * are only updated when the version actually changes.
      */
+    @Volatile
     var protocolVersion = config.minimalProtocolVersion
         private set(value) {
+            if (field == value) return
             field = value
             proxyPasswordInterceptor.apiVersion = field
             wrappedApi.currentApiVersion = field
             versionInterceptor.protocolVersion = field
         }
 
-    private val okHttpClient = baseOkClient.newBuilder()
+    /**
+     * [OkHttpClient] used for all api calls. It shares dispatcher, connection pool and cache
+     * with the base client, so it should be reused for any other server related traffic.
+     */
+    val okHttpClient: OkHttpClient = baseOkClient.newBuilder()
         .readTimeout(READ_TIMEOUT, MILLISECONDS)
         .apply { if (config.allowSelfSignedCertificate) allowSelfSignedCertificates() }
-        .addInterceptor { chain ->
-            // Adds default request params
-            val originalRequest = chain.request()
-            val newUrl = originalRequest.url().newBuilder()
-                .addQueryParameter("u", config.username)
-                .addQueryParameter("c", config.clientID)
-                .addQueryParameter("f", "json")
-                .build()
-            chain.proceed(originalRequest.newBuilder().url(newUrl).build())
-        }
-        .addInterceptor(versionInterceptor)
-        .addInterceptor(proxyPasswordInterceptor)
+        .addInterceptor(
+            DefaultParamsInterceptor(
+                config.username,
+                config.clientID,
+                versionInterceptor,
+                proxyPasswordInterceptor
+            )
+        )
         .addInterceptor(RangeHeaderInterceptor())
+        .addNetworkInterceptor(CacheablePasswordInterceptor(proxyPasswordInterceptor))
+        .addNetworkInterceptor(CacheableResponseInterceptor(config.network.cacheableMaxAge))
         .apply { if (config.debug) addLogging() }
         .build()
 
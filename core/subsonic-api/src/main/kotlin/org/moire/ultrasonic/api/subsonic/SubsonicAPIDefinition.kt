@@ -110,7 +110,8 @@ interface SubsonicAPIDefinition {
         @Query("albumCount") albumCount: Int? = null,
         @Query("albumOffset") albumOffset: Int? = null,
         @Query("songCount") songCount: Int? = null,
-        @Query("musicFolderId") musicFolderId: String? = null
+        @Query("musicFolderId") musicFolderId: String? = null,
+        @Query("songOffset") songOffset: Int? = null
     ): Call<SearchTwoResponse>
 
     @GET("search3.view")
@@ -121,7 +122,8 @@ interface SubsonicAPIDefinition {
         @Query("albumCount") albumCount: Int? = null,
         @Query("albumOffset") albumOffset: Int? = null,
         @Query("songCount") songCount: Int? = null,
-        @Query("musicFolderId") musicFolderId: String? = null
+        @Query("musicFolderId") musicFolderId: String? = null,
+        @Query("songOffset") songOffset: Int? = null
     ): Call<SearchThreeResponse>
 
     @GET("getPlaylist.view")
@@ -170,6 +172,13 @@ interface SubsonicAPIDefinition {
         @Query("submission") submission: Boolean? = null
     ): Call<SubsonicResponse>
 
+    @GET("scrobble.view")
+    fun scrobble(
+        @Query("id") ids: List<String>,
+        @Query("time") times: List<Long>,
+        @Query("submission") submission: Boolean? = null
+    ): Call<SubsonicResponse>
+
     @GET("getAlbumList.view")
     fun getAlbumList(
         @Query("type") type: AlbumListType,
@@ -0,0 +1,67 @@
+package org.moire.ultrasonic.api.subsonic
+
+import java.io.File
+import java.util.concurrent.TimeUnit.MILLISECONDS
+import okhttp3.Cache
+import okhttp3.ConnectionPool
+import okhttp3.Dispatcher
+import okhttp3.OkHttpClient
+import okhttp3.Protocol
+
+private const val DEFAULT_MAX_REQUESTS = 64
+private const val DEFAULT_MAX_REQUESTS_PER_HOST = 5
+private const val DEFAULT_MAX_IDLE_CONNECTIONS = 5
+private const val DEFAULT_KEEP_ALIVE_DURATION = 5 * 60 * 1000L
+private const val DEFAULT_CACHE_SIZE = 50L * 1024 * 1024
+private const val DEFAULT_CACHEABLE_MAX_AGE = 7 * 24 * 60 * 60
+
+/**
+ * Provides network tuning for [SubsonicAPIClient].
+ *
+ * Clients created from the same [OkHttpClient] returned by [createBaseClient] share one
+ * dispatcher, connection pool and disk cache, so REST, stream and image traffic are limited
+ * together.
+ *
+ * @param maxRequests maximum number of concurrently executing requests
+ * @param maxRequestsPerHost maximum number of concurrently executing requests to one server
+ * @param maxIdleConnections maximum number of idle connections kept in the pool
+ * @param keepAliveDuration time in millis to keep idle connection in the pool
+ * @param enableHttp2 use HTTP/2 where server supports it, otherwise only HTTP/1.1 is used
+ * @param cacheDirectory directory for http response cache, `null` disables the cache
+ * @param cacheSize maximum size in bytes of the http response cache
+ * @param cacheableMaxAge max age in seconds applied to cacheable responses, such as cover art,
+ * that server returned without any caching headers
+ */
+data class SubsonicNetworkConfiguration(
+    val maxRequests: Int = DEFAULT_MAX_REQUESTS,
+    val maxRequestsPerHost: Int = DEFAULT_MAX_REQUESTS_PER_HOST,
+    val maxIdleConnections: Int = DEFAULT_MAX_IDLE_CONNECTIONS,
+    val keepAliveDuration: Long = DEFAULT_KEEP_ALIVE_DURATION,
+    val enableHttp2: Boolean = true,
+    val cacheDirectory: File? = null,
+    val cacheSize: Long = DEFAULT_CACHE_SIZE,
+    val cacheableMaxAge: Int = DEFAULT_CACHEABLE_MAX_AGE
+) {
+    /**
+     * Creates base [OkHttpClient] that should be shared between all [SubsonicAPIClient]s.
+     */
+    fun createBaseClient(): OkHttpClient = OkHttpClient.Builder()
+        .dispatcher(
+            Dispatcher().also {
+                it.maxRequests = maxRequests
+                it.maxRequestsPerHost = maxRequestsPerHost
+            }
+        )
+        .connectionPool(
+            ConnectionPool(maxIdleConnections, keepAliveDuration, MILLISECONDS)
+        )
+        .protocols(
+            if (enableHttp2) {
+                listOf(Protocol.HTTP_2, Protocol.HTTP_1_1)
+            } else {
+                listOf(Protocol.HTTP_1_1)
+            }
+        )
+        .apply { if (cacheDirectory != null) cache(Cache(cacheDirectory, cacheSize)) }
+        .build()
+}
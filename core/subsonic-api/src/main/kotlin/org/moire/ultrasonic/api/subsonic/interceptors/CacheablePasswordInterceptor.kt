@@ -0,0 +1,25 @@
+package org.moire.ultrasonic.api.subsonic.interceptors
+
+import okhttp3.Interceptor
+import okhttp3.Interceptor.Chain
+import okhttp3.Response
+
+/**
+ * Network [Interceptor] that adds password params from [passwordInterceptor] to cacheable
+ * requests, see [isCacheable].
+ *
+ * Network interceptors run after the http cache, so the cache key of these requests doesn't
+ * contain the password params, and the cache hits although every request gets a new salt.
+ */
+internal class CacheablePasswordInterceptor(
+    private val passwordInterceptor: ProxyPasswordInterceptor
+) : Interceptor {
+    override fun intercept(chain: Chain): Response {
+        val request = chain.request()
+        if (!request.isCacheable()) return chain.proceed(request)
+
+        val urlBuilder = request.url().newBuilder()
+        passwordInterceptor.addPasswordParams(urlBuilder)
+        return chain.proceed(request.newBuilder().url(urlBuilder.build()).build())
+    }
+}
@@ -0,0 +1,42 @@
+package org.moire.ultrasonic.api.subsonic.interceptors
+
+import okhttp3.Interceptor
+import okhttp3.Interceptor.Chain
+import okhttp3.Request
+import okhttp3.Response
+
+private val cacheablePaths = listOf("getCoverArt.view", "getAvatar.view")
+
+/**
+ * Checks if request is a GET for the content that doesn't change over time, like cover art.
+ */
+internal fun Request.isCacheable(): Boolean =
+    method() == "GET" && url().pathSegments().lastOrNull() in cacheablePaths
+
+/**
+ * Network [Interceptor] that allows http cache to store cacheable responses,
+ * see [isCacheable], that server returned without any caching headers.
+ *
+ * Only images are made cacheable. Servers report a missing or denied image with a successful
+ * response containing a json or xml error, which mustn't be served from the cache later.
+ */
+internal class CacheableResponseInterceptor(private val maxAge: Int) : Interceptor {
+    override fun intercept(chain: Chain): Response {
+        val request = chain.request()
+        val response = chain.proceed(request)
+        return if (
+            request.isCacheable() &&
+            response.isSuccessful &&
+            response.body()?.contentType()?.type() == "image" &&
+            response.header("Cache-Control") == null &&
+            response.header("Expires") == null
+        ) {
+            response.newBuilder()
+                .removeHeader("Pragma")
+                .header("Cache-Control", "max-age=$maxAge")
+                .build()
+        } else {
+            response
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package org.moire.ultrasonic.api.subsonic.interceptors
+
+import okhttp3.Interceptor
+import okhttp3.Interceptor.Chain
+import okhttp3.Response
+
+/**
+ * Adds default request params: [username], [clientID], response format, protocol version
+ * from [versionInterceptor] and password from [passwordInterceptor].
+ *
+ * All params are added with a single request url rebuild. Cacheable requests get the password
+ * params only from [CacheablePasswordInterceptor] after the http cache, so the password never
+ * becomes a part of a cache key.
+ */
+internal class DefaultParamsInterceptor(
+    private val username: String,
+    private val clientID: String,
+    private val versionInterceptor: VersionInterceptor,
+    private val passwordInterceptor: ProxyPasswordInterceptor
+) : Interceptor {
+    override fun intercept(chain: Chain): Response {
+        val originalRequest = chain.request()
+        val urlBuilder = originalRequest.url().newBuilder()
+            .addQueryParameter("u", username)
+            .addQueryParameter("c", clientID)
+            .addEncodedQueryParameter("f", "json")
+        versionInterceptor.addVersionParam(urlBuilder)
+        if (!originalRequest.isCacheable()) passwordInterceptor.addPasswordParams(urlBuilder)
+
+        return chain.proceed(originalRequest.newBuilder().url(urlBuilder.build()).build())
+    }
+}
@@ -2,6 +2,7 @@
 package org.moire.ultrasonic.api.subsonic.interceptors
 
 private val hexCharsArray = "0123456789ABCDEF".toCharArray()
+private val lowerHexCharsArray = "0123456789abcdef".toCharArray()
 
 /**
  * Converts string to hex representation.
@@ -11,12 +12,23 @@ fun String.toHexBytes(): String = this.toByteArray().toHexBytes()
 /**
  * Converts given [ByteArray] to corresponding hex chars representation.
  */
-fun ByteArray.toHexBytes(): String {
-    val hexChars = CharArray(this.size * 2)
-    for (j in 0..this.lastIndex) {
-        val v = this[j].toInt().and(0xFF)
-        hexChars[j * 2] = hexCharsArray[v.ushr(4)]
-        hexChars[j * 2 + 1] = hexCharsArray[v.and(0x0F)]
+fun ByteArray.toHexBytes(): String = toHexBytes(hexCharsArray, 0, size)
+
+/**
+ * Converts [length] bytes of given [ByteArray] starting from [offset] to corresponding
+ * lower case hex chars representation.
+ */
+fun ByteArray.toLowerHexBytes(
+    offset: Int = 0,
+    length: Int = size - offset
+): String = toHexBytes(lowerHexCharsArray, offset, length)
+
+private fun ByteArray.toHexBytes(chars: CharArray, offset: Int, length: Int): String {
+    val hexChars = CharArray(length * 2)
+    for (j in 0 until length) {
+        val v = this[offset + j].toInt().and(0xFF)
+        hexChars[j * 2] = chars[v.ushr(4)]
+        hexChars[j * 2 + 1] = chars[v.and(0x0F)]
     }
     return String(hexChars)
 }
@@ -1,6 +1,7 @@
 package org.moire.ultrasonic.api.subsonic.interceptors
 
 import kotlin.LazyThreadSafetyMode.NONE
+import okhttp3.HttpUrl
 import okhttp3.Interceptor
 import okhttp3.Interceptor.Chain
 import okhttp3.Response
@@ -19,7 +20,15 @@ class PasswordHexInterceptor(private val password: String) : Interceptor {
     override fun intercept(chain: Chain): Response {
         val originalRequest = chain.request()
         val updatedUrl = originalRequest.url().newBuilder()
-            .addEncodedQueryParameter("p", passwordHex).build()
+            .also { addPasswordParams(it) }
+            .build()
         return chain.proceed(originalRequest.newBuilder().url(updatedUrl).build())
     }
+
+    /**
+     * Adds hex encoded password param to the given [urlBuilder].
+     */
+    internal fun addPasswordParams(urlBuilder: HttpUrl.Builder) {
+        urlBuilder.addEncodedQueryParameter("p", passwordHex)
+    }
 }
@@ -3,43 +3,75 @@ package org.moire.ultrasonic.api.subsonic.interceptors
 import java.security.MessageDigest
 import java.security.NoSuchAlgorithmException
 import java.security.SecureRandom
-import java.util.Locale
+import okhttp3.HttpUrl
 import okhttp3.Interceptor
 import okhttp3.Interceptor.Chain
 import okhttp3.Response
 
+private const val SALT_SIZE = 16
+private const val TOKEN_BATCH_SIZE = 32
+
 /**
  * Adds password param as MD5 hash with random salt. Salt is also added as a param.
  *
+ * Salts and their tokens are generated in batches of [TOKEN_BATCH_SIZE], so single request
+ * only takes next pre-computed pair from the pool.
+ *
  * Should be enabled for requests against [org.moire.ultrasonic.api.subsonic.SubsonicAPIVersions.V1_13_0]
  * and above.
  */
-class PasswordMD5Interceptor(private val password: String) : Interceptor {
+class PasswordMD5Interceptor(password: String) : Interceptor {
+    private val passwordBytes = password.toByteArray(Charsets.UTF_8)
     private val secureRandom = SecureRandom()
-    private val saltBytes = ByteArray(16)
+    private val md5Digest = createMD5Digest()
+    private val saltBytes = ByteArray(SALT_SIZE * TOKEN_BATCH_SIZE)
+    private val salts = arrayOfNulls<String>(TOKEN_BATCH_SIZE)
+    private val tokens = arrayOfNulls<String>(TOKEN_BATCH_SIZE)
+    private var nextTokenIndex = TOKEN_BATCH_SIZE
 
     override fun intercept(chain: Chain): Response {
         val originalRequest = chain.request()
-        val salt = getSalt()
         val updatedUrl = originalRequest.url().newBuilder()
-            .addQueryParameter("t", getPasswordMD5Hash(salt))
-            .addQueryParameter("s", salt)
+            .also { addPasswordParams(it) }
             .build()
 
         return chain.proceed(originalRequest.newBuilder().url(updatedUrl).build())
     }
 
-    private fun getSalt(): String {
+    /**
+     * Adds token and salt params to the given [urlBuilder].
+     *
+     * Both values are lower case hex strings, so they are added as already encoded.
+     */
+    internal fun addPasswordParams(urlBuilder: HttpUrl.Builder) {
+        synchronized(this) {
+            if (nextTokenIndex == TOKEN_BATCH_SIZE) fillTokenPool()
+            urlBuilder
+                .addEncodedQueryParameter("t", tokens[nextTokenIndex])
+                .addEncodedQueryParameter("s", salts[nextTokenIndex])
+            nextTokenIndex++
+        }
+    }
+
+    private fun fillTokenPool() {
         secureRandom.nextBytes(saltBytes)
-        return saltBytes.toHexBytes()
+        for (i in 0 until TOKEN_BATCH_SIZE) {
+            val salt = saltBytes.toLowerHexBytes(i * SALT_SIZE, SALT_SIZE)
+            salts[i] = salt
+            tokens[i] = createToken(md5Digest, salt)
+        }
+        nextTokenIndex = 0
+    }
+
+    private fun createToken(digest: MessageDigest, salt: String): String {
+        digest.update(passwordBytes)
+        digest.update(salt.toByteArray(Charsets.US_ASCII))
+        return digest.digest().toLowerHexBytes()
     }
 
-    private fun getPasswordMD5Hash(salt: String): String {
+    private fun createMD5Digest(): MessageDigest {
         try {
-            val md5Digest = MessageDigest.getInstance("MD5")
-            return md5Digest.digest(
-                "$password$salt".toByteArray()
-            ).toHexBytes().toLowerCase(Locale.getDefault())
+            return MessageDigest.getInstance("MD5")
         } catch (e: NoSuchAlgorithmException) {
             throw IllegalStateException(e)
         }
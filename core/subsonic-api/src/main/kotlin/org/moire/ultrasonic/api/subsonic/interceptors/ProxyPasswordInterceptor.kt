@@ -1,5 +1,6 @@
 package org.moire.ultrasonic.api.subsonic.interceptors
 
+import okhttp3.HttpUrl
 import okhttp3.Interceptor
 import okhttp3.Interceptor.Chain
 import okhttp3.Response
@@ -20,9 +21,21 @@ internal class ProxyPasswordInterceptor(
     var apiVersion: SubsonicAPIVersions = initialAPIVersions
 
     override fun intercept(chain: Chain): Response =
-        if (apiVersion < SubsonicAPIVersions.V1_13_0 || forceHexPassword) {
+        if (useHexPassword()) {
             hexInterceptor.intercept(chain)
         } else {
             mD5Interceptor.intercept(chain)
         }
+
+    /**
+     * Adds password params of the currently used interceptor to the given [urlBuilder].
+     */
+    fun addPasswordParams(urlBuilder: HttpUrl.Builder) =
+        if (useHexPassword()) {
+            hexInterceptor.addPasswordParams(urlBuilder)
+        } else {
+            mD5Interceptor.addPasswordParams(urlBuilder)
+        }
+
+    private fun useHexPassword() = apiVersion < SubsonicAPIVersions.V1_13_0 || forceHexPassword
 }
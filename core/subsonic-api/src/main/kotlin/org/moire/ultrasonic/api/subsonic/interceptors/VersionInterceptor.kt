@@ -1,5 +1,6 @@
 package org.moire.ultrasonic.api.subsonic.interceptors
 
+import okhttp3.HttpUrl
 import okhttp3.Interceptor
 import okhttp3.Interceptor.Chain
 import org.moire.ultrasonic.api.subsonic.SubsonicAPIVersions
@@ -20,11 +21,18 @@ internal class VersionInterceptor(
                 originalRequest
                     .url()
                     .newBuilder()
-                    .addQueryParameter("v", protocolVersion.restApiVersion)
+                    .also { addVersionParam(it) }
                     .build()
             )
             .build()
 
         return chain.proceed(newRequest)
     }
+
+    /**
+     * Adds client supported version param to the given [urlBuilder].
+     */
+    fun addVersionParam(urlBuilder: HttpUrl.Builder) {
+        urlBuilder.addEncodedQueryParameter("v", protocolVersion.restApiVersion)
+    }
 }
@@ -2,6 +2,7 @@ package org.moire.ultrasonic.api.subsonic.interceptors
 
 import com.nhaarman.mockito_kotlin.mock
 import com.nhaarman.mockito_kotlin.verify
+import okhttp3.HttpUrl
 import okhttp3.Interceptor.Chain
 import org.junit.Test
 import org.moire.ultrasonic.api.subsonic.SubsonicAPIVersions.V1_12_0
@@ -48,4 +49,14 @@ class ProxyPasswordInterceptorTest {
 
         verify(mockPasswordHexInterceptor).intercept(mockChain)
     }
+
+    @Test
+    fun `Should add md5 password params on version 1 13 0`() {
+        val urlBuilder = mock<HttpUrl.Builder>()
+        proxyInterceptor.apiVersion = V1_13_0
+
+        proxyInterceptor.addPasswordParams(urlBuilder)
+
+        verify(mockPasswordMd5Interceptor).addPasswordParams(urlBuilder)
+    }
 }
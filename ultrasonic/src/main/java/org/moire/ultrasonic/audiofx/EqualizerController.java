@@ -19,7 +19,6 @@
 package org.moire.ultrasonic.audiofx;
 
 import android.content.Context;
-import android.media.MediaPlayer;
 import android.media.audiofx.Equalizer;
 
 import androidx.lifecycle.LiveData;
@@ -28,8 +27,11 @@ import androidx.lifecycle.MutableLiveData;
 import timber.log.Timber;
 
 import org.moire.ultrasonic.util.FileUtil;
+import org.moire.ultrasonic.util.TaskExecutors;
 
 import java.io.Serializable;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Backward-compatible wrapper for {@link Equalizer}, which is API Level 9.
@@ -39,6 +41,7 @@ import java.io.Serializable;
  */
 public class EqualizerController
 {
+	private static final long SAVE_DELAY_MILLIS = 1000;
 	private static Boolean available = null;
 	private static final MutableLiveData<EqualizerController> instance = new MutableLiveData<>();
 
@@ -46,6 +49,11 @@ public class EqualizerController
 	public Equalizer equalizer;
 	private int audioSessionId;
 
+	// Only accessed while holding the saveLock
+	private final Object saveLock = new Object();
+	private Future<?> pendingSave;
+	private boolean isReleased;
+
 	/**
 	 * Retrieves the EqualizerController as LiveData
 	 */
@@ -55,11 +63,10 @@ public class EqualizerController
 	}
 
 	/**
-	 * Initializes the EqualizerController instance with a MediaPlayer
+	 * Initializes the EqualizerController instance with the audio session of the media players
 	 */
-	public static void create(Context context, MediaPlayer mediaPlayer)
+	public static void create(Context context, int audioSessionId)
 	{
-		if (mediaPlayer == null) return;
 		if (!isAvailable()) return;
 
 		EqualizerController controller = new EqualizerController();
@@ -67,7 +74,7 @@ public class EqualizerController
 
 		try
 		{
-			controller.audioSessionId = mediaPlayer.getAudioSessionId();
+			controller.audioSessionId = audioSessionId;
 			controller.equalizer = new Equalizer(0, controller.audioSessionId);
 			controller.loadSettings();
 
@@ -87,6 +94,7 @@ public class EqualizerController
 		EqualizerController controller = instance.getValue();
 		if (controller == null) return;
 
+		controller.flushSettings();
 		controller.equalizer.release();
 		instance.postValue(null);
 	}
@@ -110,17 +118,69 @@ public class EqualizerController
 		return available;
 	}
 
+	/**
+	 * Saves the settings shortly after the last change, so a series of changes
+	 * (e.g. dragging a band) is written to the file only once, in the background
+	 */
 	public void saveSettings()
 	{
 		if (!available) return;
+		synchronized (saveLock)
+		{
+			if (isReleased) return;
+			if (pendingSave != null) pendingSave.cancel(false);
+			pendingSave = TaskExecutors.scheduler.schedule(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					synchronized (saveLock)
+					{
+						if (pendingSave != null && !isReleased) saveSettingsNow();
+					}
+				}
+			}, SAVE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	// Saves a pending change before the equalizer is released
+	private void flushSettings()
+	{
+		synchronized (saveLock)
+		{
+			if (pendingSave != null)
+			{
+				pendingSave.cancel(false);
+				saveSettingsNow();
+			}
+			isReleased = true;
+		}
+	}
+
+	// Called while holding the saveLock. The settings are read from the equalizer here,
+	// only the file is written on the io thread
+	private void saveSettingsNow()
+	{
+		pendingSave = null;
+		final EqualizerSettings settings;
 		try
 		{
-			FileUtil.serialize(context, new EqualizerSettings(equalizer), "equalizer.dat");
+			settings = new EqualizerSettings(equalizer);
 		}
 		catch (Throwable x)
 		{
 			Timber.w(x, "Failed to save equalizer settings.");
+			return;
 		}
+
+		TaskExecutors.executeOrDefer(TaskExecutors.io, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				FileUtil.serialize(context, settings, "equalizer.dat");
+			}
+		});
 	}
 
 	public void loadSettings()
@@ -18,7 +18,6 @@
  */
 package org.moire.ultrasonic.audiofx;
 
-import android.media.MediaPlayer;
 import android.media.audiofx.Visualizer;
 
 import androidx.lifecycle.LiveData;
@@ -50,18 +49,18 @@ public class VisualizerController
 	}
 
 	/**
-	 * Initializes the VisualizerController instance with a MediaPlayer
+	 * Initializes the VisualizerController instance with the audio session of the media players.
+	 * The visualizer stays disabled until a view captures from it.
 	 */
-	public static void create(MediaPlayer mediaPlayer)
+	public static void create(int audioSessionId)
 	{
-		if (mediaPlayer == null) return;
 		if (!isAvailable()) return;
 
 		VisualizerController controller = new VisualizerController();
 
 		try
 		{
-			controller.audioSessionId = mediaPlayer.getAudioSessionId();
+			controller.audioSessionId = audioSessionId;
 			controller.visualizer = new Visualizer(controller.audioSessionId);
 
 			int[] captureSizeRange = Visualizer.getCaptureSizeRange();
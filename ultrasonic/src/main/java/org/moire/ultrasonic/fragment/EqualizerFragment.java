@@ -124,6 +124,7 @@ public class EqualizerFragment extends Fragment {
         {
             short preset = (short) menuItem.getItemId();
             equalizer.usePreset(preset);
+            equalizerController.saveSettings();
             updateBars();
         }
         catch (Exception ex)
@@ -164,6 +165,7 @@ public class EqualizerFragment extends Fragment {
     {
         if (equalizer == null) return;
         equalizer.setEnabled(enabled);
+        equalizerController.saveSettings();
         updateBars();
     }
 
@@ -233,6 +235,7 @@ public class EqualizerFragment extends Fragment {
                                 try
                                 {
                                     equalizer.setBandLevel(band, level);
+                                    equalizerController.saveSettings();
                                 }
                                 catch (Exception ex)
                                 {
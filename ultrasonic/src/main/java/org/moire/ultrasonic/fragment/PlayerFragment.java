@@ -47,15 +47,18 @@ import org.moire.ultrasonic.domain.RepeatMode;
 import org.moire.ultrasonic.featureflags.Feature;
 import org.moire.ultrasonic.featureflags.FeatureStorage;
 import org.moire.ultrasonic.service.DownloadFile;
+import org.moire.ultrasonic.service.JukeboxMediaPlayer;
 import org.moire.ultrasonic.service.MediaPlayerController;
 import org.moire.ultrasonic.service.MusicService;
 import org.moire.ultrasonic.service.MusicServiceFactory;
+import org.moire.ultrasonic.service.PositionClock;
 import org.moire.ultrasonic.subsonic.ImageLoaderProvider;
 import org.moire.ultrasonic.subsonic.NetworkAndStorageChecker;
 import org.moire.ultrasonic.subsonic.ShareHandler;
 import org.moire.ultrasonic.util.CancellationToken;
 import org.moire.ultrasonic.util.Constants;
 import org.moire.ultrasonic.util.SilentBackgroundTask;
+import org.moire.ultrasonic.util.TaskExecutors;
 import org.moire.ultrasonic.util.Util;
 import org.moire.ultrasonic.view.AutoRepeatButton;
 import org.moire.ultrasonic.view.SongListAdapter;
@@ -68,9 +71,6 @@ import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
 import kotlin.Lazy;
 import timber.log.Timber;
@@ -105,7 +105,6 @@ public class PlayerFragment extends Fragment implements GestureDetector.OnGestur
     private View stopButton;
     private View startButton;
     private ImageView repeatButton;
-    private ScheduledExecutorService executorService;
     private DownloadFile currentPlaying;
     private MusicDirectory.Entry currentSong;
     private long currentRevision;
@@ -115,7 +114,6 @@ public class PlayerFragment extends Fragment implements GestureDetector.OnGestur
     private int swipeVelocity;
     private VisualizerView visualizerView;
     private boolean jukeboxAvailable;
-    private SilentBackgroundTask<Void> onProgressChangedTask;
     LinearLayout visualizerViewLayout;
     private MenuItem starMenuItem;
     private ImageView fiveStar1ImageView;
@@ -131,8 +129,19 @@ public class PlayerFragment extends Fragment implements GestureDetector.OnGestur
     private boolean isEqualizerAvailable;
     private boolean isVisualizerAvailable;
 
+    private final PositionClock.Listener positionListener = new PositionClock.Listener()
+    {
+        @Override
+        public void onTick(int position, int duration)
+        {
+            update(cancellationToken);
+        }
+    };
+
     private final Lazy<NetworkAndStorageChecker> networkAndStorageChecker = inject(NetworkAndStorageChecker.class);
     private final Lazy<MediaPlayerController> mediaPlayerControllerLazy = inject(MediaPlayerController.class);
+    private final Lazy<JukeboxMediaPlayer> jukeboxMediaPlayer = inject(JukeboxMediaPlayer.class);
+    private final Lazy<PositionClock> positionClock = inject(PositionClock.class);
     private final Lazy<ShareHandler> shareHandler = inject(ShareHandler.class);
     private final Lazy<ImageLoaderProvider> imageLoaderProvider = inject(ImageLoaderProvider.class);
 
@@ -533,7 +542,22 @@ public class PlayerFragment extends Fragment implements GestureDetector.OnGestur
                         @Override
                         public boolean onTouch(final View view, final MotionEvent motionEvent)
                         {
-                            visualizerView.setActive(!visualizerView.isActive());
+                            if (motionEvent.getAction() != MotionEvent.ACTION_UP) return true;
+
+                            // Tapping cycles through the waveform, the spectrum and off
+                            if (!visualizerView.isActive())
+                            {
+                                visualizerView.setMode(VisualizerView.Mode.WAVEFORM);
+                                visualizerView.setActive(true);
+                            }
+                            else if (visualizerView.getMode() == VisualizerView.Mode.WAVEFORM)
+                            {
+                                visualizerView.setMode(VisualizerView.Mode.SPECTRUM);
+                            }
+                            else
+                            {
+                                visualizerView.setActive(false);
+                            }
                             mediaPlayerControllerLazy.getValue().setShowVisualization(visualizerView.isActive());
                             return true;
                         }
@@ -560,7 +584,7 @@ public class PlayerFragment extends Fragment implements GestureDetector.OnGestur
             }
         });
 
-        new Thread(new Runnable()
+        TaskExecutors.executeOrDefer(TaskExecutors.io, new Runnable()
         {
             @Override
             public void run()
@@ -575,7 +599,7 @@ public class PlayerFragment extends Fragment implements GestureDetector.OnGestur
                     Timber.e(e);
                 }
             }
-        }).start();
+        });
 
         view.setOnTouchListener(new View.OnTouchListener() {
             @Override
@@ -603,26 +627,7 @@ public class PlayerFragment extends Fragment implements GestureDetector.OnGestur
             onCurrentChanged();
         }
 
-
-        final Handler handler = new Handler();
-        final Runnable runnable = new Runnable()
-        {
-            @Override
-            public void run()
-            {
-                handler.post(new Runnable()
-                {
-                    @Override
-                    public void run()
-                    {
-                        update(cancellationToken);
-                    }
-                });
-            }
-        };
-
-        executorService = Executors.newSingleThreadScheduledExecutor();
-        executorService.scheduleWithFixedDelay(runnable, 0L, 250L, TimeUnit.MILLISECONDS);
+        positionClock.getValue().subscribe(positionListener, 250L, 1000L, new Handler());
 
         if (mediaPlayerController != null && mediaPlayerController.getKeepScreenOn())
         {
@@ -675,7 +680,7 @@ public class PlayerFragment extends Fragment implements GestureDetector.OnGestur
     public void onPause()
     {
         super.onPause();
-        executorService.shutdown();
+        positionClock.getValue().unsubscribe(positionListener);
 
         if (visualizerView != null)
         {
@@ -991,7 +996,7 @@ public class PlayerFragment extends Fragment implements GestureDetector.OnGestur
                 currentSong.setStarred(true);
             }
 
-            new Thread(new Runnable() {
+            TaskExecutors.executeOrDefer(TaskExecutors.io, new Runnable() {
                 @Override
                 public void run() {
                     final MusicService musicService = MusicServiceFactory.getMusicService(getContext());
@@ -1006,7 +1011,7 @@ public class PlayerFragment extends Fragment implements GestureDetector.OnGestur
                         Timber.e(e);
                     }
                 }
-            }).start();
+            });
 
             return true;
         } else if (menuItemId == R.id.menu_item_bookmark_set) {
@@ -1021,7 +1026,7 @@ public class PlayerFragment extends Fragment implements GestureDetector.OnGestur
 
             String bookmarkTime = Util.formatTotalDuration(playerPosition, true);
 
-            new Thread(new Runnable() {
+            TaskExecutors.executeOrDefer(TaskExecutors.io, new Runnable() {
                 @Override
                 public void run() {
                     final MusicService musicService = MusicServiceFactory.getMusicService(getContext());
@@ -1032,7 +1037,7 @@ public class PlayerFragment extends Fragment implements GestureDetector.OnGestur
                         Timber.e(e);
                     }
                 }
-            }).start();
+            });
 
             String msg = getResources().getString(R.string.download_bookmark_set_at_position, bookmarkTime);
 
@@ -1047,7 +1052,7 @@ public class PlayerFragment extends Fragment implements GestureDetector.OnGestur
             final String bookmarkSongId = currentSong.getId();
             currentSong.setBookmarkPosition(0);
 
-            new Thread(new Runnable() {
+            TaskExecutors.executeOrDefer(TaskExecutors.io, new Runnable() {
                 @Override
                 public void run() {
                     final MusicService musicService = MusicServiceFactory.getMusicService(getContext());
@@ -1058,7 +1063,7 @@ public class PlayerFragment extends Fragment implements GestureDetector.OnGestur
                         Timber.e(e);
                     }
                 }
-            }).start();
+            });
 
             Util.toast(getContext(), R.string.download_bookmark_removed);
 
@@ -1323,120 +1328,108 @@ public class PlayerFragment extends Fragment implements GestureDetector.OnGestur
 
     private void onSliderProgressChanged()
     {
-        MediaPlayerController mediaPlayerController = mediaPlayerControllerLazy.getValue();
+        final MediaPlayerController mediaPlayerController = mediaPlayerControllerLazy.getValue();
 
-        if (mediaPlayerController == null || onProgressChangedTask != null)
+        if (mediaPlayerController == null || cancellationToken.isCancellationRequested())
         {
             return;
         }
 
-        onProgressChangedTask = new SilentBackgroundTask<Void>(getActivity())
-        {
-            MediaPlayerController mediaPlayerController;
-            boolean isJukeboxEnabled;
-            int millisPlayed;
-            Integer duration;
-            PlayerState playerState;
+        // The position is read from the clock, so the UI thread never waits for the player
+        final boolean isJukeboxEnabled = mediaPlayerController.isJukeboxEnabled();
+        final PlayerState playerState = mediaPlayerController.getPlayerState();
+        final int millisPlayed = Math.max(0, getPlayerPosition(playerState, isJukeboxEnabled));
+        final int millisTotal = positionClock.getValue().getDuration();
 
-            @Override
-            protected Void doInBackground()
-            {
-                this.mediaPlayerController = mediaPlayerControllerLazy.getValue();
-                isJukeboxEnabled = this.mediaPlayerController.isJukeboxEnabled();
-                millisPlayed = Math.max(0, this.mediaPlayerController.getPlayerPosition());
-                duration = this.mediaPlayerController.getPlayerDuration();
-                playerState = mediaPlayerControllerLazy.getValue().getPlayerState();
-                return null;
-            }
+        if (currentPlaying != null)
+        {
+            positionTextView.setText(Util.formatTotalDuration(millisPlayed, true));
+            durationTextView.setText(Util.formatTotalDuration(millisTotal, true));
+            progressBar.setMax(millisTotal == 0 ? 100 : millisTotal); // Work-around for apparent bug.
+            progressBar.setProgress(millisPlayed);
+            progressBar.setEnabled(currentPlaying.isWorkDone() || isJukeboxEnabled);
+        }
+        else
+        {
+            positionTextView.setText(R.string.util_zero_time);
+            durationTextView.setText(R.string.util_no_time);
+            progressBar.setProgress(0);
+            progressBar.setMax(0);
+            progressBar.setEnabled(false);
+        }
 
-            @Override
-            protected void done(final Void result)
-            {
-                if (cancellationToken.isCancellationRequested()) return;
-                if (currentPlaying != null)
+        switch (playerState)
+        {
+            case DOWNLOADING:
+                final long bytes = currentPlaying != null ? currentPlaying.getPartialFile().length() : 0;
+                String downloadStatus = getResources().getString(R.string.download_playerstate_downloading, Util.formatLocalizedBytes(bytes, getContext()));
+                Timber.d("Player set title");
+                FragmentTitle.Companion.setTitle(PlayerFragment.this, downloadStatus);
+                break;
+            case PREPARING:
+                Timber.d("Player set title");
+                FragmentTitle.Companion.setTitle(PlayerFragment.this, R.string.download_playerstate_buffering);
+                break;
+            case STARTED:
+                if (mediaPlayerController.isShufflePlayEnabled())
                 {
-                    final int millisTotal = duration == null ? 0 : duration;
-
-                    positionTextView.setText(Util.formatTotalDuration(millisPlayed, true));
-                    durationTextView.setText(Util.formatTotalDuration(millisTotal, true));
-                    progressBar.setMax(millisTotal == 0 ? 100 : millisTotal); // Work-around for apparent bug.
-                    progressBar.setProgress(millisPlayed);
-                    progressBar.setEnabled(currentPlaying.isWorkDone() || isJukeboxEnabled);
+                    Timber.d("Player set title");
+                    FragmentTitle.Companion.setTitle(PlayerFragment.this, R.string.download_playerstate_playing_shuffle);
                 }
                 else
                 {
-                    positionTextView.setText(R.string.util_zero_time);
-                    durationTextView.setText(R.string.util_no_time);
-                    progressBar.setProgress(0);
-                    progressBar.setMax(0);
-                    progressBar.setEnabled(false);
-                }
-
-                switch (playerState)
-                {
-                    case DOWNLOADING:
-                        final long bytes = currentPlaying != null ? currentPlaying.getPartialFile().length() : 0;
-                        String downloadStatus = getResources().getString(R.string.download_playerstate_downloading, Util.formatLocalizedBytes(bytes, getContext()));
-                        Timber.d("Player set title");
-                        FragmentTitle.Companion.setTitle(PlayerFragment.this, downloadStatus);
-                        break;
-                    case PREPARING:
-                        Timber.d("Player set title");
-                        FragmentTitle.Companion.setTitle(PlayerFragment.this, R.string.download_playerstate_buffering);
-                        break;
-                    case STARTED:
-                        final MediaPlayerController mediaPlayerController = mediaPlayerControllerLazy.getValue();
-
-                        if (mediaPlayerController != null && mediaPlayerController.isShufflePlayEnabled())
-                        {
-                            Timber.d("Player set title");
-                            FragmentTitle.Companion.setTitle(PlayerFragment.this, R.string.download_playerstate_playing_shuffle);
-                        }
-                        else
-                        {
-                            Timber.d("Player set title");
-                            FragmentTitle.Companion.setTitle(PlayerFragment.this, R.string.common_appname);
-                        }
-                        break;
-                    default:
-                        Timber.d("Player set title");
-                        FragmentTitle.Companion.setTitle(PlayerFragment.this, R.string.common_appname);
-                        break;
-                    case IDLE:
-                    case PREPARED:
-                    case STOPPED:
-                    case PAUSED:
-                    case COMPLETED:
-                        break;
+                    Timber.d("Player set title");
+                    FragmentTitle.Companion.setTitle(PlayerFragment.this, R.string.common_appname);
                 }
+                break;
+            default:
+                Timber.d("Player set title");
+                FragmentTitle.Companion.setTitle(PlayerFragment.this, R.string.common_appname);
+                break;
+            case IDLE:
+            case PREPARED:
+            case STOPPED:
+            case PAUSED:
+            case COMPLETED:
+                break;
+        }
 
-                switch (playerState)
-                {
-                    case STARTED:
-                        pauseButton.setVisibility(View.VISIBLE);
-                        stopButton.setVisibility(View.GONE);
-                        startButton.setVisibility(View.GONE);
-                        break;
-                    case DOWNLOADING:
-                    case PREPARING:
-                        pauseButton.setVisibility(View.GONE);
-                        stopButton.setVisibility(View.VISIBLE);
-                        startButton.setVisibility(View.GONE);
-                        break;
-                    default:
-                        pauseButton.setVisibility(View.GONE);
-                        stopButton.setVisibility(View.GONE);
-                        startButton.setVisibility(View.VISIBLE);
-                        break;
-                }
+        switch (playerState)
+        {
+            case STARTED:
+                pauseButton.setVisibility(View.VISIBLE);
+                stopButton.setVisibility(View.GONE);
+                startButton.setVisibility(View.GONE);
+                break;
+            case DOWNLOADING:
+            case PREPARING:
+                pauseButton.setVisibility(View.GONE);
+                stopButton.setVisibility(View.VISIBLE);
+                startButton.setVisibility(View.GONE);
+                break;
+            default:
+                pauseButton.setVisibility(View.GONE);
+                stopButton.setVisibility(View.GONE);
+                startButton.setVisibility(View.VISIBLE);
+                break;
+        }
 
-                // TODO: It would be a lot nicer if MediaPlayerController would send an event when this is necessary instead of updating every time
-                displaySongRating();
+        // TODO: It would be a lot nicer if MediaPlayerController would send an event when this is necessary instead of updating every time
+        displaySongRating();
+    }
 
-                onProgressChangedTask = null;
-            }
-        };
-        onProgressChangedTask.execute();
+    private int getPlayerPosition(PlayerState playerState, boolean isJukeboxEnabled)
+    {
+        switch (playerState)
+        {
+            case IDLE:
+            case DOWNLOADING:
+            case PREPARING:
+                return 0;
+            default:
+                return isJukeboxEnabled ? jukeboxMediaPlayer.getValue().getPositionSeconds() * 1000 :
+                        positionClock.getValue().getPosition();
+        }
     }
 
     private void changeProgress(final int ms)
@@ -44,6 +44,7 @@ import org.moire.ultrasonic.util.CancellationToken;
 import org.moire.ultrasonic.util.Constants;
 import org.moire.ultrasonic.util.MergeAdapter;
 import org.moire.ultrasonic.util.FragmentBackgroundTask;
+import org.moire.ultrasonic.util.PagedListLoader;
 import org.moire.ultrasonic.util.Util;
 import org.moire.ultrasonic.view.ArtistAdapter;
 import org.moire.ultrasonic.view.EntryAdapter;
@@ -53,6 +54,9 @@ import java.util.Collections;
 import java.util.List;
 
 import kotlin.Lazy;
+import kotlin.Unit;
+import kotlin.jvm.functions.Function1;
+import kotlin.jvm.functions.Function2;
 import timber.log.Timber;
 
 import static org.koin.java.KoinJavaComponent.inject;
@@ -84,6 +88,8 @@ public class SearchFragment extends Fragment {
     private ListAdapter moreSongsAdapter;
     private EntryAdapter songAdapter;
     private SwipeRefreshLayout searchRefresh;
+    private String searchQuery;
+    private PagedListLoader<MusicDirectory.Entry> songPagedListLoader;
 
     private final Lazy<VideoPlayer> videoPlayer = inject(VideoPlayer.class);
     private final Lazy<MediaPlayerController> mediaPlayerControllerLazy = inject(MediaPlayerController.class);
@@ -390,6 +396,7 @@ public class SearchFragment extends Fragment {
     @Override
     public void onDestroyView() {
         cancellationToken.cancel();
+        stopSongPaging();
         super.onDestroyView();
     }
 
@@ -428,6 +435,7 @@ public class SearchFragment extends Fragment {
             protected void done(SearchResult result)
             {
                 searchResult = result;
+                searchQuery = query;
 
                 populateList();
 
@@ -443,6 +451,7 @@ public class SearchFragment extends Fragment {
 
     private void populateList()
     {
+        stopSongPaging();
         mergeAdapter = new MergeAdapter();
 
         if (searchResult != null)
@@ -523,16 +532,68 @@ public class SearchFragment extends Fragment {
 
     private void expandSongs()
     {
+        songAdapter.setNotifyOnChange(false);
         songAdapter.clear();
-
-        for (MusicDirectory.Entry song : searchResult.getSongs())
-        {
-            songAdapter.add(song);
-        }
+        songAdapter.addAll(searchResult.getSongs());
 
         songAdapter.notifyDataSetChanged();
         mergeAdapter.removeAdapter(moreSongsAdapter);
         mergeAdapter.notifyDataSetChanged();
+        startSongPaging();
+    }
+
+    /**
+     * Loads further pages of songs matching the current query while the user scrolls
+     * to the end of the expanded song list.
+     */
+    private void startSongPaging()
+    {
+        final Context context = getContext();
+        final String query = searchQuery;
+        final int pageSize = Util.getMaxSongs(context);
+        final int loadedCount = searchResult.getSongs().size();
+
+        if (query == null || pageSize <= 0 || loadedCount < pageSize) return;
+        if (ActiveServerProvider.Companion.isOffline(context)) return;
+
+        // Songs are the last section of the list, so only appending is possible here
+        songPagedListLoader = new PagedListLoader<>(list, songAdapter, pageSize, loadedCount,
+                new Function2<Integer, Integer, List<MusicDirectory.Entry>>()
+                {
+                    @Override
+                    public List<MusicDirectory.Entry> invoke(Integer offset, Integer count)
+                    {
+                        SearchCriteria criteria = new SearchCriteria(query, 0, 0, count, 0, 0, offset);
+                        try
+                        {
+                            MusicService service = MusicServiceFactory.getMusicService(context);
+                            return service.search(criteria, context).getSongs();
+                        }
+                        catch (Exception e)
+                        {
+                            throw new RuntimeException(e);
+                        }
+                    }
+                }, 1, Integer.MAX_VALUE,
+                new Function1<Throwable, Unit>()
+                {
+                    @Override
+                    public Unit invoke(Throwable error)
+                    {
+                        Timber.w(error, "Failed to load more search results");
+                        return Unit.INSTANCE;
+                    }
+                });
+        songPagedListLoader.start();
+    }
+
+    private void stopSongPaging()
+    {
+        if (songPagedListLoader != null)
+        {
+            songPagedListLoader.stop();
+            songPagedListLoader = null;
+        }
     }
 
     private void onArtistSelected(Artist artist)
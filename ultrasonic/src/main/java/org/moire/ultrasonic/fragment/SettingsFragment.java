@@ -53,6 +53,7 @@ public class SettingsFragment extends PreferenceFragmentCompat
     private ListPreference videoPlayer;
     private ListPreference maxBitrateWifi;
     private ListPreference maxBitrateMobile;
+    private ListPreference minBitrate;
     private ListPreference cacheSize;
     private Preference cacheLocation;
     private ListPreference preloadCount;
@@ -67,6 +68,7 @@ public class SettingsFragment extends PreferenceFragmentCompat
     private ListPreference defaultArtists;
     private ListPreference chatRefreshInterval;
     private ListPreference directoryCacheTime;
+    private ListPreference prewarmBudget;
     private CheckBoxPreference mediaButtonsEnabled;
     private CheckBoxPreference lockScreenEnabled;
     private CheckBoxPreference sendBluetoothNotifications;
@@ -110,6 +112,7 @@ public class SettingsFragment extends PreferenceFragmentCompat
         videoPlayer = findPreference(Constants.PREFERENCES_KEY_VIDEO_PLAYER);
         maxBitrateWifi = findPreference(Constants.PREFERENCES_KEY_MAX_BITRATE_WIFI);
         maxBitrateMobile = findPreference(Constants.PREFERENCES_KEY_MAX_BITRATE_MOBILE);
+        minBitrate = findPreference(Constants.PREFERENCES_KEY_MIN_BITRATE);
         cacheSize = findPreference(Constants.PREFERENCES_KEY_CACHE_SIZE);
         cacheLocation = findPreference(Constants.PREFERENCES_KEY_CACHE_LOCATION);
         preloadCount = findPreference(Constants.PREFERENCES_KEY_PRELOAD_COUNT);
@@ -124,6 +127,7 @@ public class SettingsFragment extends PreferenceFragmentCompat
         defaultAlbums = findPreference(Constants.PREFERENCES_KEY_DEFAULT_ALBUMS);
         chatRefreshInterval = findPreference(Constants.PREFERENCES_KEY_CHAT_REFRESH_INTERVAL);
         directoryCacheTime = findPreference(Constants.PREFERENCES_KEY_DIRECTORY_CACHE_TIME);
+        prewarmBudget = findPreference(Constants.PREFERENCES_KEY_PREWARM_BUDGET);
         mediaButtonsEnabled = findPreference(Constants.PREFERENCES_KEY_MEDIA_BUTTONS);
         lockScreenEnabled = findPreference(Constants.PREFERENCES_KEY_SHOW_LOCK_SCREEN_CONTROLS);
         sendBluetoothAlbumArt = findPreference(Constants.PREFERENCES_KEY_SEND_BLUETOOTH_ALBUM_ART);
@@ -429,6 +433,7 @@ public class SettingsFragment extends PreferenceFragmentCompat
         videoPlayer.setSummary(videoPlayer.getEntry());
         maxBitrateWifi.setSummary(maxBitrateWifi.getEntry());
         maxBitrateMobile.setSummary(maxBitrateMobile.getEntry());
+        minBitrate.setSummary(minBitrate.getEntry());
         cacheSize.setSummary(cacheSize.getEntry());
         preloadCount.setSummary(preloadCount.getEntry());
         bufferLength.setSummary(bufferLength.getEntry());
@@ -442,6 +447,7 @@ public class SettingsFragment extends PreferenceFragmentCompat
         defaultSongs.setSummary(defaultSongs.getEntry());
         chatRefreshInterval.setSummary(chatRefreshInterval.getEntry());
         directoryCacheTime.setSummary(directoryCacheTime.getEntry());
+        prewarmBudget.setSummary(prewarmBudget.getEntry());
         viewRefresh.setSummary(viewRefresh.getEntry());
         imageLoaderConcurrency.setSummary(imageLoaderConcurrency.getEntry());
         sharingDefaultExpiration.setSummary(sharingDefaultExpiration.getText());
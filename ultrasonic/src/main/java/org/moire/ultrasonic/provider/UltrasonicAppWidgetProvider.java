@@ -17,9 +17,9 @@ import org.moire.ultrasonic.R;
 import org.moire.ultrasonic.activity.NavigationActivity;
 import org.moire.ultrasonic.domain.MusicDirectory;
 import org.moire.ultrasonic.receiver.MediaButtonIntentReceiver;
-import org.moire.ultrasonic.service.MediaPlayerController;
+import org.moire.ultrasonic.service.NowPlayingPublisher;
+import org.moire.ultrasonic.service.Supplier;
 import org.moire.ultrasonic.util.Constants;
-import org.moire.ultrasonic.util.FileUtil;
 
 /**
  * Widget Provider for the Ultrasonic Widgets
@@ -70,13 +70,14 @@ public class UltrasonicAppWidgetProvider extends AppWidgetProvider
 	}
 
 	/**
-	 * Handle a change notification coming over from {@link MediaPlayerController}
+	 * Handle a change notification coming over from {@link NowPlayingPublisher}
+	 * @param albumArt supplies the album art of the current song, only called if the widget is shown
 	 */
-	public void notifyChange(Context context, MusicDirectory.Entry currentSong, boolean playing, boolean setAlbum)
+	public void notifyChange(Context context, MusicDirectory.Entry currentSong, boolean playing, boolean setAlbum, Supplier<Bitmap> albumArt)
 	{
 		if (hasInstances(context))
 		{
-			performUpdate(context, currentSong, playing, setAlbum);
+			performUpdate(context, currentSong, playing, setAlbum, albumArt);
 		}
 	}
 
@@ -99,7 +100,7 @@ public class UltrasonicAppWidgetProvider extends AppWidgetProvider
 	/**
 	 * Update all active widget instances by pushing changes
 	 */
-	private void performUpdate(Context context, MusicDirectory.Entry currentSong, boolean playing, boolean setAlbum)
+	private void performUpdate(Context context, MusicDirectory.Entry currentSong, boolean playing, boolean setAlbum, Supplier<Bitmap> albumArt)
 	{
 		final Resources res = context.getResources();
 		final RemoteViews views = new RemoteViews(context.getPackageName(), this.layoutId);
@@ -159,7 +160,7 @@ public class UltrasonicAppWidgetProvider extends AppWidgetProvider
 		// Set the cover art
 		try
 		{
-			Bitmap bitmap = currentSong == null ? null : FileUtil.getAlbumArtBitmap(context, currentSong, 240, true);
+			Bitmap bitmap = currentSong == null ? null : albumArt.get();
 
 			if (bitmap == null)
 			{
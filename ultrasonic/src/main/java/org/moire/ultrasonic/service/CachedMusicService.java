@@ -22,6 +22,7 @@ import android.content.Context;
 import android.graphics.Bitmap;
 
 import org.moire.ultrasonic.data.ActiveServerProvider;
+import org.moire.ultrasonic.data.ServerSetting;
 import org.moire.ultrasonic.domain.Bookmark;
 import org.moire.ultrasonic.domain.ChatMessage;
 import org.moire.ultrasonic.domain.Genre;
@@ -38,7 +39,6 @@ import org.moire.ultrasonic.domain.Share;
 import org.moire.ultrasonic.domain.UserInfo;
 import org.moire.ultrasonic.util.CancellableTask;
 import org.moire.ultrasonic.util.Constants;
-import org.moire.ultrasonic.util.LRUCache;
 import org.moire.ultrasonic.util.TimeLimitedCache;
 import org.moire.ultrasonic.util.Util;
 
@@ -59,31 +59,15 @@ import static org.koin.java.KoinJavaComponent.inject;
 public class CachedMusicService implements MusicService
 {
 	private final Lazy<ActiveServerProvider> activeServerProvider = inject(ActiveServerProvider.class);
-
-	private static final int MUSIC_DIR_CACHE_SIZE = 100;
+	private final Lazy<ServerMetadataCaches> serverMetadataCaches = inject(ServerMetadataCaches.class);
 
 	private final MusicService musicService;
-	private final LRUCache<String, TimeLimitedCache<MusicDirectory>> cachedMusicDirectories;
-	private final LRUCache<String, TimeLimitedCache<MusicDirectory>> cachedArtist;
-	private final LRUCache<String, TimeLimitedCache<MusicDirectory>> cachedAlbum;
-	private final LRUCache<String, TimeLimitedCache<UserInfo>> cachedUserInfo;
-	private final TimeLimitedCache<Boolean> cachedLicenseValid = new TimeLimitedCache<>(120, TimeUnit.SECONDS);
-	private final TimeLimitedCache<Indexes> cachedIndexes = new TimeLimitedCache<>(60 * 60, TimeUnit.SECONDS);
-	private final TimeLimitedCache<Indexes> cachedArtists = new TimeLimitedCache<>(60 * 60, TimeUnit.SECONDS);
-	private final TimeLimitedCache<List<Playlist>> cachedPlaylists = new TimeLimitedCache<>(3600, TimeUnit.SECONDS);
-	private final TimeLimitedCache<List<PodcastsChannel>> cachedPodcastsChannels = new TimeLimitedCache<>(3600, TimeUnit.SECONDS);
-	private final TimeLimitedCache<List<MusicFolder>> cachedMusicFolders = new TimeLimitedCache<>(10 * 3600, TimeUnit.SECONDS);
-	private final TimeLimitedCache<List<Genre>> cachedGenres = new TimeLimitedCache<>(10 * 3600, TimeUnit.SECONDS);
-
-	private String restUrl;
+
+	private volatile ServerMetadataCache serverCache;
 
 	public CachedMusicService(MusicService musicService)
 	{
 		this.musicService = musicService;
-		cachedMusicDirectories = new LRUCache<>(MUSIC_DIR_CACHE_SIZE);
-		cachedArtist = new LRUCache<>(MUSIC_DIR_CACHE_SIZE);
-		cachedAlbum = new LRUCache<>(MUSIC_DIR_CACHE_SIZE);
-		cachedUserInfo = new LRUCache<>(MUSIC_DIR_CACHE_SIZE);
 	}
 
 	@Override
@@ -97,11 +81,11 @@ public class CachedMusicService implements MusicService
 	public boolean isLicenseValid(Context context) throws Exception
 	{
 		checkSettingsChanged();
-		Boolean result = cachedLicenseValid.get();
+		Boolean result = serverCache.licenseValid.get();
 		if (result == null)
 		{
 			result = musicService.isLicenseValid(context);
-			cachedLicenseValid.set(result, result ? 30L * 60L : 2L * 60L, TimeUnit.SECONDS);
+			serverCache.licenseValid.set(result, result ? 30L * 60L : 2L * 60L, TimeUnit.SECONDS);
 		}
 		return result;
 	}
@@ -112,13 +96,13 @@ public class CachedMusicService implements MusicService
 		checkSettingsChanged();
 		if (refresh)
 		{
-			cachedMusicFolders.clear();
+			serverCache.musicFolders.clear();
 		}
-		List<MusicFolder> result = cachedMusicFolders.get();
+		List<MusicFolder> result = serverCache.musicFolders.get();
 		if (result == null)
 		{
 			result = musicService.getMusicFolders(refresh, context);
-			cachedMusicFolders.set(result);
+			serverCache.musicFolders.set(result);
 		}
 		return result;
 	}
@@ -129,15 +113,15 @@ public class CachedMusicService implements MusicService
 		checkSettingsChanged();
 		if (refresh)
 		{
-			cachedIndexes.clear();
-			cachedMusicFolders.clear();
-			cachedMusicDirectories.clear();
+			serverCache.indexes.clear();
+			serverCache.musicFolders.clear();
+			serverCache.musicDirectories.clear();
 		}
-		Indexes result = cachedIndexes.get();
+		Indexes result = serverCache.indexes.get();
 		if (result == null)
 		{
 			result = musicService.getIndexes(musicFolderId, refresh, context);
-			cachedIndexes.set(result);
+			serverCache.indexes.set(result);
 		}
 		return result;
 	}
@@ -148,13 +132,13 @@ public class CachedMusicService implements MusicService
 		checkSettingsChanged();
 		if (refresh)
 		{
-			cachedArtists.clear();
+			serverCache.artists.clear();
 		}
-		Indexes result = cachedArtists.get();
+		Indexes result = serverCache.artists.get();
 		if (result == null)
 		{
 			result = musicService.getArtists(refresh, context);
-			cachedArtists.set(result);
+			serverCache.artists.set(result);
 		}
 		return result;
 	}
@@ -163,7 +147,7 @@ public class CachedMusicService implements MusicService
 	public MusicDirectory getMusicDirectory(String id, String name, boolean refresh, Context context) throws Exception
 	{
 		checkSettingsChanged();
-		TimeLimitedCache<MusicDirectory> cache = refresh ? null : cachedMusicDirectories.get(id);
+		TimeLimitedCache<MusicDirectory> cache = refresh ? null : serverCache.musicDirectories.get(id);
 
 		MusicDirectory dir = cache == null ? null : cache.get();
 
@@ -172,7 +156,7 @@ public class CachedMusicService implements MusicService
 			dir = musicService.getMusicDirectory(id, name, refresh, context);
 			cache = new TimeLimitedCache<>(Util.getDirectoryCacheTime(context), TimeUnit.SECONDS);
 			cache.set(dir);
-			cachedMusicDirectories.put(id, cache);
+			serverCache.musicDirectories.put(id, cache);
 		}
 		return dir;
 	}
@@ -181,14 +165,14 @@ public class CachedMusicService implements MusicService
 	public MusicDirectory getArtist(String id, String name, boolean refresh, Context context) throws Exception
 	{
 		checkSettingsChanged();
-		TimeLimitedCache<MusicDirectory> cache = refresh ? null : cachedArtist.get(id);
+		TimeLimitedCache<MusicDirectory> cache = refresh ? null : serverCache.artist.get(id);
 		MusicDirectory dir = cache == null ? null : cache.get();
 		if (dir == null)
 		{
 			dir = musicService.getArtist(id, name, refresh, context);
 			cache = new TimeLimitedCache<>(Util.getDirectoryCacheTime(context), TimeUnit.SECONDS);
 			cache.set(dir);
-			cachedArtist.put(id, cache);
+			serverCache.artist.put(id, cache);
 		}
 		return dir;
 	}
@@ -197,14 +181,14 @@ public class CachedMusicService implements MusicService
 	public MusicDirectory getAlbum(String id, String name, boolean refresh, Context context) throws Exception
 	{
 		checkSettingsChanged();
-		TimeLimitedCache<MusicDirectory> cache = refresh ? null : cachedAlbum.get(id);
+		TimeLimitedCache<MusicDirectory> cache = refresh ? null : serverCache.album.get(id);
 		MusicDirectory dir = cache == null ? null : cache.get();
 		if (dir == null)
 		{
 			dir = musicService.getAlbum(id, name, refresh, context);
 			cache = new TimeLimitedCache<>(Util.getDirectoryCacheTime(context), TimeUnit.SECONDS);
 			cache.set(dir);
-			cachedAlbum.put(id, cache);
+			serverCache.album.put(id, cache);
 		}
 		return dir;
 	}
@@ -224,11 +208,11 @@ public class CachedMusicService implements MusicService
 	@Override
 	public List<PodcastsChannel> getPodcastsChannels(boolean refresh, Context context) throws Exception {
 		checkSettingsChanged();
-		List<PodcastsChannel> result = refresh ? null : cachedPodcastsChannels.get();
+		List<PodcastsChannel> result = refresh ? null : serverCache.podcastsChannels.get();
 		if (result == null)
 		{
 			result = musicService.getPodcastsChannels(refresh, context);
-			cachedPodcastsChannels.set(result);
+			serverCache.podcastsChannels.set(result);
 		}
 		return result;
 	}
@@ -243,11 +227,11 @@ public class CachedMusicService implements MusicService
 	public List<Playlist> getPlaylists(boolean refresh, Context context) throws Exception
 	{
 		checkSettingsChanged();
-		List<Playlist> result = refresh ? null : cachedPlaylists.get();
+		List<Playlist> result = refresh ? null : serverCache.playlists.get();
 		if (result == null)
 		{
 			result = musicService.getPlaylists(refresh, context);
-			cachedPlaylists.set(result);
+			serverCache.playlists.set(result);
 		}
 		return result;
 	}
@@ -255,7 +239,8 @@ public class CachedMusicService implements MusicService
 	@Override
 	public void createPlaylist(String id, String name, List<MusicDirectory.Entry> entries, Context context) throws Exception
 	{
-		cachedPlaylists.clear();
+		checkSettingsChanged();
+		serverCache.playlists.clear();
 		musicService.createPlaylist(id, name, entries, context);
 	}
 
@@ -283,6 +268,12 @@ public class CachedMusicService implements MusicService
 		musicService.scrobble(id, submission, context);
 	}
 
+	@Override
+	public void scrobble(List<String> ids, List<Long> times, Context context) throws Exception
+	{
+		musicService.scrobble(ids, times, context);
+	}
+
 	@Override
 	public MusicDirectory getAlbumList(String type, int size, int offset, Context context) throws Exception
 	{
@@ -292,7 +283,28 @@ public class CachedMusicService implements MusicService
 	@Override
 	public MusicDirectory getAlbumList2(String type, int size, int offset, Context context) throws Exception
 	{
-		return musicService.getAlbumList2(type, size, offset, context);
+		checkSettingsChanged();
+		TimeLimitedCache<MusicDirectory> prefetched = serverCache.prefetchedAlbumLists.remove(getAlbumListKey(type, size, offset));
+		MusicDirectory result = prefetched == null ? null : prefetched.get();
+		return result != null ? result : musicService.getAlbumList2(type, size, offset, context);
+	}
+
+	/**
+	 * Loads a page of an album list in advance, it is returned by the next call of
+	 * {@link #getAlbumList2} with the same parameters.
+	 * Album lists change while the user plays music, so they are only prefetched once.
+	 */
+	public void prefetchAlbumList2(String type, int size, int offset, Context context) throws Exception
+	{
+		checkSettingsChanged();
+		TimeLimitedCache<MusicDirectory> cache = new TimeLimitedCache<>(Util.getDirectoryCacheTime(context), TimeUnit.SECONDS);
+		cache.set(musicService.getAlbumList2(type, size, offset, context));
+		serverCache.prefetchedAlbumLists.put(getAlbumListKey(type, size, offset), cache);
+	}
+
+	private static String getAlbumListKey(String type, int size, int offset)
+	{
+		return String.format("%s:%d:%d", type, size, offset);
 	}
 
 	@Override
@@ -310,7 +322,19 @@ public class CachedMusicService implements MusicService
 	@Override
 	public SearchResult getStarred2(Context context) throws Exception
 	{
-		return musicService.getStarred2(context);
+		checkSettingsChanged();
+		SearchResult result = serverCache.prefetchedStarred2.get();
+		serverCache.prefetchedStarred2.clear();
+		return result != null ? result : musicService.getStarred2(context);
+	}
+
+	/**
+	 * Loads the starred items in advance, they are returned by the next call of {@link #getStarred2}
+	 */
+	public void prefetchStarred2(Context context) throws Exception
+	{
+		checkSettingsChanged();
+		serverCache.prefetchedStarred2.set(musicService.getStarred2(context));
 	}
 
 	@Override
@@ -367,33 +391,27 @@ public class CachedMusicService implements MusicService
 		return musicService.setJukeboxGain(gain, context);
 	}
 
-	private void checkSettingsChanged()
+	// Every server has its own caches, which are kept when switching to another server.
+	// They are looked up every time, because they are dropped when the server is edited
+	private synchronized void checkSettingsChanged()
 	{
-		String newUrl = activeServerProvider.getValue().getRestUrl(null);
-		if (!Util.equals(newUrl, restUrl))
-		{
-			cachedMusicFolders.clear();
-			cachedMusicDirectories.clear();
-			cachedLicenseValid.clear();
-			cachedIndexes.clear();
-			cachedPlaylists.clear();
-			cachedGenres.clear();
-			cachedAlbum.clear();
-			cachedArtist.clear();
-			cachedUserInfo.clear();
-			restUrl = newUrl;
-		}
+		ServerSetting server = activeServerProvider.getValue().getActiveServer();
+		serverCache = serverMetadataCaches.getValue().get(server.getId(), server.getUrl(), server.getUserName());
 	}
 
 	@Override
 	public void star(String id, String albumId, String artistId, Context context) throws Exception
 	{
+		checkSettingsChanged();
+		serverCache.prefetchedStarred2.clear();
 		musicService.star(id, albumId, artistId, context);
 	}
 
 	@Override
 	public void unstar(String id, String albumId, String artistId, Context context) throws Exception
 	{
+		checkSettingsChanged();
+		serverCache.prefetchedStarred2.clear();
 		musicService.unstar(id, albumId, artistId, context);
 	}
 
@@ -409,14 +427,14 @@ public class CachedMusicService implements MusicService
 		checkSettingsChanged();
 		if (refresh)
 		{
-			cachedGenres.clear();
+			serverCache.genres.clear();
 		}
-		List<Genre> result = cachedGenres.get();
+		List<Genre> result = serverCache.genres.get();
 
 		if (result == null)
 		{
 			result = musicService.getGenres(refresh, context);
-			cachedGenres.set(result);
+			serverCache.genres.set(result);
 		}
 
 		Collections.sort(result, new Comparator<Genre>()
@@ -477,7 +495,7 @@ public class CachedMusicService implements MusicService
 	public MusicDirectory getVideos(boolean refresh, Context context) throws Exception
 	{
 		checkSettingsChanged();
-		TimeLimitedCache<MusicDirectory> cache = refresh ? null : cachedMusicDirectories.get(Constants.INTENT_EXTRA_NAME_VIDEOS);
+		TimeLimitedCache<MusicDirectory> cache = refresh ? null : serverCache.musicDirectories.get(Constants.INTENT_EXTRA_NAME_VIDEOS);
 
 		MusicDirectory dir = cache == null ? null : cache.get();
 
@@ -486,7 +504,7 @@ public class CachedMusicService implements MusicService
 			dir = musicService.getVideos(refresh, context);
 			cache = new TimeLimitedCache<>(Util.getDirectoryCacheTime(context), TimeUnit.SECONDS);
 			cache.set(dir);
-			cachedMusicDirectories.put(Constants.INTENT_EXTRA_NAME_VIDEOS, cache);
+			serverCache.musicDirectories.put(Constants.INTENT_EXTRA_NAME_VIDEOS, cache);
 		}
 
 		return dir;
@@ -497,7 +515,7 @@ public class CachedMusicService implements MusicService
 	{
 		checkSettingsChanged();
 
-		TimeLimitedCache<UserInfo> cache = cachedUserInfo.get(username);
+		TimeLimitedCache<UserInfo> cache = serverCache.userInfo.get(username);
 
 		UserInfo userInfo = cache == null ? null : cache.get();
 
@@ -506,7 +524,7 @@ public class CachedMusicService implements MusicService
 			userInfo = musicService.getUser(username, context);
 			cache = new TimeLimitedCache<>(Util.getDirectoryCacheTime(context), TimeUnit.SECONDS);
 			cache.set(userInfo);
-			cachedUserInfo.put(username, cache);
+			serverCache.userInfo.put(username, cache);
 		}
 
 		return userInfo;
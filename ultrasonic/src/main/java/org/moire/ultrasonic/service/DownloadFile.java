@@ -29,6 +29,7 @@ import org.moire.ultrasonic.domain.MusicDirectory;
 import org.moire.ultrasonic.util.CacheCleaner;
 import org.moire.ultrasonic.util.CancellableTask;
 import org.moire.ultrasonic.util.FileUtil;
+import org.moire.ultrasonic.util.TaskExecutors;
 import org.moire.ultrasonic.util.Util;
 
 import java.io.File;
@@ -37,6 +38,14 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import kotlin.Lazy;
 import kotlin.Pair;
@@ -52,6 +61,10 @@ import static org.koin.java.KoinJavaComponent.inject;
  */
 public class DownloadFile
 {
+	// The bit rates the partial files were started with, by their path, so a download is resumed
+	// with the same transcode. The bit rate of a partial file of an earlier session isn't known
+	private static final Map<String, Integer> partialBitRates = new ConcurrentHashMap<>();
+
 	private final Context context;
 	private final MusicDirectory.Entry song;
 	private final File partialFile;
@@ -60,14 +73,24 @@ public class DownloadFile
 
 	private final MediaStoreService mediaStoreService;
 	private CancellableTask downloadTask;
-	private final boolean save;
+	private volatile boolean save;
 	private boolean failed;
 	private int bitRate;
 	private volatile boolean isPlaying;
 	private volatile boolean saveWhenDone;
 	private volatile boolean completeWhenDone;
 
+	private final Object bufferLock = new Object();
+	private final Map<BufferListener, Long> bufferListeners = new HashMap<>();
+	private volatile long nextBufferThreshold = Long.MAX_VALUE;
+
+	// The length at which a read ahead stops, Long.MAX_VALUE while downloading the whole file
+	private volatile long readAheadLimit = Long.MAX_VALUE;
+	private boolean isReadAheadLimitReached;
+
 	private final Lazy<Downloader> downloader = inject(Downloader.class);
+	private final Lazy<OfflineMusicIndex> offlineMusicIndex = inject(OfflineMusicIndex.class);
+	private final Lazy<ThroughputEstimator> throughputEstimator = inject(ThroughputEstimator.class);
 
 	public DownloadFile(Context context, MusicDirectory.Entry song, boolean save)
 	{
@@ -77,9 +100,10 @@ public class DownloadFile
 		this.save = save;
 
 		saveFile = FileUtil.getSongFile(context, song);
-		bitRate = Util.getMaxBitRate(context);
 		partialFile = new File(saveFile.getParent(), String.format("%s.partial.%s", FileUtil.getBaseName(saveFile.getName()), FileUtil.getExtension(saveFile.getName())));
 		completeFile = new File(saveFile.getParent(), String.format("%s.complete.%s", FileUtil.getBaseName(saveFile.getName()), FileUtil.getExtension(saveFile.getName())));
+		Integer partialBitRate = partialBitRates.get(partialFile.getPath());
+		bitRate = partialBitRate != null ? partialBitRate : selectBitRate();
 		mediaStoreService = new MediaStoreService(context);
 	}
 
@@ -91,35 +115,97 @@ public class DownloadFile
 	/**
 	 * Returns the effective bit rate.
 	 */
-	public int getBitRate()
+	public synchronized int getBitRate()
 	{
-		if (!partialFile.exists())
-		{
-			bitRate = Util.getMaxBitRate(context);
-		}
+		// Only estimated here, the bit rate is kept once the download started
+		int effectiveBitRate = partialFile.exists() || isDownloading() ? bitRate : selectBitRate();
 
-		if (bitRate > 0)
+		if (effectiveBitRate > 0)
 		{
-			return bitRate;
+			return effectiveBitRate;
 		}
 
 		return song.getBitRate() == null ? 160 : song.getBitRate();
 	}
 
+	// The adaptive bit rate is selected when the download starts, from the measured throughput
+	private int selectBitRate()
+	{
+		int maxBitRate = Util.getMaxBitRate(context);
+		if (!Util.isAdaptiveBitRateEnabled(context)) return maxBitRate;
+		return throughputEstimator.getValue().selectBitRate(maxBitRate, Util.getMinBitRate(context));
+	}
+
 	public synchronized void download()
 	{
-		FileUtil.createDirectoryForParent(saveFile);
-		failed = false;
+		// A running read ahead simply continues with the rest of the file
+		if (readAheadLimit != Long.MAX_VALUE && isDownloading() && !isReadAheadLimitReached)
+		{
+			Timber.i("Continuing the read ahead of %s as download", song);
+			readAheadLimit = Long.MAX_VALUE;
+			return;
+		}
 
-		if (!partialFile.exists())
+		readAheadLimit = Long.MAX_VALUE;
+		startDownloadTask();
+	}
+
+	/**
+	 * Downloads the start of the file into the partial file, so playing it can start without
+	 * buffering. The download is resumed from there when the file is downloaded later.
+	 * @param length the length of the partial file to download in bytes
+	 * @return true if the read ahead was started
+	 */
+	public synchronized boolean readAhead(long length)
+	{
+		if (isWorkDone() || isDownloading() || partialFile.length() >= length)
 		{
-			bitRate = Util.getMaxBitRate(context);
+			return false;
 		}
 
+		Timber.i("Reading ahead %d bytes of %s", length, song);
+		readAheadLimit = length;
+		startDownloadTask();
+		return true;
+	}
+
+	private void startDownloadTask()
+	{
+		FileUtil.createDirectoryForParent(saveFile);
+		failed = false;
+		isReadAheadLimitReached = false;
+
+		selectDownloadBitRate();
+
 		downloadTask = new DownloadTask();
 		downloadTask.start();
 	}
 
+	// A partial file is resumed with the bit rate it was started with, the server would transcode
+	// the rest with a different one otherwise. A partial file with an unknown bit rate is
+	// downloaded again when the bit rate is adaptive, as it may differ from the selected one
+	private void selectDownloadBitRate()
+	{
+		if (partialFile.exists())
+		{
+			Integer partialBitRate = partialBitRates.get(partialFile.getPath());
+			if (partialBitRate != null)
+			{
+				bitRate = partialBitRate;
+				return;
+			}
+
+			if (Util.isAdaptiveBitRateEnabled(context))
+			{
+				Timber.i("The bit rate of %s isn't known, downloading it again", partialFile);
+				Util.delete(partialFile);
+			}
+		}
+
+		bitRate = selectBitRate();
+		partialBitRates.put(partialFile.getPath(), bitRate);
+	}
+
 	public synchronized void cancelDownload()
 	{
 		if (downloadTask != null)
@@ -181,11 +267,90 @@ public class DownloadFile
 		return downloadTask != null && downloadTask.isCancelled();
 	}
 
+	/**
+	 * Calls the listener once, when the partial file has grown to the given length, or when the
+	 * download is complete. The listener is called on the download thread, or immediately
+	 * on the calling thread if the file is already long enough, so it must return quickly.
+	 * @param length the length of the partial file in bytes, Long.MAX_VALUE to wait for the complete file
+	 */
+	public void addBufferListener(long length, BufferListener listener)
+	{
+		synchronized (bufferLock)
+		{
+			bufferListeners.put(listener, length);
+			nextBufferThreshold = Math.min(nextBufferThreshold, length);
+		}
+
+		// Checked after registering, so bytes written in the meantime can't be missed
+		if (isWorkDone() || partialFile.length() >= length)
+		{
+			boolean isRegistered;
+			synchronized (bufferLock)
+			{
+				isRegistered = bufferListeners.remove(listener) != null;
+			}
+			if (isRegistered) listener.onBuffered(this);
+		}
+	}
+
+	public void removeBufferListener(BufferListener listener)
+	{
+		synchronized (bufferLock)
+		{
+			bufferListeners.remove(listener);
+		}
+	}
+
+	private void notifyBuffered(long length)
+	{
+		List<BufferListener> buffered = new ArrayList<>();
+		synchronized (bufferLock)
+		{
+			long nextThreshold = Long.MAX_VALUE;
+			Iterator<Map.Entry<BufferListener, Long>> iterator = bufferListeners.entrySet().iterator();
+			while (iterator.hasNext())
+			{
+				Map.Entry<BufferListener, Long> entry = iterator.next();
+				if (entry.getValue() <= length)
+				{
+					buffered.add(entry.getKey());
+					iterator.remove();
+				}
+				else
+				{
+					nextThreshold = Math.min(nextThreshold, entry.getValue());
+				}
+			}
+			nextBufferThreshold = nextThreshold;
+		}
+
+		for (BufferListener listener : buffered)
+		{
+			try
+			{
+				listener.onBuffered(this);
+			}
+			catch (Exception x)
+			{
+				Timber.w(x, "Buffer listener failed for %s", this);
+			}
+		}
+	}
+
 	public boolean shouldSave()
 	{
 		return save;
 	}
 
+	/**
+	 * Changes whether the file is saved permanently when its download is done.
+	 * A running download isn't restarted, so the partial file keeps a single writer.
+	 */
+	public void setShouldSave(boolean save)
+	{
+		this.save = save;
+	}
+
 	public boolean isFailed()
 	{
 		return failed;
@@ -198,6 +363,7 @@ public class DownloadFile
 		Util.delete(completeFile);
 		Util.delete(saveFile);
 		mediaStoreService.deleteFromMediaStore(this);
+		offlineMusicIndex.getValue().remove(saveFile);
 	}
 
 	public void unpin()
@@ -278,10 +444,12 @@ public class DownloadFile
 				{
 					Util.renameFile(partialFile, saveFile);
 					mediaStoreService.saveInMediaStore(DownloadFile.this);
+					offlineMusicIndex.getValue().add(saveFile, song);
 				}
 				else
 				{
 					Util.renameFile(partialFile, completeFile);
+					offlineMusicIndex.getValue().add(completeFile, song);
 				}
 
 				completeWhenDone = false;
@@ -302,8 +470,26 @@ public class DownloadFile
 		return String.format("DownloadFile (%s)", song);
 	}
 
+	/**
+	 * Receives a notification when enough of the file was downloaded
+	 */
+	// Decided while holding the lock, so download() can't continue a read ahead which stopped
+	private synchronized boolean stopReadAhead(long length)
+	{
+		if (length < readAheadLimit) return false;
+		isReadAheadLimitReached = true;
+		return true;
+	}
+
+	public interface BufferListener
+	{
+		void onBuffered(DownloadFile downloadFile);
+	}
+
 	private class DownloadTask extends CancellableTask
 	{
+		private boolean isLimitReached;
+
 		@Override
 		public void execute()
 		{
@@ -385,12 +571,20 @@ public class DownloadFile
 						Timber.i("Executed partial HTTP GET, skipping %d bytes", partialFile.length());
 					}
 
+					long offset = response.getSecond() ? partialFile.length() : 0;
+					in = response.getFirst();
 					out = new FileOutputStream(partialFile, response.getSecond());
-					long n = copy(response.getFirst(), out);
+					long n = copy(in, out, offset);
 					Timber.i("Downloaded %d bytes to %s", n, partialFile);
 					out.flush();
 					out.close();
 
+					if (isLimitReached)
+					{
+						Timber.i("Read ahead of %s is complete", song);
+						return;
+					}
+
 					if (isCancelled())
 					{
 						throw new Exception(String.format("Download of '%s' was cancelled", song));
@@ -409,6 +603,7 @@ public class DownloadFile
 					{
 						Util.renameFile(partialFile, saveFile);
 						mediaStoreService.saveInMediaStore(DownloadFile.this);
+						offlineMusicIndex.getValue().add(saveFile, song);
 
 						if (Util.getShouldScanMedia(context))
 						{
@@ -418,6 +613,7 @@ public class DownloadFile
 					else
 					{
 						Util.renameFile(partialFile, completeFile);
+						offlineMusicIndex.getValue().add(completeFile, song);
 
 						if (Util.getShouldScanMedia(context))
 						{
@@ -443,6 +639,10 @@ public class DownloadFile
 			{
 				Util.close(in);
 				Util.close(out);
+
+				// Listeners waiting for the end of the file can start playing it now
+				if (isWorkDone()) notifyBuffered(Long.MAX_VALUE);
+
 				if (wakeLock != null)
 				{
 					wakeLock.release();
@@ -481,50 +681,71 @@ public class DownloadFile
 			}
 		}
 
-		private long copy(final InputStream in, OutputStream out) throws IOException
+		/**
+		 * Copies the input into the partial file, notifying the buffer listeners as it grows
+		 * @param offset the length of the partial file before the copy
+		 */
+		private long copy(final InputStream in, OutputStream out, long offset) throws IOException
 		{
-			// Start a thread that will close the input stream if the task is
-			// cancelled, thus causing the copy() method to return.
-			new Thread()
+			// Check periodically if the task is cancelled, and close the input stream
+			// if it is, thus causing the copy() method to return.
+			final ScheduledFuture<?> watchdog = TaskExecutors.scheduler.scheduleWithFixedDelay(new Runnable()
 			{
 				@Override
 				public void run()
 				{
-					while (true)
+					if (isCancelled())
 					{
-						Util.sleepQuietly(3000L);
-
-						if (isCancelled())
-						{
-							Util.close(in);
-							return;
-						}
-
-						if (!isRunning())
-						{
-							return;
-						}
+						Util.close(in);
 					}
 				}
-			}.start();
+			}, 3000L, 3000L, TimeUnit.MILLISECONDS);
 
 			byte[] buffer = new byte[1024 * 16];
 			long count = 0;
 			int n;
 			long lastLog = System.currentTimeMillis();
+			long sampleStart = lastLog;
+			long sampleBytes = 0;
 
-			while (!isCancelled() && (n = in.read(buffer)) != -1)
+			try
 			{
-				out.write(buffer, 0, n);
-				count += n;
-
-				long now = System.currentTimeMillis();
-				if (now - lastLog > 3000L)
-				{  // Only every so often.
-					Timber.i("Downloaded %s of %s", Util.formatBytes(count), song);
-					lastLog = now;
+				while (!isCancelled() && (n = in.read(buffer)) != -1)
+				{
+					out.write(buffer, 0, n);
+					count += n;
+					sampleBytes += n;
+
+					if (offset + count >= nextBufferThreshold)
+					{
+						notifyBuffered(offset + count);
+					}
+
+					if (offset + count >= readAheadLimit && stopReadAhead(offset + count))
+					{
+						isLimitReached = true;
+						break;
+					}
+
+					long now = System.currentTimeMillis();
+					if (now - sampleStart >= 1000L)
+					{
+						throughputEstimator.getValue().record(sampleBytes, now - sampleStart);
+						sampleStart = now;
+						sampleBytes = 0;
+					}
+
+					if (now - lastLog > 3000L)
+					{  // Only every so often.
+						Timber.i("Downloaded %s of %s", Util.formatBytes(count), song);
+						lastLog = now;
+					}
 				}
 			}
+			finally
+			{
+				watchdog.cancel(false);
+			}
 			return count;
 		}
 	}
@@ -39,11 +39,13 @@ public class Downloader
 
     // TODO: This is a circular reference, try to remove
     private Lazy<JukeboxMediaPlayer> jukeboxMediaPlayer = inject(JukeboxMediaPlayer.class);
+    private final Lazy<ReadAheadPolicy> readAheadPolicy = inject(ReadAheadPolicy.class);
 
     private final List<DownloadFile> cleanupCandidates = new ArrayList<>();
     private final LRUCache<MusicDirectory.Entry, DownloadFile> downloadFileCache = new LRUCache<>(100);
     private ScheduledExecutorService executorService;
     private long revision;
+    private DownloadFile readingAhead;
 
     public Downloader(Context context, ShufflePlayBuffer shufflePlayBuffer, ExternalStorageMonitor externalStorageMonitor,
                       LocalMediaPlayer localMediaPlayer)
@@ -208,10 +210,31 @@ public class Downloader
             }
         }
 
+        // Nothing else to download, so the start of the likely next songs is read ahead
+        if (currentDownloading == null)
+        {
+            readAhead();
+        }
+
         // Delete obsolete .partial and .complete files.
         cleanup();
     }
 
+    private void readAhead()
+    {
+        if (readingAhead != null && readingAhead.isDownloading())
+        {
+            return;
+        }
+
+        int currentIndex = localMediaPlayer.currentPlaying == null ? -1 : getCurrentPlayingIndex();
+        readingAhead = readAheadPolicy.getValue().startNext(this, currentIndex);
+        if (readingAhead != null)
+        {
+            cleanupCandidates.add(readingAhead);
+        }
+    }
+
     public synchronized int getCurrentPlayingIndex()
     {
         return downloadList.indexOf(localMediaPlayer.currentPlaying);
@@ -313,7 +336,7 @@ public class Downloader
 
             for (MusicDirectory.Entry song : songs)
             {
-                DownloadFile downloadFile = new DownloadFile(context, song, save);
+                DownloadFile downloadFile = createDownloadFile(song, save);
                 downloadList.add(getCurrentPlayingIndex() + offset, downloadFile);
                 offset++;
             }
@@ -322,13 +345,26 @@ public class Downloader
         {
             for (MusicDirectory.Entry song : songs)
             {
-                DownloadFile downloadFile = new DownloadFile(context, song, save);
+                DownloadFile downloadFile = createDownloadFile(song, save);
                 downloadList.add(downloadFile);
             }
         }
         revision++;
     }
 
+    // Reuses the file of a song which was read ahead, so its download continues where it stopped.
+    // A new file would write into the same partial file while the read ahead is still running
+    private DownloadFile createDownloadFile(MusicDirectory.Entry song, boolean save)
+    {
+        DownloadFile downloadFile = downloadFileCache.get(song);
+        if (downloadFile != null && !downloadList.contains(downloadFile) && !backgroundDownloadList.contains(downloadFile))
+        {
+            if (save) downloadFile.setShouldSave(true);
+            return downloadFile;
+        }
+        return new DownloadFile(context, song, save);
+    }
+
     public synchronized void downloadBackground(List<MusicDirectory.Entry> songs, boolean save)
     {
         for (MusicDirectory.Entry song : songs)
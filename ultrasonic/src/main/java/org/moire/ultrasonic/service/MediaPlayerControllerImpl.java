@@ -32,6 +32,7 @@ import org.moire.ultrasonic.domain.UserInfo;
 import org.moire.ultrasonic.featureflags.Feature;
 import org.moire.ultrasonic.featureflags.FeatureStorage;
 import org.moire.ultrasonic.util.ShufflePlayBuffer;
+import org.moire.ultrasonic.util.TaskExecutors;
 import org.moire.ultrasonic.util.Util;
 
 import java.util.Iterator;
@@ -143,7 +144,7 @@ public class MediaPlayerControllerImpl implements MediaPlayerController
 
 	public synchronized void preload()
 	{
-		MediaPlayerService.getInstance(context);
+		MediaPlayerService.requestStart(context);
 	}
 
 	@Override
@@ -600,7 +601,7 @@ public class MediaPlayerControllerImpl implements MediaPlayerController
 		final Entry song = localMediaPlayer.currentPlaying.getSong();
 		song.setUserRating(rating);
 
-		new Thread(new Runnable()
+		TaskExecutors.executeOrDefer(TaskExecutors.io, new Runnable()
 		{
 			@Override
 			public void run()
@@ -614,7 +615,7 @@ public class MediaPlayerControllerImpl implements MediaPlayerController
 					Timber.e(e);
 				}
 			}
-		}).start();
+		});
 
 		updateNotification();
 	}
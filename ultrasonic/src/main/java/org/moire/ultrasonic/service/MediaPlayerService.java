@@ -26,17 +26,17 @@ import org.moire.ultrasonic.domain.PlayerState;
 import org.moire.ultrasonic.domain.RepeatMode;
 import org.moire.ultrasonic.featureflags.Feature;
 import org.moire.ultrasonic.featureflags.FeatureStorage;
-import org.moire.ultrasonic.provider.UltrasonicAppWidgetProvider4X1;
-import org.moire.ultrasonic.provider.UltrasonicAppWidgetProvider4X2;
-import org.moire.ultrasonic.provider.UltrasonicAppWidgetProvider4X3;
-import org.moire.ultrasonic.provider.UltrasonicAppWidgetProvider4X4;
 import org.moire.ultrasonic.util.Constants;
-import org.moire.ultrasonic.util.FileUtil;
 import org.moire.ultrasonic.util.NowPlayingEventDistributor;
 import org.moire.ultrasonic.util.ShufflePlayBuffer;
 import org.moire.ultrasonic.util.SimpleServiceBinder;
+import org.moire.ultrasonic.util.TaskExecutors;
 import org.moire.ultrasonic.util.Util;
 
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
 import kotlin.Lazy;
 
 import static org.koin.java.KoinJavaComponent.inject;
@@ -58,7 +58,11 @@ public class MediaPlayerService extends Service
     private static final String NOTIFICATION_CHANNEL_NAME = "Ultrasonic background service";
     private static final int NOTIFICATION_ID = 3033;
 
+    private static final long START_TIMEOUT_MILLIS = 5000L;
+
     private static MediaPlayerService instance = null;
+    private static boolean isStartRequested = false;
+    private static final Queue<Consumer<MediaPlayerService>> pendingTasks = new LinkedList<>();
     private static final Object instanceLock = new Object();
 
     private final IBinder binder = new SimpleServiceBinder<>(this);
@@ -70,32 +74,29 @@ public class MediaPlayerService extends Service
     private final Lazy<Downloader> downloaderLazy = inject(Downloader.class);
     private final Lazy<LocalMediaPlayer> localMediaPlayerLazy = inject(LocalMediaPlayer.class);
     private final Lazy<NowPlayingEventDistributor> nowPlayingEventDistributor = inject(NowPlayingEventDistributor.class);
+    private final Lazy<NowPlayingPublisher> nowPlayingPublisher = inject(NowPlayingPublisher.class);
     private LocalMediaPlayer localMediaPlayer;
     private Downloader downloader;
     private ShufflePlayBuffer shufflePlayBuffer;
     private DownloadQueueSerializer downloadQueueSerializer;
 
+    private final Object notificationLock = new Object();
     private boolean isInForeground = false;
+    private boolean isNotificationRequested = false;
+    private Bitmap notificationImage;
     private NotificationCompat.Builder notificationBuilder;
 
     public RepeatMode getRepeatMode() { return Util.getRepeatMode(this); }
 
-    public static MediaPlayerService getInstance(Context context)
+    /**
+     * Requests the MediaPlayerService to be started if it isn't running yet. Doesn't wait for
+     * the service to be created, use executeOnStartedMediaPlayerService to run code on it.
+     */
+    public static void requestStart(Context context)
     {
-        synchronized (instanceLock) {
-            for (int i = 0; i < 20; i++) {
-                if (instance != null) return instance;
-
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-                    context.startForegroundService(new Intent(context, MediaPlayerService.class));
-                } else {
-                    context.startService(new Intent(context, MediaPlayerService.class));
-                }
-
-                Util.sleepQuietly(50L);
-            }
-
-            return instance;
+        synchronized (instanceLock)
+        {
+            if (instance == null) requestServiceStart(context);
         }
     }
 
@@ -107,23 +108,75 @@ public class MediaPlayerService extends Service
         }
     }
 
+    /**
+     * Executes the task on the player control thread when the MediaPlayerService is created.
+     * If the service isn't running yet, the task is queued and the service is started.
+     * Queued tasks are executed in the order they were submitted, when onCreate finished.
+     */
     public static void executeOnStartedMediaPlayerService(final Context context, final Consumer<MediaPlayerService> taskToExecute)
     {
-        Thread t = new Thread()
+        synchronized (instanceLock)
         {
+            if (instance != null)
+            {
+                execute(instance, taskToExecute);
+                return;
+            }
+
+            pendingTasks.add(taskToExecute);
+            requestServiceStart(context);
+        }
+    }
+
+    // Must be called while holding instanceLock
+    private static void requestServiceStart(final Context context)
+    {
+        if (isStartRequested) return;
+        isStartRequested = true;
+
+        try
+        {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                context.startForegroundService(new Intent(context, MediaPlayerService.class));
+            } else {
+                context.startService(new Intent(context, MediaPlayerService.class));
+            }
+        }
+        catch (Exception exception)
+        {
+            isStartRequested = false;
+            Timber.e(exception, "Failed to start the MediaPlayerService, %d tasks are waiting", pendingTasks.size());
+            return;
+        }
+
+        // If the service isn't created in time, the start request is repeated
+        TaskExecutors.scheduler.schedule(new Runnable()
+        {
+            @Override
             public void run()
             {
-                MediaPlayerService instance = getInstance(context);
-                if (instance == null)
+                synchronized (instanceLock)
                 {
-                    Timber.e("ExecuteOnStartedMediaPlayerService failed to get a MediaPlayerService instance!");
-                    return;
+                    if (instance != null || !isStartRequested) return;
+
+                    Timber.w("MediaPlayerService wasn't created in %d ms, %d tasks are waiting", START_TIMEOUT_MILLIS, pendingTasks.size());
+                    isStartRequested = false;
+                    requestServiceStart(context);
                 }
+            }
+        }, START_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
 
-                taskToExecute.accept(instance);
+    private static void execute(final MediaPlayerService service, final Consumer<MediaPlayerService> task)
+    {
+        TaskExecutors.playerControl.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                task.accept(service);
             }
-        };
-        t.start();
+        });
     }
 
     @Nullable
@@ -145,6 +198,7 @@ public class MediaPlayerService extends Service
 
         downloader.onCreate();
         shufflePlayBuffer.onCreate();
+        scrobbler.start();
 
         localMediaPlayer.init();
         setupOnCurrentPlayingChangedHandler();
@@ -177,8 +231,17 @@ public class MediaPlayerService extends Service
         // We should use a single notification builder, otherwise the notification may not be updated
         notificationBuilder = new NotificationCompat.Builder(this, NOTIFICATION_CHANNEL_ID);
         // Update notification early. It is better to show an empty one temporarily than waiting too long and letting Android kill the app
-        updateNotification(IDLE, null);
-        instance = this;
+        postNotification(IDLE, null, null);
+        nowPlayingPublisher.getValue().addTarget(notificationTarget);
+
+        synchronized (instanceLock)
+        {
+            instance = this;
+            isStartRequested = false;
+
+            // Tasks submitted after this point see the instance, so the order is kept
+            while (!pendingTasks.isEmpty()) execute(this, pendingTasks.poll());
+        }
 
         Timber.i("MediaPlayerService created");
     }
@@ -195,12 +258,17 @@ public class MediaPlayerService extends Service
     {
         super.onDestroy();
 
-        instance = null;
+        synchronized (instanceLock)
+        {
+            instance = null;
+        }
 
         try {
             localMediaPlayer.release();
             downloader.stop();
             shufflePlayBuffer.onDestroy();
+            scrobbler.stop();
+            nowPlayingPublisher.getValue().removeTarget(notificationTarget);
         } catch (Throwable ignored) {
         }
 
@@ -274,27 +342,21 @@ public class MediaPlayerService extends Service
                             downloader.getDownloads().size(), downloader.getCurrentPlayingIndex() + 1);
                 }
 
-                // Update widget
-                PlayerState playerState = localMediaPlayer.playerState;
-                MusicDirectory.Entry song = currentPlaying == null? null : currentPlaying.getSong();
-                UltrasonicAppWidgetProvider4X1.getInstance().notifyChange(MediaPlayerService.this, song, playerState == PlayerState.STARTED, false);
-                UltrasonicAppWidgetProvider4X2.getInstance().notifyChange(MediaPlayerService.this, song, playerState == PlayerState.STARTED, true);
-                UltrasonicAppWidgetProvider4X3.getInstance().notifyChange(MediaPlayerService.this, song, playerState == PlayerState.STARTED, false);
-                UltrasonicAppWidgetProvider4X4.getInstance().notifyChange(MediaPlayerService.this, song, playerState == PlayerState.STARTED, false);
-
                 if (currentPlaying != null)
                 {
-                    updateNotification(localMediaPlayer.playerState, currentPlaying);
+                    requestNotification(localMediaPlayer.playerState, currentPlaying.getSong());
                     nowPlayingEventDistributor.getValue().raiseShowNowPlayingEvent();
                 }
                 else
                 {
                     nowPlayingEventDistributor.getValue().raiseHideNowPlayingEvent();
-                    stopForeground(true);
+                    hideNotification();
                     localMediaPlayer.clearRemoteControl();
-                    isInForeground = false;
                     stopIfIdle();
                 }
+
+                // Update the widgets, and the notification if it is shown
+                nowPlayingPublisher.getValue().update(localMediaPlayer.playerState, currentPlaying);
             }
         };
     }
@@ -489,30 +551,26 @@ public class MediaPlayerService extends Service
                         downloader.downloadList.size() + downloader.backgroundDownloadList.size(),
                         downloader.downloadList.indexOf(currentPlaying) + 1, getPlayerPosition());
 
-                // Update widget
-                UltrasonicAppWidgetProvider4X1.getInstance().notifyChange(MediaPlayerService.this, song, playerState == PlayerState.STARTED, false);
-                UltrasonicAppWidgetProvider4X2.getInstance().notifyChange(MediaPlayerService.this, song, playerState == PlayerState.STARTED, true);
-                UltrasonicAppWidgetProvider4X3.getInstance().notifyChange(MediaPlayerService.this, song, playerState == PlayerState.STARTED, false);
-                UltrasonicAppWidgetProvider4X4.getInstance().notifyChange(MediaPlayerService.this, song, playerState == PlayerState.STARTED, false);
-
                 if (show)
                 {
-                    // Only update notification if player state is one that will change the icon
+                    // Only show notification if player state is one that will change the icon
                     if (playerState == PlayerState.STARTED || playerState == PlayerState.PAUSED)
                     {
-                        updateNotification(playerState, currentPlaying);
+                        requestNotification(playerState, song);
                         nowPlayingEventDistributor.getValue().raiseShowNowPlayingEvent();
                     }
                 }
                 else
                 {
                     nowPlayingEventDistributor.getValue().raiseHideNowPlayingEvent();
-                    stopForeground(true);
+                    hideNotification();
                     localMediaPlayer.clearRemoteControl();
-                    isInForeground = false;
                     stopIfIdle();
                 }
 
+                // Update the widgets, and the notification if it is shown
+                nowPlayingPublisher.getValue().update(playerState, currentPlaying);
+
                 if (playerState == STARTED)
                 {
                     scrobbler.scrobble(MediaPlayerService.this, currentPlaying, false);
@@ -597,23 +655,84 @@ public class MediaPlayerService extends Service
         }
     }
 
+    /**
+     * Requests the notification to be updated with the current song.
+     * The update is published asynchronously, together with the widgets and the remote control.
+     */
     public void updateNotification(PlayerState playerState, DownloadFile currentPlaying)
+    {
+        nowPlayingPublisher.getValue().update(playerState, currentPlaying);
+    }
+
+    /**
+     * Requests the notification to be shown. When the service isn't in the foreground yet, the
+     * notification is posted right away, so it is in the foreground as soon as the player events
+     * require it. All later updates are coalesced by the publisher, which posts the notification
+     * once the album art of the song was decoded.
+     */
+    private void requestNotification(PlayerState playerState, MusicDirectory.Entry song)
+    {
+        if (song == null) return;
+
+        synchronized (notificationLock)
+        {
+            isNotificationRequested = true;
+            if (isInForeground) return;
+
+            // The previous album art is kept until the publisher decoded the new one
+            postNotification(playerState == STARTED ? STARTED : PAUSED, song, notificationImage);
+        }
+    }
+
+    private void hideNotification()
+    {
+        synchronized (notificationLock)
+        {
+            isNotificationRequested = false;
+            stopForeground(true);
+            isInForeground = false;
+        }
+
+        // The notification must be published again when it is shown the next time
+        nowPlayingPublisher.getValue().invalidate();
+    }
+
+    private final NowPlayingPublisher.Target notificationTarget = new NowPlayingPublisher.Target()
+    {
+        @Override
+        public void onNowPlayingChanged(NowPlayingPublisher.NowPlaying nowPlaying, NowPlayingPublisher.AlbumArt albumArt)
+        {
+            if (nowPlaying.getSong() == null) return;
+
+            // The album art is decoded before locking, so hiding the notification never waits for it
+            Bitmap nowPlayingImage = albumArt.get(Util.getNotificationImageSize(MediaPlayerService.this));
+
+            synchronized (notificationLock)
+            {
+                notificationImage = nowPlayingImage;
+                if (!isNotificationRequested) return;
+                postNotification(nowPlaying.isPlaying() ? STARTED : PAUSED, nowPlaying.getSong(), nowPlayingImage);
+            }
+        }
+    };
+
+    private void postNotification(PlayerState playerState, MusicDirectory.Entry song, Bitmap nowPlayingImage)
     {
         if (Util.isNotificationEnabled(this)) {
             if (isInForeground) {
                 if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
                     NotificationManager notificationManager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
-                    notificationManager.notify(NOTIFICATION_ID, buildForegroundNotification(playerState, currentPlaying));
+                    notificationManager.notify(NOTIFICATION_ID, buildForegroundNotification(playerState, song, nowPlayingImage));
                 }
                 else {
                     final NotificationManagerCompat notificationManager =
                             NotificationManagerCompat.from(this);
-                    notificationManager.notify(NOTIFICATION_ID, buildForegroundNotification(playerState, currentPlaying));
+                    notificationManager.notify(NOTIFICATION_ID, buildForegroundNotification(playerState, song, nowPlayingImage));
                 }
                 Timber.w("--- Updated notification");
             }
             else {
-                startForeground(NOTIFICATION_ID, buildForegroundNotification(playerState, currentPlaying));
+                startForeground(NOTIFICATION_ID, buildForegroundNotification(playerState, song, nowPlayingImage));
                 isInForeground = true;
                 Timber.w("--- Created Foreground notification");
             }
@@ -621,7 +740,7 @@ public class MediaPlayerService extends Service
     }
 
     @SuppressWarnings("IconColors")
-    private Notification buildForegroundNotification(PlayerState playerState, DownloadFile currentPlaying) {
+    private Notification buildForegroundNotification(PlayerState playerState, MusicDirectory.Entry song, Bitmap nowPlayingImage) {
         notificationBuilder.setSmallIcon(R.drawable.ic_stat_ultrasonic);
 
         notificationBuilder.setAutoCancel(false);
@@ -651,27 +770,18 @@ public class MediaPlayerService extends Service
             bigView.setImageViewResource(R.id.control_play, R.drawable.media_pause_normal_dark);
         }
 
-        if (currentPlaying != null) {
-            final MusicDirectory.Entry song = currentPlaying.getSong();
+        if (song != null) {
             final String title = song.getTitle();
             final String text = song.getArtist();
             final String album = song.getAlbum();
             final int rating = song.getUserRating() == null ? 0 : song.getUserRating();
-            final int imageSize = Util.getNotificationImageSize(this);
-
-            try {
-                final Bitmap nowPlayingImage = FileUtil.getAlbumArtBitmap(this, currentPlaying.getSong(), imageSize, true);
-                if (nowPlayingImage == null) {
-                    contentView.setImageViewResource(R.id.notification_image, R.drawable.unknown_album);
-                    bigView.setImageViewResource(R.id.notification_image, R.drawable.unknown_album);
-                } else {
-                    contentView.setImageViewBitmap(R.id.notification_image, nowPlayingImage);
-                    bigView.setImageViewBitmap(R.id.notification_image, nowPlayingImage);
-                }
-            } catch (Exception x) {
-                Timber.w(x, "Failed to get notification cover art");
+
+            if (nowPlayingImage == null) {
                 contentView.setImageViewResource(R.id.notification_image, R.drawable.unknown_album);
                 bigView.setImageViewResource(R.id.notification_image, R.drawable.unknown_album);
+            } else {
+                contentView.setImageViewBitmap(R.id.notification_image, nowPlayingImage);
+                bigView.setImageViewBitmap(R.id.notification_image, nowPlayingImage);
             }
 
             contentView.setTextViewText(R.id.trackname, title);
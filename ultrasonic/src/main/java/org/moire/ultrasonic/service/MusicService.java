@@ -90,6 +90,8 @@ public interface MusicService
 
 	void scrobble(String id, boolean submission, Context context) throws Exception;
 
+	void scrobble(List<String> ids, List<Long> times, Context context) throws Exception;
+
 	MusicDirectory getAlbumList(String type, int size, int offset, Context context) throws Exception;
 
 	MusicDirectory getAlbumList2(String type, int size, int offset, Context context) throws Exception;
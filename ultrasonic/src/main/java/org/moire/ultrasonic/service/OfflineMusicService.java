@@ -44,26 +44,19 @@ import org.moire.ultrasonic.domain.UserInfo;
 import org.moire.ultrasonic.util.CancellableTask;
 import org.moire.ultrasonic.util.Constants;
 import org.moire.ultrasonic.util.FileUtil;
+import org.moire.ultrasonic.util.NameSortKeys;
 import org.moire.ultrasonic.util.Util;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.InputStream;
 import java.io.Reader;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Random;
 import java.util.SortedSet;
 import java.util.concurrent.TimeUnit;
-import java.util.regex.Pattern;
 
 import kotlin.Lazy;
 
@@ -74,97 +67,27 @@ import static org.koin.java.KoinJavaComponent.inject;
  */
 public class OfflineMusicService implements MusicService
 {
-	private static final Pattern COMPILE = Pattern.compile(" ");
 	private final Lazy<ActiveServerProvider> activeServerProvider = inject(ActiveServerProvider.class);
+	private final Lazy<PlaylistStorage> playlistStorage = inject(PlaylistStorage.class);
+	private final Lazy<OfflineMusicIndex> offlineMusicIndex = inject(OfflineMusicIndex.class);
 
 	@Override
 	public Indexes getIndexes(String musicFolderId, boolean refresh, Context context)
 	{
-		List<Artist> artists = new ArrayList<>();
-		File root = FileUtil.getMusicDirectory(context);
-		for (File file : FileUtil.listFiles(root))
-		{
-			if (file.isDirectory())
-			{
-				Artist artist = new Artist();
-				artist.setId(file.getPath());
-				artist.setIndex(file.getName().substring(0, 1));
-				artist.setName(file.getName());
-				artists.add(artist);
-			}
-		}
-
-		String ignoredArticlesString = "The El La Los Las Le Les";
-		final String[] ignoredArticles = COMPILE.split(ignoredArticlesString);
-
-		Collections.sort(artists, new Comparator<Artist>()
-		{
-			@Override
-			public int compare(Artist lhsArtist, Artist rhsArtist)
-			{
-				String lhs = lhsArtist.getName().toLowerCase();
-				String rhs = rhsArtist.getName().toLowerCase();
-
-				char lhs1 = lhs.charAt(0);
-				char rhs1 = rhs.charAt(0);
-
-				if (Character.isDigit(lhs1) && !Character.isDigit(rhs1))
-				{
-					return 1;
-				}
-
-				if (Character.isDigit(rhs1) && !Character.isDigit(lhs1))
-				{
-					return -1;
-				}
-
-				for (String article : ignoredArticles)
-				{
-					int index = lhs.indexOf(String.format("%s ", article.toLowerCase()));
+		String ignoredArticles = NameSortKeys.DEFAULT_IGNORED_ARTICLES;
+		List<Artist> artists = new ArrayList<>(NameSortKeys.forArticles(ignoredArticles)
+				.sortArtists(offlineMusicIndex.getValue().getArtists()));
 
-					if (index == 0)
-					{
-						lhs = lhs.substring(article.length() + 1);
-					}
-
-					index = rhs.indexOf(String.format("%s ", article.toLowerCase()));
-
-					if (index == 0)
-					{
-						rhs = rhs.substring(article.length() + 1);
-					}
-				}
-
-				return lhs.compareTo(rhs);
-			}
-		});
-
-		return new Indexes(0L, ignoredArticlesString, Collections.<Artist>emptyList(), artists);
+		return new Indexes(0L, ignoredArticles, Collections.<Artist>emptyList(), artists);
 	}
 
 	@Override
 	public MusicDirectory getMusicDirectory(String id, String artistName, boolean refresh, Context context)
 	{
-		File dir = new File(id);
-		MusicDirectory result = new MusicDirectory();
-		result.setName(dir.getName());
-
-		Collection<String> names = new HashSet<>();
-
-		for (File file : FileUtil.listMediaFiles(dir))
-		{
-			String name = getName(file);
-			if (name != null & !names.contains(name))
-			{
-				names.add(name);
-				result.addChild(createEntry(context, file, name));
-			}
-		}
-
-		return result;
+		return offlineMusicIndex.getValue().getMusicDirectory(id);
 	}
 
-	private static String getName(File file)
+	static String getName(File file)
 	{
 		String name = file.getName();
 
@@ -182,7 +105,7 @@ public class OfflineMusicService implements MusicService
 		return FileUtil.getBaseName(name);
 	}
 
-	private static MusicDirectory.Entry createEntry(Context context, File file, String name)
+	static MusicDirectory.Entry createEntry(Context context, File file, String name)
 	{
 		MusicDirectory.Entry entry = new MusicDirectory.Entry();
 		entry.setDirectory(file.isDirectory());
@@ -364,145 +287,7 @@ public class OfflineMusicService implements MusicService
 	@Override
 	public SearchResult search(SearchCriteria criteria, Context context)
 	{
-		List<Artist> artists = new ArrayList<>();
-		List<MusicDirectory.Entry> albums = new ArrayList<>();
-		List<MusicDirectory.Entry> songs = new ArrayList<>();
-		File root = FileUtil.getMusicDirectory(context);
-		int closeness;
-
-		for (File artistFile : FileUtil.listFiles(root))
-		{
-			String artistName = artistFile.getName();
-			if (artistFile.isDirectory())
-			{
-				if ((closeness = matchCriteria(criteria, artistName)) > 0)
-				{
-					Artist artist = new Artist();
-					artist.setId(artistFile.getPath());
-					artist.setIndex(artistFile.getName().substring(0, 1));
-					artist.setName(artistName);
-					artist.setCloseness(closeness);
-					artists.add(artist);
-				}
-
-				recursiveAlbumSearch(artistName, artistFile, criteria, context, albums, songs);
-			}
-		}
-
-		Collections.sort(artists, new Comparator<Artist>()
-		{
-			@Override
-			public int compare(Artist lhs, Artist rhs)
-			{
-				if (lhs.getCloseness() == rhs.getCloseness())
-				{
-					return 0;
-				}
-
-				else return lhs.getCloseness() > rhs.getCloseness() ? -1 : 1;
-			}
-		});
-		Collections.sort(albums, new Comparator<MusicDirectory.Entry>()
-		{
-			@Override
-			public int compare(MusicDirectory.Entry lhs, MusicDirectory.Entry rhs)
-			{
-				if (lhs.getCloseness() == rhs.getCloseness())
-				{
-					return 0;
-				}
-
-				else return lhs.getCloseness() > rhs.getCloseness() ? -1 : 1;
-			}
-		});
-		Collections.sort(songs, new Comparator<MusicDirectory.Entry>()
-		{
-			@Override
-			public int compare(MusicDirectory.Entry lhs, MusicDirectory.Entry rhs)
-			{
-				if (lhs.getCloseness() == rhs.getCloseness())
-				{
-					return 0;
-				}
-
-				else return lhs.getCloseness() > rhs.getCloseness() ? -1 : 1;
-			}
-		});
-
-		return new SearchResult(artists, albums, songs);
-	}
-
-	private static void recursiveAlbumSearch(String artistName, File file, SearchCriteria criteria, Context context, List<MusicDirectory.Entry> albums, List<MusicDirectory.Entry> songs)
-	{
-		int closeness;
-
-		for (File albumFile : FileUtil.listMediaFiles(file))
-		{
-			if (albumFile.isDirectory())
-			{
-				String albumName = getName(albumFile);
-				if ((closeness = matchCriteria(criteria, albumName)) > 0)
-				{
-					MusicDirectory.Entry album = createEntry(context, albumFile, albumName);
-					album.setArtist(artistName);
-					album.setCloseness(closeness);
-					albums.add(album);
-				}
-
-				for (File songFile : FileUtil.listMediaFiles(albumFile))
-				{
-					String songName = getName(songFile);
-
-					if (songFile.isDirectory())
-					{
-						recursiveAlbumSearch(artistName, songFile, criteria, context, albums, songs);
-					}
-					else if ((closeness = matchCriteria(criteria, songName)) > 0)
-					{
-						MusicDirectory.Entry song = createEntry(context, albumFile, songName);
-						song.setArtist(artistName);
-						song.setAlbum(albumName);
-						song.setCloseness(closeness);
-						songs.add(song);
-					}
-				}
-			}
-			else
-			{
-				String songName = getName(albumFile);
-
-				if ((closeness = matchCriteria(criteria, songName)) > 0)
-				{
-					MusicDirectory.Entry song = createEntry(context, albumFile, songName);
-					song.setArtist(artistName);
-					song.setAlbum(songName);
-					song.setCloseness(closeness);
-					songs.add(song);
-				}
-			}
-		}
-	}
-
-	private static int matchCriteria(SearchCriteria criteria, String name)
-	{
-		String query = criteria.getQuery().toLowerCase();
-		String[] queryParts = COMPILE.split(query);
-		String[] nameParts = COMPILE.split(name.toLowerCase());
-
-		int closeness = 0;
-
-		for (String queryPart : queryParts)
-		{
-			for (String namePart : nameParts)
-			{
-				if (namePart.equals(queryPart))
-				{
-					closeness++;
-				}
-			}
-		}
-
-		return closeness;
+		return offlineMusicIndex.getValue().search(criteria);
 	}
 
 	@Override
@@ -586,17 +371,13 @@ public class OfflineMusicService implements MusicService
 			String line = buffer.readLine();
 			if (!"#EXTM3U".equals(line)) return playlist;
 
+			List<String> paths = new ArrayList<>();
 			while ((line = buffer.readLine()) != null)
 			{
-				File entryFile = new File(line);
-				String entryName = getName(entryFile);
-
-				if (entryFile.exists() && entryName != null)
-				{
-					playlist.addChild(createEntry(context, entryFile, entryName));
-				}
+				paths.add(line);
 			}
 
+			playlist.addAll(offlineMusicIndex.getValue().getSongs(paths));
 			return playlist;
 		}
 		finally
@@ -609,32 +390,13 @@ public class OfflineMusicService implements MusicService
 	@Override
 	public void createPlaylist(String id, String name, List<MusicDirectory.Entry> entries, Context context) throws Exception
 	{
-		File playlistFile = FileUtil.getPlaylistFile(context, activeServerProvider.getValue().getActiveServer().getName(), name);
-		FileWriter fw = new FileWriter(playlistFile);
-		BufferedWriter bw = new BufferedWriter(fw);
 		try
 		{
-			fw.write("#EXTM3U\n");
-			for (MusicDirectory.Entry e : entries)
-			{
-				String filePath = FileUtil.getSongFile(context, e).getAbsolutePath();
-				if (!new File(filePath).exists())
-				{
-					String ext = FileUtil.getExtension(filePath);
-					String base = FileUtil.getBaseName(filePath);
-					filePath = base + ".complete." + ext;
-				}
-				fw.write(filePath + '\n');
-			}
+			playlistStorage.getValue().save(activeServerProvider.getValue().getActiveServer().getName(), name, entries);
 		}
 		catch (Exception e)
 		{
-			Timber.w("Failed to save playlist: %s", name);
-		}
-		finally
-		{
-			bw.close();
-			fw.close();
+			Timber.w(e, "Failed to save playlist: %s", name);
 		}
 	}
 
@@ -642,39 +404,7 @@ public class OfflineMusicService implements MusicService
 	@Override
 	public MusicDirectory getRandomSongs(int size, Context context)
 	{
-		File root = FileUtil.getMusicDirectory(context);
-		List<File> children = new LinkedList<>();
-		listFilesRecursively(root, children);
-		MusicDirectory result = new MusicDirectory();
-
-		if (children.isEmpty())
-		{
-			return result;
-		}
-
-		Random random = new java.security.SecureRandom();
-		for (int i = 0; i < size; i++)
-		{
-			File file = children.get(random.nextInt(children.size()));
-			result.addChild(createEntry(context, file, getName(file)));
-		}
-
-		return result;
-	}
-
-	private static void listFilesRecursively(File parent, List<File> children)
-	{
-		for (File file : FileUtil.listMediaFiles(parent))
-		{
-			if (file.isFile())
-			{
-				children.add(file);
-			}
-			else
-			{
-				listFilesRecursively(file, children);
-			}
-		}
+		return offlineMusicIndex.getValue().getRandomSongs(size);
 	}
 
 	@Override
@@ -701,6 +431,12 @@ public class OfflineMusicService implements MusicService
 		throw new OfflineException("Scrobbling not available in offline mode");
 	}
 
+	@Override
+	public void scrobble(List<String> ids, List<Long> times, Context context) throws Exception
+	{
+		throw new OfflineException("Scrobbling not available in offline mode");
+	}
+
 	@Override
 	public MusicDirectory getAlbumList(String type, int size, int offset, Context context) throws Exception
 	{
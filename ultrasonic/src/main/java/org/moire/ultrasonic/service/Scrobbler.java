@@ -4,18 +4,36 @@ import android.content.Context;
 import timber.log.Timber;
 
 import org.moire.ultrasonic.data.ActiveServerProvider;
+import org.moire.ultrasonic.util.TaskExecutors;
+
+import kotlin.Lazy;
+
+import static org.koin.java.KoinJavaComponent.inject;
 
 /**
  * Scrobbles played songs to Last.fm.
+ * Submissions are queued persistently, so they are not lost while the server is unreachable.
  *
  * @author Sindre Mehus
  * @version $Id$
  */
 public class Scrobbler
 {
+	private final Lazy<ScrobbleQueue> scrobbleQueue = inject(ScrobbleQueue.class);
+
 	private String lastSubmission;
 	private String lastNowPlaying;
 
+	public void start()
+	{
+		scrobbleQueue.getValue().start();
+	}
+
+	public void stop()
+	{
+		scrobbleQueue.getValue().stop();
+	}
+
 	public void scrobble(final Context context, final DownloadFile song, final boolean submission)
 	{
 		if (song == null || !ActiveServerProvider.Companion.isScrobblingEnabled(context)) return;
@@ -31,7 +49,16 @@ public class Scrobbler
 		if (submission)	lastSubmission = id;
 		else lastNowPlaying = id;
 
-		new Thread(String.format("Scrobble %s", song))
+		if (submission)
+		{
+			scrobbleQueue.getValue().add(id, System.currentTimeMillis());
+			Timber.i("Queued scrobble submission for %s", song);
+			return;
+		}
+
+		// Now playing is only meaningful while the song is playing, so it isn't queued,
+		// nor submitted again when the pool is full
+		TaskExecutors.io.tryExecute(new Runnable()
 		{
 			@Override
 			public void run()
@@ -39,14 +66,14 @@ public class Scrobbler
 				MusicService service = MusicServiceFactory.getMusicService(context);
 				try
 				{
-					service.scrobble(id, submission, context);
-					Timber.i("Scrobbled '%s' for %s", submission ? "submission" : "now playing", song);
+					service.scrobble(id, false, context);
+					Timber.i("Scrobbled 'now playing' for %s", song);
 				}
 				catch (Exception x)
 				{
-					Timber.i(x, "Failed to scrobble'%s' for %s", submission ? "submission" : "now playing", song);
+					Timber.i(x, "Failed to scrobble 'now playing' for %s", song);
 				}
 			}
-		}.start();
+		});
 	}
 }
@@ -0,0 +1,42 @@
+package org.moire.ultrasonic.service;
+
+import org.moire.ultrasonic.domain.Genre;
+import org.moire.ultrasonic.domain.Indexes;
+import org.moire.ultrasonic.domain.MusicDirectory;
+import org.moire.ultrasonic.domain.MusicFolder;
+import org.moire.ultrasonic.domain.Playlist;
+import org.moire.ultrasonic.domain.PodcastsChannel;
+import org.moire.ultrasonic.domain.SearchResult;
+import org.moire.ultrasonic.domain.UserInfo;
+import org.moire.ultrasonic.util.LRUCache;
+import org.moire.ultrasonic.util.TimeLimitedCache;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The in-memory metadata caches of a single server, used by {@link CachedMusicService}.
+ * Instances are kept by {@link ServerMetadataCaches}, so they survive switching to another server.
+ */
+public class ServerMetadataCache
+{
+	private static final int MUSIC_DIR_CACHE_SIZE = 100;
+
+	final LRUCache<String, TimeLimitedCache<MusicDirectory>> musicDirectories = new LRUCache<>(MUSIC_DIR_CACHE_SIZE);
+	final LRUCache<String, TimeLimitedCache<MusicDirectory>> artist = new LRUCache<>(MUSIC_DIR_CACHE_SIZE);
+	final LRUCache<String, TimeLimitedCache<MusicDirectory>> album = new LRUCache<>(MUSIC_DIR_CACHE_SIZE);
+	final LRUCache<String, TimeLimitedCache<UserInfo>> userInfo = new LRUCache<>(MUSIC_DIR_CACHE_SIZE);
+	final TimeLimitedCache<Boolean> licenseValid = new TimeLimitedCache<>(120, TimeUnit.SECONDS);
+	final TimeLimitedCache<Indexes> indexes = new TimeLimitedCache<>(60 * 60, TimeUnit.SECONDS);
+	final TimeLimitedCache<Indexes> artists = new TimeLimitedCache<>(60 * 60, TimeUnit.SECONDS);
+	final TimeLimitedCache<List<Playlist>> playlists = new TimeLimitedCache<>(3600, TimeUnit.SECONDS);
+	final TimeLimitedCache<List<PodcastsChannel>> podcastsChannels = new TimeLimitedCache<>(3600, TimeUnit.SECONDS);
+	final TimeLimitedCache<List<MusicFolder>> musicFolders = new TimeLimitedCache<>(10 * 3600, TimeUnit.SECONDS);
+	final TimeLimitedCache<List<Genre>> genres = new TimeLimitedCache<>(10 * 3600, TimeUnit.SECONDS);
+
+	// Loaded in advance by LibraryPrewarmer, each is only returned once
+	final Map<String, TimeLimitedCache<MusicDirectory>> prefetchedAlbumLists = new ConcurrentHashMap<>();
+	final TimeLimitedCache<SearchResult> prefetchedStarred2 = new TimeLimitedCache<>(300, TimeUnit.SECONDS);
+}
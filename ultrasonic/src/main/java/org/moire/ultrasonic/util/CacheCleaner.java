@@ -9,6 +9,8 @@ import org.moire.ultrasonic.data.ActiveServerProvider;
 import org.moire.ultrasonic.domain.Playlist;
 import org.moire.ultrasonic.service.DownloadFile;
 import org.moire.ultrasonic.service.Downloader;
+import org.moire.ultrasonic.service.OfflineMusicIndex;
+import org.moire.ultrasonic.service.PlaylistStorage;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -18,7 +20,6 @@ import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.SortedSet;
 
 import kotlin.Lazy;
 
@@ -39,6 +40,8 @@ public class CacheCleaner
 	private final Context context;
 	private Lazy<Downloader> downloader = inject(Downloader.class);
 	private Lazy<ActiveServerProvider> activeServerProvider = inject(ActiveServerProvider.class);
+	private Lazy<OfflineMusicIndex> offlineMusicIndex = inject(OfflineMusicIndex.class);
+	private Lazy<PlaylistStorage> playlistStorage = inject(PlaylistStorage.class);
 
 	public CacheCleaner(Context context)
 	{
@@ -147,7 +150,7 @@ public class CacheCleaner
 		return bytesToDelete;
 	}
 
-	private static void deleteFiles(Collection<File> files, Collection<File> doNotDelete, long bytesToDelete, boolean deletePartials)
+	private void deleteFiles(Collection<File> files, Collection<File> doNotDelete, long bytesToDelete, boolean deletePartials)
 	{
 		if (files.isEmpty())
 		{
@@ -168,6 +171,7 @@ public class CacheCleaner
 					if (Util.delete(file))
 					{
 						bytesDeleted += size;
+						offlineMusicIndex.getValue().remove(file);
 					}
 				}
 			}
@@ -302,17 +306,7 @@ public class CacheCleaner
 			{
 				Thread.currentThread().setName("BackgroundPlaylistsCleanup");
 				String server = activeServerProvider.getValue().getActiveServer().getName();
-				SortedSet<File> playlistFiles = FileUtil.listFiles(FileUtil.getPlaylistDirectory(context, server));
-				List<Playlist> playlists = params[0];
-				for (Playlist playlist : playlists)
-				{
-					playlistFiles.remove(FileUtil.getPlaylistFile(context, server, playlist.getName()));
-				}
-
-				for (File playlist : playlistFiles)
-				{
-					playlist.delete();
-				}
+				playlistStorage.getValue().deleteRemovedPlaylists(server, params[0]);
 			}
 			catch (RuntimeException x)
 			{
@@ -20,6 +20,7 @@ package org.moire.ultrasonic.util;
 
 import timber.log.Timber;
 
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -31,7 +32,6 @@ public abstract class CancellableTask
 {
 	private final AtomicBoolean running = new AtomicBoolean(false);
 	private final AtomicBoolean cancelled = new AtomicBoolean(false);
-	private final AtomicReference<Thread> thread = new AtomicReference<Thread>();
 	private final AtomicReference<OnCancelListener> cancelListener = new AtomicReference<OnCancelListener>();
 
 	public void cancel()
@@ -72,25 +72,34 @@ public abstract class CancellableTask
 
 	public void start()
 	{
-		thread.set(new Thread()
+		// Set before the task is queued, so it isn't started twice while waiting for a thread
+		running.set(true);
+		try
 		{
-			@Override
-			public void run()
+			TaskExecutors.transfer.execute(new Runnable()
 			{
-				running.set(true);
-				Timber.i("Starting thread for %s", CancellableTask.this);
-				try
+				@Override
+				public void run()
 				{
-					execute();
+					Timber.i("Starting thread for %s", CancellableTask.this);
+					try
+					{
+						execute();
+					}
+					finally
+					{
+						running.set(false);
+						Timber.i("Stopping thread for %s", CancellableTask.this);
+					}
 				}
-				finally
-				{
-					running.set(false);
-					Timber.i("Stopping thread for %s", CancellableTask.this);
-				}
-			}
-		});
-		thread.get().start();
+			});
+		}
+		catch (RejectedExecutionException x)
+		{
+			// Not running, so the owner can start it again later
+			running.set(false);
+			Timber.w("No thread to start %s", CancellableTask.this);
+		}
 	}
 
 	public static interface OnCancelListener
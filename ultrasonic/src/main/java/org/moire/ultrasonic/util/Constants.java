@@ -81,9 +81,12 @@ public final class Constants
 	public static final String PREFERENCES_KEY_SHOW_TRACK_NUMBER = "showTrackNumber";
 	public static final String PREFERENCES_KEY_MAX_BITRATE_WIFI = "maxBitrateWifi";
 	public static final String PREFERENCES_KEY_MAX_BITRATE_MOBILE = "maxBitrateMobile";
+	public static final String PREFERENCES_KEY_ADAPTIVE_BITRATE = "adaptiveBitrate";
+	public static final String PREFERENCES_KEY_MIN_BITRATE = "minBitrate";
 	public static final String PREFERENCES_KEY_CACHE_SIZE = "cacheSize";
 	public static final String PREFERENCES_KEY_CACHE_LOCATION = "cacheLocation";
 	public static final String PREFERENCES_KEY_PRELOAD_COUNT = "preloadCount";
+	public static final String PREFERENCES_KEY_PREWARM_BUDGET = "prewarmBudget";
 	public static final String PREFERENCES_KEY_HIDE_MEDIA = "hideMedia";
 	public static final String PREFERENCES_KEY_MEDIA_BUTTONS = "mediaButtons";
 	public static final String PREFERENCES_KEY_SCREEN_LIT_ON_DOWNLOAD = "screenLitOnDownload";
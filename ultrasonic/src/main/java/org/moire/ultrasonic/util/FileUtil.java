@@ -64,7 +64,16 @@ public class FileUtil
 
 	public static File getSongFile(Context context, MusicDirectory.Entry song)
 	{
-		File dir = getAlbumDirectory(context, song);
+		return getSongFile(getMusicDirectory(context), song);
+	}
+
+	/**
+	 * Returns the file of the song in the given music directory.
+	 * Used when the files of many songs are needed, so the music directory is only resolved once.
+	 */
+	public static File getSongFile(File musicDirectory, MusicDirectory.Entry song)
+	{
+		File dir = getAlbumDirectory(musicDirectory, song);
 
 		// Do not generate new name for offline files. Offline files will have their Path as their Id.
 		if (!TextUtils.isEmpty(song.getId()))
@@ -316,12 +325,17 @@ public class FileUtil
 			return null;
 		}
 
+		return getAlbumDirectory(getMusicDirectory(context), entry);
+	}
+
+	private static File getAlbumDirectory(File musicDirectory, MusicDirectory.Entry entry)
+	{
 		File dir;
 
 		if (!TextUtils.isEmpty(entry.getPath()))
 		{
 			File f = new File(fileSystemSafeDir(entry.getPath()));
-			dir = new File(String.format("%s/%s", getMusicDirectory(context).getPath(), entry.isDirectory() ? f.getPath() : f.getParent()));
+			dir = new File(String.format("%s/%s", musicDirectory.getPath(), entry.isDirectory() ? f.getPath() : f.getParent()));
 		}
 		else
 		{
@@ -333,7 +347,7 @@ public class FileUtil
 				album = fileSystemSafe(entry.getTitle());
 			}
 
-			dir = new File(String.format("%s/%s/%s", getMusicDirectory(context).getPath(), artist, album));
+			dir = new File(String.format("%s/%s/%s", musicDirectory.getPath(), artist, album));
 		}
 
 		return dir;
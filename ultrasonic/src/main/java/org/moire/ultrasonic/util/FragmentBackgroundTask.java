@@ -4,6 +4,8 @@ import android.app.Activity;
 
 import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
 
+import java.util.concurrent.RejectedExecutionException;
+
 /**
  * @author Sindre Mehus
  * @version $Id$
@@ -31,55 +33,68 @@ public abstract class FragmentBackgroundTask<T> extends BackgroundTask<T>
 			if (swipe != null) swipe.setRefreshing(true);
 		}
 
-		new Thread()
+		try
 		{
-			@Override
-			public void run()
+			TaskExecutors.io.execute(new Runnable()
 			{
-				try
+				@Override
+				public void run()
 				{
-					final T result = doInBackground();
-					if (cancel.isCancellationRequested())
+					try
 					{
-						return;
-					}
+						final T result = doInBackground();
+						if (cancel.isCancellationRequested())
+						{
+							return;
+						}
 
-					getHandler().post(new Runnable()
-					{
-						@Override
-						public void run()
+						getHandler().post(new Runnable()
 						{
-							if (changeProgress)
+							@Override
+							public void run()
 							{
-								if (swipe != null) swipe.setRefreshing(false);
-							}
+								if (changeProgress)
+								{
+									if (swipe != null) swipe.setRefreshing(false);
+								}
 
-							done(result);
-						}
-					});
-				}
-				catch (final Throwable t)
-				{
-					if (cancel.isCancellationRequested())
-					{
-						return;
+								done(result);
+							}
+						});
 					}
-					getHandler().post(new Runnable()
+					catch (final Throwable t)
 					{
-						@Override
-						public void run()
+						if (cancel.isCancellationRequested())
 						{
-							if (changeProgress)
-							{
-								if (swipe != null) swipe.setRefreshing(false);
-							}
-
-							error(t);
+							return;
 						}
-					});
+						postError(t);
+					}
 				}
+			});
+		}
+		catch (RejectedExecutionException x)
+		{
+			// The pool is full, which is reported like a failure of the task
+			postError(x);
+		}
+	}
+
+	private void postError(final Throwable t)
+	{
+		getHandler().post(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				if (changeProgress)
+				{
+					if (swipe != null) swipe.setRefreshing(false);
+				}
+
+				error(t);
 			}
-		}.start();
+		});
 	}
 
 	@Override
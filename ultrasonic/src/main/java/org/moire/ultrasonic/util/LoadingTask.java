@@ -3,6 +3,8 @@ package org.moire.ultrasonic.util;
 import android.app.Activity;
 import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
 
+import java.util.concurrent.RejectedExecutionException;
+
 /**
  * @author Sindre Mehus
  * @version $Id$
@@ -24,48 +26,61 @@ public abstract class LoadingTask<T> extends BackgroundTask<T>
 	{
 		swipe.setRefreshing(true);
 
-		new Thread()
+		try
 		{
-			@Override
-			public void run()
+			TaskExecutors.io.execute(new Runnable()
 			{
-				try
+				@Override
+				public void run()
 				{
-					final T result = doInBackground();
-					if (cancel.isCancellationRequested())
-					{
-						return;
-					}
-
-					getHandler().post(new Runnable()
+					try
 					{
-						@Override
-						public void run()
+						final T result = doInBackground();
+						if (cancel.isCancellationRequested())
 						{
-							swipe.setRefreshing(false);
-							done(result);
+							return;
 						}
-					});
-				}
-				catch (final Throwable t)
-				{
-					if (cancel.isCancellationRequested())
-					{
-						return;
-					}
 
-					getHandler().post(new Runnable()
+						getHandler().post(new Runnable()
+						{
+							@Override
+							public void run()
+							{
+								swipe.setRefreshing(false);
+								done(result);
+							}
+						});
+					}
+					catch (final Throwable t)
 					{
-						@Override
-						public void run()
+						if (cancel.isCancellationRequested())
 						{
-							swipe.setRefreshing(false);
-							error(t);
+							return;
 						}
-					});
+
+						postError(t);
+					}
 				}
+			});
+		}
+		catch (RejectedExecutionException x)
+		{
+			// The pool is full, which is reported like a failure of the task
+			postError(x);
+		}
+	}
+
+	private void postError(final Throwable t)
+	{
+		getHandler().post(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				swipe.setRefreshing(false);
+				error(t);
 			}
-		}.start();
+		});
 	}
 
 	@Override
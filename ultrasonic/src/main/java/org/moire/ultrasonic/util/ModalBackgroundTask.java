@@ -25,13 +25,16 @@ import timber.log.Timber;
 
 import org.moire.ultrasonic.R;
 
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
 /**
  * @author Sindre Mehus
  */
 public abstract class ModalBackgroundTask<T> extends BackgroundTask<T>
 {
 	private final AlertDialog progressDialog;
-	private Thread thread;
+	private Future<?> future;
 	private final boolean finishActivityOnCancel;
 	private boolean cancelled;
 
@@ -80,74 +83,86 @@ public abstract class ModalBackgroundTask<T> extends BackgroundTask<T>
 		cancelled = false;
 		progressDialog.show();
 
-		thread = new Thread()
+		try
 		{
-			@Override
-			public void run()
+			future = TaskExecutors.io.submit(new Runnable()
 			{
-				try
+				@Override
+				public void run()
 				{
-					final T result = doInBackground();
-					if (cancelled)
+					try
 					{
-						progressDialog.dismiss();
-						return;
-					}
+						final T result = doInBackground();
+						if (cancelled)
+						{
+							progressDialog.dismiss();
+							return;
+						}
 
-					getHandler().post(new Runnable()
-					{
-						@Override
-						public void run()
+						getHandler().post(new Runnable()
 						{
-							try
-							{
-								progressDialog.dismiss();
-							}
-							catch (Exception e)
+							@Override
+							public void run()
 							{
-								// nothing
+								try
+								{
+									progressDialog.dismiss();
+								}
+								catch (Exception e)
+								{
+									// nothing
+								}
+
+								done(result);
 							}
+						});
 
-							done(result);
-						}
-					});
-
-				}
-				catch (final Throwable t)
-				{
-					if (cancelled)
-					{
-						return;
 					}
-					getHandler().post(new Runnable()
+					catch (final Throwable t)
 					{
-						@Override
-						public void run()
+						if (cancelled)
 						{
-							try
-							{
-								progressDialog.dismiss();
-							}
-							catch (Exception e)
-							{
-								// nothing
-							}
-
-							error(t);
+							return;
 						}
-					});
+						postError(t);
+					}
 				}
+			});
+		}
+		catch (RejectedExecutionException x)
+		{
+			// The pool is full, which is reported like a failure of the task
+			postError(x);
+		}
+	}
+
+	private void postError(final Throwable t)
+	{
+		getHandler().post(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					progressDialog.dismiss();
+				}
+				catch (Exception e)
+				{
+					// nothing
+				}
+
+				error(t);
 			}
-		};
-		thread.start();
+		});
 	}
 
 	protected void cancel()
 	{
 		cancelled = true;
-		if (thread != null)
+		if (future != null)
 		{
-			thread.interrupt();
+			future.cancel(true);
 		}
 
 		if (finishActivityOnCancel)
@@ -20,6 +20,8 @@ package org.moire.ultrasonic.util;
 
 import android.app.Activity;
 
+import java.util.concurrent.RejectedExecutionException;
+
 /**
  * @author Sindre Mehus
  */
@@ -34,39 +36,51 @@ public abstract class SilentBackgroundTask<T> extends BackgroundTask<T>
 	@Override
 	public void execute()
 	{
-		Thread thread = new Thread()
+		try
 		{
-			@Override
-			public void run()
+			TaskExecutors.io.execute(new Runnable()
 			{
-				try
+				@Override
+				public void run()
 				{
-					final T result = doInBackground();
-
-					getHandler().post(new Runnable()
+					try
 					{
-						@Override
-						public void run()
+						final T result = doInBackground();
+
+						getHandler().post(new Runnable()
 						{
-							done(result);
-						}
-					});
+							@Override
+							public void run()
+							{
+								done(result);
+							}
+						});
 
-				}
-				catch (final Throwable t)
-				{
-					getHandler().post(new Runnable()
+					}
+					catch (final Throwable t)
 					{
-						@Override
-						public void run()
-						{
-							error(t);
-						}
-					});
+						postError(t);
+					}
 				}
+			});
+		}
+		catch (RejectedExecutionException x)
+		{
+			// The pool is full, which is reported like a failure of the task
+			postError(x);
+		}
+	}
+
+	private void postError(final Throwable t)
+	{
+		getHandler().post(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				error(t);
 			}
-		};
-		thread.start();
+		});
 	}
 
 	@Override
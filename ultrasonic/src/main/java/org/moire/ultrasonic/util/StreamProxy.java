@@ -23,6 +23,7 @@ import java.net.SocketTimeoutException;
 import java.net.URLDecoder;
 import java.net.UnknownHostException;
 import java.util.StringTokenizer;
+import java.util.concurrent.RejectedExecutionException;
 
 public class StreamProxy implements Runnable
 {
@@ -31,9 +32,20 @@ public class StreamProxy implements Runnable
 	private ServerSocket socket;
 	private int port;
 	private Supplier<DownloadFile> currentPlaying;
+	private Supplier<DownloadFile> nextPlaying;
 
 	public StreamProxy(Supplier<DownloadFile> currentPlaying)
 	{
+		this(currentPlaying, null);
+	}
+
+	/**
+	 * Creates a proxy which streams the next song too, so the next player can be prepared
+	 * before the next song is downloaded completely
+	 */
+	public StreamProxy(Supplier<DownloadFile> currentPlaying, Supplier<DownloadFile> nextPlaying)
+	{
+		this.nextPlaying = nextPlaying;
 
 		// Create listening socket
 		try
@@ -57,9 +69,10 @@ public class StreamProxy implements Runnable
 		return port;
 	}
 
+	// The accept loop runs as long as the proxy, so it gets its own thread instead of a pooled one
 	public void start()
 	{
-		thread = new Thread(this);
+		thread = new Thread(this, "StreamProxy");
 		thread.start();
 	}
 
@@ -69,6 +82,16 @@ public class StreamProxy implements Runnable
 		thread.interrupt();
 	}
 
+	private DownloadFile getDownloadFile(String localPath)
+	{
+		DownloadFile next = nextPlaying == null ? null : nextPlaying.get();
+		if (next != null && localPath.equals(next.getPartialFile().getPath()))
+		{
+			return next;
+		}
+		return currentPlaying == null ? null : currentPlaying.get();
+	}
+
 	@Override
 	public void run()
 	{
@@ -87,7 +110,16 @@ public class StreamProxy implements Runnable
 				StreamToMediaPlayerTask task = new StreamToMediaPlayerTask(client);
 				if (task.processRequest())
 				{
-					new Thread(task).start();
+					try
+					{
+						TaskExecutors.transfer.execute(task);
+					}
+					catch (RejectedExecutionException x)
+					{
+						// The media player reports the closed connection as an error and retries
+						Timber.w("No thread to stream to the media player, closing the connection");
+						client.close();
+					}
 				}
 
 			}
@@ -168,7 +200,7 @@ public class StreamProxy implements Runnable
 		public void run()
 		{
 			Timber.i("Streaming song in background");
-			DownloadFile downloadFile = currentPlaying == null? null : currentPlaying.get();
+			DownloadFile downloadFile = getDownloadFile(localPath);
 			MusicDirectory.Entry song = downloadFile.getSong();
 			long fileSize = downloadFile.getBitRate() * ((song.getDuration() != null) ? song.getDuration() : 0) * 1000 / 8;
 			Timber.i("Streaming fileSize: %d", fileSize);
@@ -188,65 +220,59 @@ public class StreamProxy implements Runnable
 				output = new BufferedOutputStream(client.getOutputStream(), 32 * 1024);
 				output.write(headers.getBytes());
 
-				if (!downloadFile.isWorkDone())
+				// Loop as long as there's stuff to send. A file which was completed since
+				// the request was made, e.g. the next song, is sent in one batch
+				while (isRunning && !client.isClosed())
 				{
-					// Loop as long as there's stuff to send
-					while (isRunning && !client.isClosed())
+					// See if there's more to send
+					File file = downloadFile.isCompleteFileAvailable() ? downloadFile.getCompleteFile() : downloadFile.getPartialFile();
+					int cbSentThisBatch = 0;
+
+					if (file.exists())
 					{
-						// See if there's more to send
-						File file = downloadFile.isCompleteFileAvailable() ? downloadFile.getCompleteFile() : downloadFile.getPartialFile();
-						int cbSentThisBatch = 0;
+						FileInputStream input = new FileInputStream(file);
 
-						if (file.exists())
+						try
 						{
-							FileInputStream input = new FileInputStream(file);
+							long skip = input.skip(cbSkip);
+							int cbToSendThisBatch = input.available();
 
-							try
+							while (cbToSendThisBatch > 0)
 							{
-								long skip = input.skip(cbSkip);
-								int cbToSendThisBatch = input.available();
+								int cbToRead = Math.min(cbToSendThisBatch, buff.length);
+								int cbRead = input.read(buff, 0, cbToRead);
 
-								while (cbToSendThisBatch > 0)
+								if (cbRead == -1)
 								{
-									int cbToRead = Math.min(cbToSendThisBatch, buff.length);
-									int cbRead = input.read(buff, 0, cbToRead);
-
-									if (cbRead == -1)
-									{
-										break;
-									}
-
-									cbToSendThisBatch -= cbRead;
-									cbToSend -= cbRead;
-									output.write(buff, 0, cbRead);
-									output.flush();
-									cbSkip += cbRead;
-									cbSentThisBatch += cbRead;
+									break;
 								}
-							}
-							finally
-							{
-								input.close();
-							}
 
-							// Done regardless of whether or not it thinks it is
-							if (downloadFile.isWorkDone() && cbSkip >= file.length())
-							{
-								break;
+								cbToSendThisBatch -= cbRead;
+								cbToSend -= cbRead;
+								output.write(buff, 0, cbRead);
+								output.flush();
+								cbSkip += cbRead;
+								cbSentThisBatch += cbRead;
 							}
 						}
+						finally
+						{
+							input.close();
+						}
 
-						// If we did nothing this batch, block for a second
-						if (cbSentThisBatch == 0)
+						// Done regardless of whether or not it thinks it is
+						if (downloadFile.isWorkDone() && cbSkip >= file.length())
 						{
-							Timber.d("Blocking until more data appears (%d)", cbToSend);
-							Util.sleepQuietly(1000L);
+							break;
 						}
 					}
-				}
-				else
-				{
-					Timber.w("Requesting data for completely downloaded file");
+
+					// If we did nothing this batch, block for a second
+					if (cbSentThisBatch == 0)
+					{
+						Timber.d("Blocking until more data appears (%d)", cbToSend);
+						Util.sleepQuietly(1000L);
+					}
 				}
 			}
 			catch (SocketException socketException)
@@ -33,8 +33,6 @@ import android.graphics.Canvas;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.media.AudioManager;
-import android.net.ConnectivityManager;
-import android.net.NetworkInfo;
 import android.net.Uri;
 import android.net.wifi.WifiManager;
 import android.os.Build;
@@ -106,8 +104,7 @@ public class Util
 
 	public static boolean isScreenLitOnDownload(Context context)
 	{
-		SharedPreferences preferences = getPreferences(context);
-		return preferences.getBoolean(Constants.PREFERENCES_KEY_SCREEN_LIT_ON_DOWNLOAD, false);
+		return CachedSettings.getSettings(context).isScreenLitOnDownload();
 	}
 
 	public static RepeatMode getRepeatMode(Context context)
@@ -143,8 +140,7 @@ public class Util
 	@SuppressWarnings({"BooleanMethodIsAlwaysInverted"}) // It is inverted for readability
 	public static boolean isLockScreenEnabled(Context context)
 	{
-		SharedPreferences preferences = getPreferences(context);
-		return preferences.getBoolean(Constants.PREFERENCES_KEY_SHOW_LOCK_SCREEN_CONTROLS, false);
+		return CachedSettings.getSettings(context).isLockScreenEnabled();
 	}
 
 	public static String getTheme(Context context)
@@ -173,32 +169,35 @@ public class Util
 
 	public static int getMaxBitRate(Context context)
 	{
-		ConnectivityManager manager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
-
-		NetworkInfo networkInfo = manager.getActiveNetworkInfo();
+		NetworkState networkState = CachedSettings.getNetworkState(context);
 
-		if (networkInfo == null)
+		if (!networkState.getHasNetwork())
 		{
 			return 0;
 		}
 
-		boolean wifi = networkInfo.getType() == ConnectivityManager.TYPE_WIFI;
-		SharedPreferences preferences = getPreferences(context);
-		return Integer.parseInt(preferences.getString(wifi ? Constants.PREFERENCES_KEY_MAX_BITRATE_WIFI : Constants.PREFERENCES_KEY_MAX_BITRATE_MOBILE, "0"));
+		SettingsSnapshot settings = CachedSettings.getSettings(context);
+		return networkState.isWifi() ? settings.getMaxBitRateWifi() : settings.getMaxBitRateMobile();
+	}
+
+	public static boolean isAdaptiveBitRateEnabled(Context context)
+	{
+		return CachedSettings.getSettings(context).isAdaptiveBitRateEnabled();
+	}
+
+	public static int getMinBitRate(Context context)
+	{
+		return CachedSettings.getSettings(context).getMinBitRate();
 	}
 
 	public static int getPreloadCount(Context context)
 	{
-		SharedPreferences preferences = getPreferences(context);
-		int preloadCount = Integer.parseInt(preferences.getString(Constants.PREFERENCES_KEY_PRELOAD_COUNT, "-1"));
-		return preloadCount == -1 ? Integer.MAX_VALUE : preloadCount;
+		return CachedSettings.getSettings(context).getPreloadCount();
 	}
 
 	public static int getCacheSizeMB(Context context)
 	{
-		SharedPreferences preferences = getPreferences(context);
-		int cacheSize = Integer.parseInt(preferences.getString(Constants.PREFERENCES_KEY_CACHE_SIZE, "-1"));
-		return cacheSize == -1 ? Integer.MAX_VALUE : cacheSize;
+		return CachedSettings.getSettings(context).getCacheSizeMB();
 	}
 
     public static SharedPreferences getPreferences(Context context) {
@@ -537,11 +536,10 @@ public class Util
 
 	public static boolean isNetworkConnected(Context context)
 	{
-		ConnectivityManager manager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
-		NetworkInfo networkInfo = manager.getActiveNetworkInfo();
-		boolean connected = networkInfo != null && networkInfo.isConnected();
+		NetworkState networkState = CachedSettings.getNetworkState(context);
+		boolean connected = networkState.isConnected();
 
-		boolean wifiConnected = connected && networkInfo.getType() == ConnectivityManager.TYPE_WIFI;
+		boolean wifiConnected = connected && networkState.isWifi();
 		boolean wifiRequired = isWifiRequiredForDownload(context);
 
 		return connected && (!wifiRequired || wifiConnected);
@@ -554,8 +552,7 @@ public class Util
 
 	private static boolean isWifiRequiredForDownload(Context context)
 	{
-		SharedPreferences preferences = getPreferences(context);
-		return preferences.getBoolean(Constants.PREFERENCES_KEY_WIFI_REQUIRED_FOR_DOWNLOAD, false);
+		return CachedSettings.getSettings(context).isWifiRequiredForDownload();
 	}
 
 	public static boolean shouldDisplayBitrateWithArtist(Context context)
@@ -1058,8 +1055,7 @@ public class Util
 	// TODO: Shouldn't this be used when making requests?
 	public static int getNetworkTimeout(Context context)
 	{
-		SharedPreferences preferences = getPreferences(context);
-		return Integer.parseInt(preferences.getString(Constants.PREFERENCES_KEY_NETWORK_TIMEOUT, "15000"));
+		return CachedSettings.getSettings(context).getNetworkTimeout();
 	}
 
 	public static int getDefaultAlbums(Context context)
@@ -1068,6 +1064,12 @@ public class Util
 		return Integer.parseInt(preferences.getString(Constants.PREFERENCES_KEY_DEFAULT_ALBUMS, "5"));
 	}
 
+	public static int getPrewarmBudgetMB(Context context)
+	{
+		SharedPreferences preferences = getPreferences(context);
+		return Integer.parseInt(preferences.getString(Constants.PREFERENCES_KEY_PREWARM_BUDGET, "2"));
+	}
+
 	public static int getMaxAlbums(Context context)
 	{
 		SharedPreferences preferences = getPreferences(context);
@@ -1100,8 +1102,7 @@ public class Util
 
 	public static int getBufferLength(Context context)
 	{
-		SharedPreferences preferences = getPreferences(context);
-		return Integer.parseInt(preferences.getString(Constants.PREFERENCES_KEY_BUFFER_LENGTH, "5"));
+		return CachedSettings.getSettings(context).getBufferLength();
 	}
 
 	public static int getIncrementTime(Context context)
@@ -1124,8 +1125,7 @@ public class Util
 
 	public static boolean getGaplessPlaybackPreference(Context context)
 	{
-		SharedPreferences preferences = getPreferences(context);
-		return preferences.getBoolean(Constants.PREFERENCES_KEY_GAPLESS_PLAYBACK, false);
+		return CachedSettings.getSettings(context).isGaplessPlaybackEnabled();
 	}
 
 	public static boolean getShouldTransitionOnPlaybackPreference(Context context)
@@ -1157,8 +1157,7 @@ public class Util
 
 	public static int getDirectoryCacheTime(Context context)
 	{
-		SharedPreferences preferences = getPreferences(context);
-		return Integer.parseInt(preferences.getString(Constants.PREFERENCES_KEY_DIRECTORY_CACHE_TIME, "300"));
+		return CachedSettings.getSettings(context).getDirectoryCacheTime();
 	}
 
 	@SuppressWarnings("BooleanMethodIsAlwaysInverted") // Inverted for readability
@@ -1316,8 +1315,7 @@ public class Util
 
 	public static int getViewRefreshInterval(Context context)
 	{
-		SharedPreferences preferences = getPreferences(context);
-		return Integer.parseInt(preferences.getString(Constants.PREFERENCES_KEY_VIEW_REFRESH, "1000"));
+		return CachedSettings.getSettings(context).getViewRefreshInterval();
 	}
 
 	public static boolean getShouldAskForShareDetails(Context context)
@@ -29,6 +29,7 @@ import org.moire.ultrasonic.domain.MusicDirectory;
 import org.moire.ultrasonic.service.MusicService;
 import org.moire.ultrasonic.service.MusicServiceFactory;
 import org.moire.ultrasonic.util.ImageLoader;
+import org.moire.ultrasonic.util.TaskExecutors;
 import org.moire.ultrasonic.util.Util;
 
 /**
@@ -147,7 +148,7 @@ public class AlbumView extends UpdateView
 					}
 
                     final MusicService musicService = MusicServiceFactory.getMusicService(view.getContext());
-					new Thread(new Runnable()
+					TaskExecutors.executeOrDefer(TaskExecutors.io, new Runnable()
 					{
 						@Override
 						public void run()
@@ -170,7 +171,7 @@ public class AlbumView extends UpdateView
 								Timber.e(e);
 							}
 						}
-					}).start();
+					});
 				}
 			});
 		}
@@ -23,8 +23,10 @@ import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.media.audiofx.Visualizer;
+import android.view.Display;
 import android.view.View;
 
+import androidx.core.view.ViewCompat;
 import androidx.lifecycle.LifecycleOwner;
 import androidx.lifecycle.Observer;
 
@@ -39,7 +41,16 @@ import static org.koin.java.KoinJavaComponent.inject;
 
 /**
  * A simple class that draws waveform data received from a
- * {@link Visualizer.OnDataCaptureListener#onWaveFormDataCapture}
+ * {@link Visualizer.OnDataCaptureListener#onWaveFormDataCapture},
+ * or the spectrum received from {@link Visualizer.OnDataCaptureListener#onFftDataCapture}
+ *
+ * The x coordinates of the lines are only calculated when the size of the view or the capture
+ * changes, so drawing a frame only converts the captured samples. Captures are copied into
+ * a reused buffer and coalesced to at most one frame per display refresh, nothing is
+ * allocated while drawing.
+ *
+ * The visualizer is only enabled while the view is active and actually on screen, since
+ * capturing costs processing in the audio path even when nothing is drawn.
  *
  * @author Sindre Mehus
  * @version $Id$
@@ -47,15 +58,62 @@ import static org.koin.java.KoinJavaComponent.inject;
 public class VisualizerView extends View
 {
 	private static final int PREFERRED_CAPTURE_RATE_MILLIHERTZ = 20000;
+	private static final float MAX_MAGNITUDE_DB = 45f;
+
+	public enum Mode
+	{
+		WAVEFORM,
+		SPECTRUM
+	}
 
 	private final Paint paint = new Paint();
-	private Lazy<MediaPlayerController> mediaPlayerControllerLazy = inject(MediaPlayerController.class);
+	private final Lazy<MediaPlayerController> mediaPlayerControllerLazy = inject(MediaPlayerController.class);
+	private final Object dataLock = new Object();
+
+	// Written by the capture callback, only accessed while holding dataLock
+	private byte[] captured = new byte[0];
+	private boolean hasCapture;
+	private boolean isFramePending;
 
-	private byte[] data;
-	private float[] points;
+	// Only accessed on the main thread
+	private byte[] data = new byte[0];
+	private float[] points = new float[0];
+	private int pointCount;
+	private boolean isLayoutValid;
+
+	private volatile Mode mode = Mode.WAVEFORM;
 	private boolean active;
+	private boolean isCapturing;
 	private Visualizer visualizer;
 
+	private final Visualizer.OnDataCaptureListener captureListener = new Visualizer.OnDataCaptureListener()
+	{
+		@Override
+		public void onWaveFormDataCapture(Visualizer visualizer, byte[] waveform, int samplingRate)
+		{
+			if (mode == Mode.WAVEFORM) updateVisualizer(waveform);
+		}
+
+		@Override
+		public void onFftDataCapture(Visualizer visualizer, byte[] fft, int samplingRate)
+		{
+			if (mode == Mode.SPECTRUM) updateVisualizer(fft);
+		}
+	};
+
+	private final Runnable frameCallback = new Runnable()
+	{
+		@Override
+		public void run()
+		{
+			synchronized (dataLock)
+			{
+				isFramePending = false;
+			}
+			invalidate();
+		}
+	};
+
 	public VisualizerView(final Context context)
 	{
 		super(context);
@@ -70,10 +128,12 @@ public class VisualizerView extends View
 				if (controller != null) {
 					Timber.d("VisualizerController Observer.onChanged received controller");
 					visualizer = controller.visualizer;
+					isCapturing = false;
 					setActive(true);
 				} else {
 					Timber.d("VisualizerController Observer.onChanged has no controller");
 					visualizer = null;
+					isCapturing = false;
 					setActive(false);
 				}
 			}
@@ -88,36 +148,143 @@ public class VisualizerView extends View
 	public void setActive(boolean value)
 	{
 		active = value;
-		int captureRate = Math.min(PREFERRED_CAPTURE_RATE_MILLIHERTZ, Visualizer.getMaxCaptureRate());
-		if (active)
+		updateCapture();
+		invalidate();
+	}
+
+	public Mode getMode()
+	{
+		return mode;
+	}
+
+	/**
+	 * Switches between the waveform and the spectrum of the audio
+	 */
+	public void setMode(Mode value)
+	{
+		if (mode == value) return;
+
+		mode = value;
+		isLayoutValid = false;
+		synchronized (dataLock)
+		{
+			hasCapture = false;
+		}
+
+		if (isCapturing) registerCaptureListener();
+		invalidate();
+	}
+
+	private void updateCapture()
+	{
+		setCapturing(active && visualizer != null && isShown() && getWindowVisibility() == VISIBLE);
+	}
+
+	private void setCapturing(boolean value)
+	{
+		if (isCapturing == value || visualizer == null) return;
+		isCapturing = value;
+
+		try
 		{
-			visualizer.setDataCaptureListener(new Visualizer.OnDataCaptureListener()
+			if (isCapturing)
 			{
-				@Override
-				public void onWaveFormDataCapture(Visualizer visualizer, byte[] waveform, int samplingRate)
-				{
-					updateVisualizer(waveform);
-				}
+				registerCaptureListener();
+				visualizer.setEnabled(true);
+			}
+			else
+			{
+				visualizer.setEnabled(false);
+				visualizer.setDataCaptureListener(null, getCaptureRate(), false, false);
+			}
+		}
+		catch (IllegalStateException x)
+		{
+			Timber.w(x, "Failed to switch the capture of the visualizer");
+		}
+	}
 
-				@Override
-				public void onFftDataCapture(Visualizer visualizer, byte[] fft, int samplingRate)
-				{
-				}
-			}, captureRate, true, false);
+	private void registerCaptureListener()
+	{
+		if (visualizer == null) return;
+		visualizer.setDataCaptureListener(captureListener, getCaptureRate(),
+				mode == Mode.WAVEFORM, mode == Mode.SPECTRUM);
+	}
+
+	// Captures faster than the display refreshes would never be drawn
+	private int getCaptureRate()
+	{
+		int captureRate = Math.min(PREFERRED_CAPTURE_RATE_MILLIHERTZ, Visualizer.getMaxCaptureRate());
+		Display display = ViewCompat.getDisplay(this);
+		if (display != null && display.getRefreshRate() > 0)
+		{
+			captureRate = Math.min(captureRate, (int) (display.getRefreshRate() * 1000));
 		}
-		else
+		return captureRate;
+	}
+
+	private void updateVisualizer(byte[] capture)
+	{
+		// Nothing is drawn while the view is off-screen or the player doesn't play
+		if (!isShown()) return;
+		boolean isPlaying = mediaPlayerControllerLazy.getValue().getPlayerState() == PlayerState.STARTED;
+
+		synchronized (dataLock)
 		{
-			if (visualizer != null) visualizer.setDataCaptureListener(null, captureRate, false, false);
+			if (isPlaying)
+			{
+				if (captured.length != capture.length) captured = new byte[capture.length];
+				System.arraycopy(capture, 0, captured, 0, capture.length);
+				hasCapture = true;
+			}
+			else
+			{
+				// Clears the last frame once
+				if (!hasCapture) return;
+				hasCapture = false;
+			}
+
+			// Later captures of the same frame only replace the data
+			if (isFramePending) return;
+			isFramePending = true;
 		}
 
-		if (visualizer != null) visualizer.setEnabled(active);
-		invalidate();
+		ViewCompat.postOnAnimation(this, frameCallback);
 	}
 
-	private void updateVisualizer(byte[] waveform)
+	@Override
+	protected void onAttachedToWindow()
 	{
-		this.data = waveform;
-		invalidate();
+		super.onAttachedToWindow();
+		updateCapture();
+	}
+
+	@Override
+	protected void onDetachedFromWindow()
+	{
+		setCapturing(false);
+		super.onDetachedFromWindow();
+	}
+
+	@Override
+	protected void onVisibilityChanged(View changedView, int visibility)
+	{
+		super.onVisibilityChanged(changedView, visibility);
+		updateCapture();
+	}
+
+	@Override
+	protected void onWindowVisibilityChanged(int visibility)
+	{
+		super.onWindowVisibilityChanged(visibility);
+		updateCapture();
+	}
+
+	@Override
+	protected void onSizeChanged(int w, int h, int oldw, int oldh)
+	{
+		super.onSizeChanged(w, h, oldw, oldh);
+		isLayoutValid = false;
 	}
 
 	@Override
@@ -130,32 +297,121 @@ public class VisualizerView extends View
 			return;
 		}
 
-		if (mediaPlayerControllerLazy.getValue().getPlayerState() != PlayerState.STARTED)
+		synchronized (dataLock)
 		{
-			return;
+			if (!hasCapture)
+			{
+				return;
+			}
+
+			if (data.length != captured.length)
+			{
+				data = new byte[captured.length];
+				isLayoutValid = false;
+			}
+			System.arraycopy(captured, 0, data, 0, captured.length);
+		}
+
+		if (!isLayoutValid)
+		{
+			layoutPoints();
 		}
 
-		if (data == null)
+		if (pointCount == 0)
 		{
 			return;
 		}
 
-		if (points == null || points.length < data.length * 4)
+		if (mode == Mode.WAVEFORM)
 		{
-			points = new float[data.length * 4];
+			convertWaveform();
 		}
+		else
+		{
+			convertSpectrum();
+		}
+
+		canvas.drawLines(points, 0, pointCount, paint);
+	}
 
+	// Calculates the coordinates which only depend on the size of the view and the capture
+	private void layoutPoints()
+	{
 		int w = getWidth();
 		int h = getHeight();
+		int lineCount = mode == Mode.WAVEFORM ? data.length - 1 : data.length / 2 - 1;
+		if (lineCount < 1)
+		{
+			pointCount = 0;
+			return;
+		}
 
-		for (int i = 0; i < data.length - 1; i++)
+		pointCount = lineCount * 4;
+		if (points.length < pointCount)
 		{
-			points[i * 4] = w * i / (data.length - 1);
-			points[i * 4 + 1] = h / 2 + ((byte) (data[i] + 128)) * (h / 2) / 128;
-			points[i * 4 + 2] = w * (i + 1) / (data.length - 1);
-			points[i * 4 + 3] = h / 2 + ((byte) (data[i + 1] + 128)) * (h / 2) / 128;
+			points = new float[pointCount];
 		}
 
-		canvas.drawLines(points, paint);
+		if (mode == Mode.WAVEFORM)
+		{
+			paint.setStrokeWidth(2f);
+			float step = (float) w / lineCount;
+			for (int i = 0; i < lineCount; i++)
+			{
+				points[i * 4] = step * i;
+				points[i * 4 + 2] = step * (i + 1);
+			}
+		}
+		else
+		{
+			float step = (float) w / lineCount;
+			paint.setStrokeWidth(Math.max(2f, step * 0.7f));
+			for (int i = 0; i < lineCount; i++)
+			{
+				float x = step * (i + 0.5f);
+				points[i * 4] = x;
+				points[i * 4 + 1] = h;
+				points[i * 4 + 2] = x;
+			}
+		}
+
+		isLayoutValid = true;
+	}
+
+	private void convertWaveform()
+	{
+		final byte[] data = this.data;
+		final float[] points = this.points;
+		final int lineCount = pointCount / 4;
+		final float center = getHeight() / 2f;
+		final float scale = center / 128f;
+
+		float y = center + (byte) (data[0] + 128) * scale;
+		for (int i = 0; i < lineCount; i++)
+		{
+			int p = i * 4;
+			points[p + 1] = y;
+			y = center + (byte) (data[i + 1] + 128) * scale;
+			points[p + 3] = y;
+		}
+	}
+
+	// The FFT data contains the real and imaginary parts of the bins, after the DC and Nyquist bins
+	private void convertSpectrum()
+	{
+		final byte[] data = this.data;
+		final float[] points = this.points;
+		final int lineCount = pointCount / 4;
+		final int h = getHeight();
+		final float scale = h / MAX_MAGNITUDE_DB;
+
+		for (int i = 0; i < lineCount; i++)
+		{
+			int re = data[(i + 1) * 2];
+			int im = data[(i + 1) * 2 + 1];
+			int squared = re * re + im * im;
+			float db = squared > 1 ? (float) (10 * Math.log10(squared)) : 0f;
+			points[i * 4 + 3] = h - Math.min(db * scale, h);
+		}
 	}
 }
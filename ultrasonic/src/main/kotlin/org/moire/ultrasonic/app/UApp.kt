@@ -1,6 +1,7 @@
 package org.moire.ultrasonic.app
 
 import androidx.multidex.MultiDexApplication
+import org.koin.android.ext.android.get
 import org.koin.android.ext.koin.androidContext
 import org.koin.core.context.startKoin
 import org.koin.core.logger.Level
@@ -14,6 +15,7 @@ import org.moire.ultrasonic.di.mediaPlayerModule
 import org.moire.ultrasonic.di.musicServiceModule
 import org.moire.ultrasonic.log.FileLoggerTree
 import org.moire.ultrasonic.log.TimberKoinLogger
+import org.moire.ultrasonic.service.LibraryPrewarmer
 import org.moire.ultrasonic.util.Util
 import timber.log.Timber
 import timber.log.Timber.DebugTree
@@ -48,5 +50,7 @@ class UApp : MultiDexApplication() {
                 mediaPlayerModule
             )
         }
+
+        get<LibraryPrewarmer>().start()
     }
 }
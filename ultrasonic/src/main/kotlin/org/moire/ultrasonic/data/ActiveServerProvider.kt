@@ -8,6 +8,7 @@ import kotlinx.coroutines.runBlocking
 import kotlinx.coroutines.withContext
 import org.moire.ultrasonic.R
 import org.moire.ultrasonic.service.MusicServiceFactory.resetMusicService
+import org.moire.ultrasonic.util.CachedSettings
 import org.moire.ultrasonic.util.Constants
 import org.moire.ultrasonic.util.Util
 import timber.log.Timber
@@ -140,8 +141,7 @@ class ActiveServerProvider(
          * Queries the Id of the Active Server
          */
         fun getActiveServerId(context: Context): Int {
-            val preferences = Util.getPreferences(context)
-            return preferences.getInt(Constants.PREFERENCES_KEY_SERVER_INSTANCE, -1)
+            return CachedSettings.getSettings(context).activeServerId
         }
 
         /**
@@ -154,6 +154,7 @@ class ActiveServerProvider(
             val editor = preferences.edit()
             editor.putInt(Constants.PREFERENCES_KEY_SERVER_INSTANCE, serverId)
             editor.apply()
+            CachedSettings.refresh(context)
         }
 
         /**
@@ -163,8 +164,7 @@ class ActiveServerProvider(
             if (isOffline(context)) {
                 return false
             }
-            val preferences = Util.getPreferences(context)
-            return preferences.getBoolean(Constants.PREFERENCES_KEY_SCROBBLE, false)
+            return CachedSettings.getSettings(context).isScrobblingEnabled
         }
 
         /**
@@ -174,8 +174,7 @@ class ActiveServerProvider(
             if (isOffline(context)) {
                 return false
             }
-            val preferences = Util.getPreferences(context)
-            return preferences.getBoolean(Constants.PREFERENCES_KEY_SERVER_SCALING, false)
+            return CachedSettings.getSettings(context).isServerScalingEnabled
         }
     }
 }
@@ -8,13 +8,28 @@ import androidx.sqlite.db.SupportSQLiteDatabase
 /**
  * Room Database to be used to store data for Ultrasonic
  */
-@Database(entities = [ServerSetting::class], version = 2)
+@Database(
+    entities = [
+        ServerSetting::class, OfflineEntry::class, OfflineEntryFts::class, ScrobbleEntry::class
+    ],
+    version = 6
+)
 abstract class AppDatabase : RoomDatabase() {
 
     /**
      * Retrieves the Server Settings DAO for the Database
      */
     abstract fun serverSettingDao(): ServerSettingDao
+
+    /**
+     * Retrieves the Offline Entry DAO for the Database
+     */
+    abstract fun offlineEntryDao(): OfflineEntryDao
+
+    /**
+     * Retrieves the Scrobble Entry DAO for the Database
+     */
+    abstract fun scrobbleEntryDao(): ScrobbleEntryDao
 }
 
 val MIGRATION_1_2: Migration = object : Migration(1, 2) {
@@ -24,3 +39,67 @@ val MIGRATION_1_2: Migration = object : Migration(1, 2) {
         )
     }
 }
+
+val MIGRATION_2_3: Migration = object : Migration(2, 3) {
+    override fun migrate(database: SupportSQLiteDatabase) {
+        database.execSQL(
+            "CREATE TABLE IF NOT EXISTS `offlineEntry` (" +
+                "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `path` TEXT NOT NULL, " +
+                "`parent` TEXT NOT NULL, `isDirectory` INTEGER NOT NULL, `name` TEXT NOT NULL, " +
+                "`title` TEXT, `artist` TEXT, `album` TEXT, `track` INTEGER, " +
+                "`discNumber` INTEGER, `year` INTEGER, `genre` TEXT, `duration` INTEGER, " +
+                "`isVideo` INTEGER NOT NULL, `suffix` TEXT, `size` INTEGER NOT NULL)"
+        )
+        database.execSQL(
+            "CREATE UNIQUE INDEX IF NOT EXISTS `index_offlineEntry_path` " +
+                "ON `offlineEntry` (`path`)"
+        )
+        database.execSQL(
+            "CREATE INDEX IF NOT EXISTS `index_offlineEntry_parent` " +
+                "ON `offlineEntry` (`parent`)"
+        )
+        // The content sync triggers are created by Room after the migration
+        database.execSQL(
+            "CREATE VIRTUAL TABLE IF NOT EXISTS `offlineEntryFts` " +
+                "USING FTS4(`name` TEXT NOT NULL, `title` TEXT, content=`offlineEntry`)"
+        )
+    }
+}
+
+val MIGRATION_3_4: Migration = object : Migration(3, 4) {
+    override fun migrate(database: SupportSQLiteDatabase) {
+        database.execSQL(
+            "ALTER TABLE offlineEntry ADD COLUMN lastModified INTEGER NOT NULL DEFAULT 0"
+        )
+    }
+}
+
+val MIGRATION_4_5: Migration = object : Migration(4, 5) {
+    override fun migrate(database: SupportSQLiteDatabase) {
+        database.execSQL(
+            "CREATE TABLE IF NOT EXISTS `scrobbleEntry` (" +
+                "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `serverId` INTEGER NOT NULL, " +
+                "`songId` TEXT NOT NULL, `time` INTEGER NOT NULL)"
+        )
+        database.execSQL(
+            "CREATE INDEX IF NOT EXISTS `index_scrobbleEntry_serverId` " +
+                "ON `scrobbleEntry` (`serverId`)"
+        )
+    }
+}
+
+val MIGRATION_5_6: Migration = object : Migration(5, 6) {
+    override fun migrate(database: SupportSQLiteDatabase) {
+        database.execSQL("DROP TABLE IF EXISTS `offlineEntryFts`")
+        // The search text can't be computed here, the index is rebuilt on its first use
+        database.execSQL("DELETE FROM offlineEntry")
+        database.execSQL(
+            "ALTER TABLE offlineEntry ADD COLUMN searchText TEXT NOT NULL DEFAULT ''"
+        )
+        // The content sync triggers are created by Room after the migration
+        database.execSQL(
+            "CREATE VIRTUAL TABLE IF NOT EXISTS `offlineEntryFts` " +
+                "USING FTS4(`searchText` TEXT NOT NULL, content=`offlineEntry`)"
+        )
+    }
+}
@@ -0,0 +1,67 @@
+package org.moire.ultrasonic.data
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.Fts4
+import androidx.room.Index
+import androidx.room.PrimaryKey
+
+/**
+ * Contains the data model of a file or directory in the offline music catalog
+ * @param id: Unique Id of the entry, also used as the rowid of the full-text index
+ * @param path: The absolute path of the file, without the ".complete" marker
+ * @param parent: The absolute path of the parent directory
+ * @param isDirectory: True if the entry is a directory
+ * @param name: The name of the file without extension, or the name of the directory
+ * @param title: The title tag of the file
+ * @param artist: The artist tag of the file
+ * @param album: The album tag of the file
+ * @param track: The track number of the file
+ * @param discNumber: The disc number of the file
+ * @param year: The year tag of the file
+ * @param genre: The genre tag of the file
+ * @param duration: The duration of the file in seconds
+ * @param isVideo: True if the file is a video
+ * @param suffix: The extension of the file
+ * @param size: The size of the file in bytes
+ * @param lastModified: The modification time of the file when its tags were read
+ * @param searchText: The lower case words of the name and the title, separated by spaces
+ */
+@Entity(
+    tableName = "offlineEntry",
+    indices = [Index(value = ["path"], unique = true), Index(value = ["parent"])]
+)
+data class OfflineEntry(
+    @PrimaryKey(autoGenerate = true) @ColumnInfo(name = "id") var id: Long,
+    @ColumnInfo(name = "path") var path: String,
+    @ColumnInfo(name = "parent") var parent: String,
+    @ColumnInfo(name = "isDirectory") var isDirectory: Boolean,
+    @ColumnInfo(name = "name") var name: String,
+    @ColumnInfo(name = "title") var title: String?,
+    @ColumnInfo(name = "artist") var artist: String?,
+    @ColumnInfo(name = "album") var album: String?,
+    @ColumnInfo(name = "track") var track: Int?,
+    @ColumnInfo(name = "discNumber") var discNumber: Int?,
+    @ColumnInfo(name = "year") var year: Int?,
+    @ColumnInfo(name = "genre") var genre: String?,
+    @ColumnInfo(name = "duration") var duration: Int?,
+    @ColumnInfo(name = "isVideo") var isVideo: Boolean,
+    @ColumnInfo(name = "suffix") var suffix: String?,
+    @ColumnInfo(name = "size") var size: Long,
+    @ColumnInfo(name = "lastModified", defaultValue = "0") var lastModified: Long,
+    @ColumnInfo(name = "searchText", defaultValue = "") var searchText: String
+)
+
+/**
+ * Full-text index over the names and titles of the [OfflineEntry] table.
+ * Room keeps its content in sync with [OfflineEntry] using triggers.
+ *
+ * The default tokenizer only folds the case of ASCII letters, and the unicode61 tokenizer isn't
+ * available on every supported Android version. So the normalized [OfflineEntry.searchText]
+ * is indexed instead of the names, it is tokenized the same way as the search queries.
+ */
+@Fts4(contentEntity = OfflineEntry::class)
+@Entity(tableName = "offlineEntryFts")
+data class OfflineEntryFts(
+    @ColumnInfo(name = "searchText") var searchText: String
+)
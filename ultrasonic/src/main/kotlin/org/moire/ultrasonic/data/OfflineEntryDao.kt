@@ -0,0 +1,88 @@
+package org.moire.ultrasonic.data
+
+import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.OnConflictStrategy
+import androidx.room.Query
+
+/**
+ * Room Dao for the Offline Entry table.
+ * The methods are blocking, they must be called on a background thread.
+ */
+@Dao
+interface OfflineEntryDao {
+
+    /**
+     * Inserts a new Offline Entry, if no entry exists with the same path
+     */
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    fun insertIfAbsent(entry: OfflineEntry): Long
+
+    /**
+     * Deletes the Offline Entry with the given path
+     */
+    @Query("DELETE FROM offlineEntry WHERE [path] = :path")
+    fun delete(path: String)
+
+    /**
+     * Deletes the Offline Entry with the given path and all the entries below it.
+     * The prefix must be the path followed by the path separator.
+     */
+    @Query(
+        "DELETE FROM offlineEntry WHERE [path] = :path " +
+            "OR substr([path], 1, length(:prefix)) = :prefix"
+    )
+    fun deleteTree(path: String, prefix: String)
+
+    /**
+     * Deletes all Offline Entries
+     */
+    @Query("DELETE FROM offlineEntry")
+    fun clear()
+
+    /**
+     * Finds an Offline Entry by its path
+     */
+    @Query("SELECT * FROM offlineEntry WHERE [path] = :path")
+    fun findByPath(path: String): OfflineEntry?
+
+    /**
+     * Finds the Offline Entries with the given paths
+     */
+    @Query("SELECT * FROM offlineEntry WHERE [path] IN (:paths)")
+    fun findByPaths(paths: List<String>): List<OfflineEntry>
+
+    /**
+     * Retrieves random files
+     */
+    @Query("SELECT * FROM offlineEntry WHERE [isDirectory] = 0 ORDER BY RANDOM() LIMIT :count")
+    fun getRandomFiles(count: Int): List<OfflineEntry>
+
+    /**
+     * Retrieves the children of a directory, ordered by their path
+     */
+    @Query("SELECT * FROM offlineEntry WHERE [parent] = :parent ORDER BY [path]")
+    fun getChildren(parent: String): List<OfflineEntry>
+
+    /**
+     * Retrieves the subdirectories of a directory
+     */
+    @Query("SELECT * FROM offlineEntry WHERE [parent] = :parent AND [isDirectory] = 1")
+    fun getDirectories(parent: String): List<OfflineEntry>
+
+    /**
+     * Retrieves the number of children of a directory
+     */
+    @Query("SELECT COUNT(*) FROM offlineEntry WHERE [parent] = :parent")
+    fun countChildren(parent: String): Int
+
+    /**
+     * Retrieves the Offline Entries whose name or title match the full-text query
+     */
+    @Query(
+        "SELECT offlineEntry.* FROM offlineEntry " +
+            "JOIN offlineEntryFts ON offlineEntry.rowid = offlineEntryFts.rowid " +
+            "WHERE offlineEntryFts MATCH :query"
+    )
+    fun search(query: String): List<OfflineEntry>
+}
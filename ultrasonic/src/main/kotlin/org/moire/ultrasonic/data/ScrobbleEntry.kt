@@ -0,0 +1,23 @@
+package org.moire.ultrasonic.data
+
+import androidx.room.Entity
+import androidx.room.Index
+import androidx.room.PrimaryKey
+
+/**
+ * Contains the data model of a played song which is waiting to be scrobbled
+ * @param id: Unique Id of the entry, also defines the order of the submissions
+ * @param serverId: The Id of the Server Setting the song was played from
+ * @param songId: The Id of the song on the server
+ * @param time: The time the song was played, in milliseconds since the epoch
+ */
+@Entity(
+    tableName = "scrobbleEntry",
+    indices = [Index(value = ["serverId"])]
+)
+data class ScrobbleEntry(
+    @PrimaryKey(autoGenerate = true) val id: Long,
+    val serverId: Int,
+    val songId: String,
+    val time: Long
+)
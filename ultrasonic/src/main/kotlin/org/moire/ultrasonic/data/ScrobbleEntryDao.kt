@@ -0,0 +1,37 @@
+package org.moire.ultrasonic.data
+
+import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.Query
+
+/**
+ * Room Dao for the Scrobble Entry table.
+ * The methods are blocking, they must be called on a background thread.
+ */
+@Dao
+interface ScrobbleEntryDao {
+
+    /**
+     * Inserts a new Scrobble Entry
+     */
+    @Insert
+    fun insert(entry: ScrobbleEntry): Long
+
+    /**
+     * Deletes the Scrobble Entries with the given ids
+     */
+    @Query("DELETE FROM scrobbleEntry WHERE [id] IN (:ids)")
+    fun delete(ids: List<Long>)
+
+    /**
+     * Retrieves the oldest Scrobble Entries of a Server
+     */
+    @Query("SELECT * FROM scrobbleEntry WHERE [serverId] = :serverId ORDER BY [id] LIMIT :count")
+    fun getOldest(serverId: Int, count: Int): List<ScrobbleEntry>
+
+    /**
+     * Retrieves the number of Scrobble Entries waiting for a Server
+     */
+    @Query("SELECT COUNT(*) FROM scrobbleEntry WHERE [serverId] = :serverId")
+    fun count(serverId: Int): Int
+}
@@ -7,7 +7,15 @@ import org.koin.core.qualifier.named
 import org.koin.dsl.module
 import org.moire.ultrasonic.data.AppDatabase
 import org.moire.ultrasonic.data.MIGRATION_1_2
+import org.moire.ultrasonic.data.MIGRATION_2_3
+import org.moire.ultrasonic.data.MIGRATION_3_4
+import org.moire.ultrasonic.data.MIGRATION_4_5
+import org.moire.ultrasonic.data.MIGRATION_5_6
 import org.moire.ultrasonic.fragment.ServerSettingsModel
+import org.moire.ultrasonic.service.OfflineMusicIndex
+import org.moire.ultrasonic.service.PlaylistStorage
+import org.moire.ultrasonic.service.ScrobbleQueue
+import org.moire.ultrasonic.service.ServerMetadataCaches
 import org.moire.ultrasonic.util.Util
 
 const val SP_NAME = "Default_SP"
@@ -24,12 +32,20 @@ val appPermanentStorage = module {
             AppDatabase::class.java,
             "ultrasonic-database"
         )
-            .addMigrations(MIGRATION_1_2)
+            .addMigrations(
+                MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6
+            )
             .fallbackToDestructiveMigrationOnDowngrade()
             .build()
     }
 
     single { get<AppDatabase>().serverSettingDao() }
+    single { get<AppDatabase>().offlineEntryDao() }
+    single { OfflineMusicIndex(androidContext(), get(), get()) }
+    single { PlaylistStorage(androidContext()) }
+    single { ServerMetadataCaches() }
+    single { get<AppDatabase>().scrobbleEntryDao() }
+    single { ScrobbleQueue(androidContext(), get()) }
 
-    viewModel { ServerSettingsModel(get(), get(), androidContext()) }
+    viewModel { ServerSettingsModel(get(), get(), get(), androidContext()) }
 }
@@ -3,6 +3,7 @@ package org.moire.ultrasonic.di
 import org.koin.android.ext.koin.androidContext
 import org.koin.dsl.module
 import org.moire.ultrasonic.data.ActiveServerProvider
+import org.moire.ultrasonic.service.LibraryPrewarmer
 import org.moire.ultrasonic.subsonic.ImageLoaderProvider
 import org.moire.ultrasonic.util.NowPlayingEventDistributor
 import org.moire.ultrasonic.util.PermissionUtil
@@ -17,4 +18,5 @@ val applicationModule = module {
     single { PermissionUtil(androidContext()) }
     single { NowPlayingEventDistributor() }
     single { ThemeChangedEventDistributor() }
+    single { LibraryPrewarmer(androidContext(), get(), get()) }
 }
@@ -1,11 +1,31 @@
 package org.moire.ultrasonic.di
 
+import java.io.File
 import okhttp3.OkHttpClient
+import org.koin.android.ext.koin.androidContext
 import org.koin.dsl.module
+import org.moire.ultrasonic.api.subsonic.SubsonicNetworkConfiguration
+import org.moire.ultrasonic.service.ReceivedBytesCounter
+
+private const val HTTP_CACHE_DIRECTORY = "http"
 
 /**
  * This Koin module provides base network dependencies.
+ *
+ * The [OkHttpClient] is shared between all server connections, so REST, stream and image
+ * traffic use one dispatcher, connection pool and http cache.
+ * The [ReceivedBytesCounter] is registered on it, so it sees the requests of every client.
  */
 val baseNetworkModule = module {
-    single { OkHttpClient.Builder().build() }
+    single {
+        SubsonicNetworkConfiguration(
+            cacheDirectory = File(androidContext().cacheDir, HTTP_CACHE_DIRECTORY)
+        )
+    }
+    single { ReceivedBytesCounter() }
+    single<OkHttpClient> {
+        get<SubsonicNetworkConfiguration>().createBaseClient().newBuilder()
+            .addNetworkInterceptor(get<ReceivedBytesCounter>())
+            .build()
+    }
 }
@@ -11,6 +11,11 @@ import org.moire.ultrasonic.service.LocalMediaPlayer
 import org.moire.ultrasonic.service.MediaPlayerController
 import org.moire.ultrasonic.service.MediaPlayerControllerImpl
 import org.moire.ultrasonic.service.MediaPlayerLifecycleSupport
+import org.moire.ultrasonic.service.NowPlayingPublisher
+import org.moire.ultrasonic.service.PlaybackMetrics
+import org.moire.ultrasonic.service.PositionClock
+import org.moire.ultrasonic.service.ReadAheadPolicy
+import org.moire.ultrasonic.service.ThroughputEstimator
 import org.moire.ultrasonic.util.ShufflePlayBuffer
 
 /**
@@ -27,7 +32,12 @@ val mediaPlayerModule = module {
     single { ExternalStorageMonitor(androidContext()) }
     single { ShufflePlayBuffer(androidContext()) }
     single { Downloader(androidContext(), get(), get(), get()) }
-    single { LocalMediaPlayer(get(), androidContext()) }
+    single { LocalMediaPlayer(get(), get(), get(), get(), get(), androidContext()) }
+    single { PlaybackMetrics() }
+    single { ReadAheadPolicy(androidContext()) }
+    single { ThroughputEstimator() }
+    single { PositionClock() }
+    single { NowPlayingPublisher(androidContext()) }
     single { AudioFocusHandler(get()) }
 
     // TODO Ideally this can be cleaned up when all circular references are removed.
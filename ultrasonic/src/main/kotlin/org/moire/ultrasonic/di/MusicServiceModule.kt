@@ -63,16 +63,17 @@ val musicServiceModule = module {
             allowSelfSignedCertificate = get<ActiveServerProvider>()
                 .getActiveServer().allowSelfSignedCertificate,
             enableLdapUserSupport = get<ActiveServerProvider>().getActiveServer().ldapSupport,
-            debug = BuildConfig.DEBUG
+            debug = BuildConfig.DEBUG,
+            network = get()
         )
     }
 
     single<HttpLoggingInterceptor.Logger> { TimberOkHttpLogger() }
-    single { SubsonicAPIClient(get(), get()) }
+    single { SubsonicAPIClient(get(), get(), get()) }
     single { ApiCallResponseChecker(get(), get()) }
 
     single<MusicService>(named(ONLINE_MUSIC_SERVICE)) {
-        CachedMusicService(RESTMusicService(get(), get(), get(), get()))
+        CachedMusicService(RESTMusicService(get(), get(), get(), get(), get()))
     }
 
     single<MusicService>(named(OFFLINE_MUSIC_SERVICE)) {
@@ -9,10 +9,12 @@ import java.util.Locale
 import org.moire.ultrasonic.api.subsonic.models.MusicDirectory as APIMusicDirectory
 import org.moire.ultrasonic.api.subsonic.models.MusicDirectoryChild
 
-internal val dateFormat: DateFormat by lazy {
+private val threadLocalDateFormat = ThreadLocalDateFormat {
     SimpleDateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT, Locale.getDefault())
 }
 
+internal val dateFormat: DateFormat get() = threadLocalDateFormat.format
+
 fun MusicDirectoryChild.toDomainEntity(): MusicDirectory.Entry = MusicDirectory.Entry().apply {
     id = this@toDomainEntity.id
     parent = this@toDomainEntity.parent
@@ -3,11 +3,13 @@
 @file:JvmName("APIPlaylistConverter")
 package org.moire.ultrasonic.domain
 
+import java.text.DateFormat
 import java.text.SimpleDateFormat
-import kotlin.LazyThreadSafetyMode.NONE
 import org.moire.ultrasonic.api.subsonic.models.Playlist as APIPlaylist
 
-internal val playlistDateFormat by lazy(NONE) { SimpleDateFormat.getInstance() }
+private val threadLocalPlaylistDateFormat = ThreadLocalDateFormat { SimpleDateFormat.getInstance() }
+
+internal val playlistDateFormat: DateFormat get() = threadLocalPlaylistDateFormat.format
 
 fun APIPlaylist.toMusicDirectoryDomainEntity(): MusicDirectory = MusicDirectory().apply {
     name = this@toMusicDirectoryDomainEntity.name
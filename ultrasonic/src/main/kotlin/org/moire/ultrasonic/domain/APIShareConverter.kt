@@ -2,11 +2,13 @@
 @file:JvmName("APIShareConverter")
 package org.moire.ultrasonic.domain
 
+import java.text.DateFormat
 import java.text.SimpleDateFormat
-import kotlin.LazyThreadSafetyMode.NONE
 import org.moire.ultrasonic.api.subsonic.models.Share as APIShare
 
-internal val shareTimeFormat by lazy(NONE) { SimpleDateFormat.getInstance() }
+private val threadLocalShareTimeFormat = ThreadLocalDateFormat { SimpleDateFormat.getInstance() }
+
+internal val shareTimeFormat: DateFormat get() = threadLocalShareTimeFormat.format
 
 fun List<APIShare>.toDomainEntitiesList(): List<Share> = this.map {
     it.toDomainEntity()
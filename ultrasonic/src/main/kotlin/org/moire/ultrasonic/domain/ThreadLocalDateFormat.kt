@@ -0,0 +1,20 @@
+package org.moire.ultrasonic.domain
+
+import java.text.DateFormat
+
+/**
+ * Holds separate [DateFormat] instance for each thread.
+ *
+ * [DateFormat] is not thread-safe, while converters are called concurrently from
+ * background threads. Formats are created once per thread and then reused.
+ */
+internal class ThreadLocalDateFormat(
+    private val createFormat: () -> DateFormat
+) : ThreadLocal<DateFormat>() {
+    override fun initialValue(): DateFormat = createFormat()
+
+    /**
+     * Returns [DateFormat] that could be safely used on the current thread.
+     */
+    val format: DateFormat get() = get()!!
+}
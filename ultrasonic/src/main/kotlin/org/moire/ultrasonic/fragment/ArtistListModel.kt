@@ -46,6 +46,13 @@ class ArtistListModel(
     private val musicFolders: MutableLiveData<List<MusicFolder>> = MutableLiveData()
     private val artists: MutableLiveData<List<Artist>> = MutableLiveData()
 
+    /**
+     * The articles to be ignored when sorting the retrieved Artists
+     */
+    @Volatile
+    var ignoredArticles: String? = null
+        private set
+
     /**
      * Retrieves the available Artists in a LiveData
      */
@@ -99,6 +106,7 @@ class ArtistListModel(
                     ArrayList(result.shortcuts.size + result.artists.size)
                 retrievedArtists.addAll(result.shortcuts)
                 retrievedArtists.addAll(result.artists)
+                ignoredArticles = result.ignoredArticles
                 artists.postValue(retrievedArtists)
             } catch (exception: Exception) {
                 Handler(Looper.getMainLooper()).post {
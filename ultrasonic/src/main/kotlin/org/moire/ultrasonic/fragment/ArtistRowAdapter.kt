@@ -18,6 +18,8 @@
  */
 package org.moire.ultrasonic.fragment
 
+import android.os.Handler
+import android.os.Looper
 import android.view.LayoutInflater
 import android.view.MenuInflater
 import android.view.MenuItem
@@ -28,21 +30,27 @@ import android.widget.LinearLayout
 import android.widget.PopupMenu
 import android.widget.RelativeLayout
 import android.widget.TextView
+import androidx.recyclerview.widget.AsyncDifferConfig
+import androidx.recyclerview.widget.AsyncListDiffer
+import androidx.recyclerview.widget.DiffUtil
+import androidx.recyclerview.widget.ListUpdateCallback
 import androidx.recyclerview.widget.RecyclerView
 import com.simplecityapps.recyclerview_fastscroll.views.FastScrollRecyclerView.SectionedAdapter
-import java.text.Collator
 import org.moire.ultrasonic.R
 import org.moire.ultrasonic.data.ActiveServerProvider.Companion.isOffline
 import org.moire.ultrasonic.domain.Artist
 import org.moire.ultrasonic.domain.MusicDirectory
 import org.moire.ultrasonic.util.ImageLoader
+import org.moire.ultrasonic.util.NameSortKeys
+import org.moire.ultrasonic.util.TaskExecutors
 import org.moire.ultrasonic.util.Util
 
 /**
  * Creates a Row in a RecyclerView which contains the details of an Artist
  */
 class ArtistRowAdapter(
-    private var artistList: List<Artist>,
+    artistList: List<Artist>,
+    ignoredArticles: String?,
     private var folderName: String,
     private var shouldShowHeader: Boolean,
     val onArtistClick: (Artist) -> Unit,
@@ -51,12 +59,36 @@ class ArtistRowAdapter(
     private val imageLoader: ImageLoader
 ) : RecyclerView.Adapter<RecyclerView.ViewHolder>(), SectionedAdapter {
 
+    private val differ = AsyncListDiffer(
+        OffsetListUpdateCallback(),
+        AsyncDifferConfig.Builder(ArtistItemCallback())
+            .setBackgroundThreadExecutor(backgroundExecutor)
+            .build()
+    )
+    private val mainHandler = Handler(Looper.getMainLooper())
+    private var dataGeneration = 0
+
+    private val items: List<ArtistItem>
+        get() = differ.currentList
+
+    init {
+        setData(artistList, ignoredArticles)
+    }
+
     /**
-     * Sets the data to be displayed in the RecyclerView
+     * Sets the data to be displayed in the RecyclerView.
+     * The data is sorted in the background ignoring the leading [ignoredArticles],
+     * then only the changed rows are updated.
      */
-    fun setData(data: List<Artist>) {
-        artistList = data.sortedWith(compareBy(Collator.getInstance()) { t -> t.name })
-        notifyDataSetChanged()
+    fun setData(data: List<Artist>, ignoredArticles: String?) {
+        val generation = ++dataGeneration
+        backgroundExecutor.execute {
+            val sortedItems = createItems(data, ignoredArticles)
+            mainHandler.post {
+                // Newer data was set while this was being sorted
+                if (generation == dataGeneration) differ.submitList(sortedItems)
+            }
+        }
     }
 
     /**
@@ -64,7 +96,7 @@ class ArtistRowAdapter(
      */
     fun setFolderName(name: String) {
         folderName = name
-        notifyDataSetChanged()
+        if (shouldShowHeader) notifyItemChanged(0)
     }
 
     /**
@@ -114,11 +146,12 @@ class ArtistRowAdapter(
     override fun onBindViewHolder(holder: RecyclerView.ViewHolder, position: Int) {
         if (holder is ArtistViewHolder) {
             val listPosition = if (shouldShowHeader) position - 1 else position
-            holder.textView.text = artistList[listPosition].name
-            holder.section.text = getSectionForArtist(listPosition)
-            holder.layout.setOnClickListener { onArtistClick(artistList[listPosition]) }
-            holder.layout.setOnLongClickListener { view -> createPopupMenu(view, listPosition) }
-            holder.coverArtId = artistList[listPosition].coverArt
+            val item = items[listPosition]
+            holder.textView.text = item.artist.name
+            holder.section.text = if (item.isFirstInSection) item.section else ""
+            holder.layout.setOnClickListener { onArtistClick(item.artist) }
+            holder.layout.setOnLongClickListener { view -> createPopupMenu(view, item.artist) }
+            holder.coverArtId = item.artist.coverArt
 
             if (Util.getShouldShowArtistPicture(holder.coverArt.context)) {
                 holder.coverArt.visibility = View.VISIBLE
@@ -136,7 +169,7 @@ class ArtistRowAdapter(
         }
     }
 
-    override fun getItemCount() = if (shouldShowHeader) artistList.size + 1 else artistList.size
+    override fun getItemCount() = if (shouldShowHeader) items.size + 1 else items.size
 
     override fun getItemViewType(position: Int): Int {
         return if (position == 0 && shouldShowHeader) TYPE_HEADER else TYPE_ITEM
@@ -149,30 +182,29 @@ class ArtistRowAdapter(
         // scrolled up to the "Select Folder" row
         if (listPosition < 0) listPosition = 0
 
-        return getSectionFromName(artistList[listPosition].name ?: " ")
+        return items.getOrNull(listPosition)?.section ?: ""
     }
 
-    private fun getSectionForArtist(artistPosition: Int): String {
-        if (artistPosition == 0)
-            return getSectionFromName(artistList[artistPosition].name ?: " ")
-
-        val previousArtistSection = getSectionFromName(
-            artistList[artistPosition - 1].name ?: " "
-        )
-        val currentArtistSection = getSectionFromName(
-            artistList[artistPosition].name ?: " "
-        )
+    // Called on the background executor
+    private fun createItems(data: List<Artist>, ignoredArticles: String?): List<ArtistItem> {
+        val sortKeys = NameSortKeys.forArticles(ignoredArticles)
 
-        return if (previousArtistSection == currentArtistSection) "" else currentArtistSection
+        var previousSection: String? = null
+        return sortKeys.sortArtists(data).map { artist ->
+            val section = getSectionFromName(sortKeys.getSortName(artist.name))
+            val item = ArtistItem(artist, section, section != previousSection)
+            previousSection = section
+            item
+        }
     }
 
     private fun getSectionFromName(name: String): String {
-        var section = name.first().toUpperCase()
+        var section = name.firstOrNull()?.toUpperCase() ?: ' '
         if (!section.isLetter()) section = '#'
         return section.toString()
     }
 
-    private fun createPopupMenu(view: View, position: Int): Boolean {
+    private fun createPopupMenu(view: View, artist: Artist): Boolean {
         val popup = PopupMenu(view.context, view)
         val inflater: MenuInflater = popup.menuInflater
         inflater.inflate(R.menu.select_artist_context, popup.menu)
@@ -181,14 +213,59 @@ class ArtistRowAdapter(
         downloadMenuItem?.isVisible = !isOffline(view.context)
 
         popup.setOnMenuItemClickListener { menuItem ->
-            onContextMenuClick(menuItem, artistList[position])
+            onContextMenuClick(menuItem, artist)
         }
         popup.show()
         return true
     }
 
+    /**
+     * An Artist with its precomputed section
+     */
+    private data class ArtistItem(
+        val artist: Artist,
+        val section: String,
+        val isFirstInSection: Boolean
+    )
+
+    private class ArtistItemCallback : DiffUtil.ItemCallback<ArtistItem>() {
+        override fun areItemsTheSame(oldItem: ArtistItem, newItem: ArtistItem): Boolean {
+            return oldItem.artist.id == newItem.artist.id
+        }
+
+        override fun areContentsTheSame(oldItem: ArtistItem, newItem: ArtistItem): Boolean {
+            return oldItem == newItem
+        }
+    }
+
+    // Shifts the positions of the changed Artists by the Header row
+    private inner class OffsetListUpdateCallback : ListUpdateCallback {
+        private val offset: Int
+            get() = if (shouldShowHeader) 1 else 0
+
+        override fun onInserted(position: Int, count: Int) {
+            notifyItemRangeInserted(position + offset, count)
+        }
+
+        override fun onRemoved(position: Int, count: Int) {
+            notifyItemRangeRemoved(position + offset, count)
+        }
+
+        override fun onMoved(fromPosition: Int, toPosition: Int) {
+            notifyItemMoved(fromPosition + offset, toPosition + offset)
+        }
+
+        override fun onChanged(position: Int, count: Int, payload: Any?) {
+            notifyItemRangeChanged(position + offset, count, payload)
+        }
+    }
+
     companion object {
         private const val TYPE_HEADER = 0
         private const val TYPE_ITEM = 1
+
+        // Sorts the Artists and computes the differences on a single thread,
+        // so the lists are submitted in order
+        private val backgroundExecutor = TaskExecutors.newSerialExecutor("ArtistList")
     }
 }
@@ -29,6 +29,7 @@ import org.moire.ultrasonic.data.ActiveServerProvider.Companion.isOffline
 import org.moire.ultrasonic.domain.MusicDirectory
 import org.moire.ultrasonic.fragment.FragmentTitle.Companion.getTitle
 import org.moire.ultrasonic.fragment.FragmentTitle.Companion.setTitle
+import org.moire.ultrasonic.service.CommunicationErrorHandler
 import org.moire.ultrasonic.service.MediaPlayerController
 import org.moire.ultrasonic.service.MusicService
 import org.moire.ultrasonic.service.MusicServiceFactory.getMusicService
@@ -42,6 +43,7 @@ import org.moire.ultrasonic.util.CancellationToken
 import org.moire.ultrasonic.util.Constants
 import org.moire.ultrasonic.util.EntryByDiscAndTrackComparator
 import org.moire.ultrasonic.util.FragmentBackgroundTask
+import org.moire.ultrasonic.util.PagedListLoader
 import org.moire.ultrasonic.util.Util
 import org.moire.ultrasonic.view.AlbumView
 import org.moire.ultrasonic.view.EntryAdapter
@@ -82,6 +84,8 @@ class SelectAlbumFragment : Fragment() {
     private val imageLoaderProvider: ImageLoaderProvider by inject()
     private val shareHandler: ShareHandler by inject()
     private var cancellationToken: CancellationToken? = null
+    private var entryAdapter: EntryAdapter? = null
+    private var pagedListLoader: PagedListLoader<MusicDirectory.Entry>? = null
 
     override fun onCreate(savedInstanceState: Bundle?) {
         Util.applyTheme(this.context)
@@ -409,6 +413,7 @@ class SelectAlbumFragment : Fragment() {
 
     override fun onDestroyView() {
         cancellationToken!!.cancel()
+        pagedListLoader?.stop()
         super.onDestroyView()
     }
 
@@ -613,35 +618,24 @@ class SelectAlbumFragment : Fragment() {
         setTitle(this, genre)
 
         object : LoadTask() {
+            // Further pages are appended in the order of the server, so the first isn't sorted
+            override fun sortableCollection(): Boolean {
+                return false
+            }
+
             override fun load(service: MusicService): MusicDirectory {
                 return service.getSongsByGenre(genre, count, offset, context)
             }
 
             override fun done(result: Pair<MusicDirectory, Boolean>) {
-                // Hide more button when results are less than album list size
-                if (result.first.getChildren().size < arguments!!.getInt(
-                    Constants.INTENT_EXTRA_NAME_ALBUM_LIST_SIZE, 0
-                )
-                ) {
-                    moreButton!!.visibility = View.GONE
-                } else {
-                    moreButton!!.visibility = View.VISIBLE
-                }
+                super.done(result)
 
-                moreButton!!.setOnClickListener {
-                    val theGenre = arguments!!.getString(Constants.INTENT_EXTRA_NAME_GENRE_NAME)
-                    val size = arguments!!.getInt(Constants.INTENT_EXTRA_NAME_ALBUM_LIST_SIZE, 0)
-                    val theOffset = arguments!!.getInt(
-                        Constants.INTENT_EXTRA_NAME_ALBUM_LIST_OFFSET, 0
-                    ) + size
-                    val bundle = Bundle()
-                    bundle.putString(Constants.INTENT_EXTRA_NAME_GENRE_NAME, theGenre)
-                    bundle.putInt(Constants.INTENT_EXTRA_NAME_ALBUM_LIST_SIZE, size)
-                    bundle.putInt(Constants.INTENT_EXTRA_NAME_ALBUM_LIST_OFFSET, theOffset)
-                    Navigation.findNavController(view!!).navigate(R.id.selectAlbumFragment, bundle)
+                // Further songs are loaded while scrolling instead of using the more button
+                moreButton!!.visibility = View.GONE
+                val loadedCount = result.first.getChildren().size
+                startPaging(count, offset, loadedCount) { service, pageOffset, pageSize ->
+                    service.getSongsByGenre(genre, pageSize, pageOffset, context)
                 }
-
-                super.done(result)
             }
         }.execute()
     }
@@ -740,10 +734,9 @@ class SelectAlbumFragment : Fragment() {
         // setActionBarSubtitle(albumListTitle);
 
         object : LoadTask() {
+            // Further pages are appended in the order of the server, so the first isn't sorted
             override fun sortableCollection(): Boolean {
-                return albumListType != "newest" && albumListType != "random" &&
-                    albumListType != "highest" && albumListType != "recent" &&
-                    albumListType != "frequent"
+                return false
             }
 
             override fun load(service: MusicService): MusicDirectory {
@@ -759,49 +752,45 @@ class SelectAlbumFragment : Fragment() {
                     unpinButton!!.visibility = View.GONE
                     downloadButton!!.visibility = View.GONE
                     deleteButton!!.visibility = View.GONE
-
-                    // Hide more button when results are less than album list size
-                    if (result.first.getChildren().size < arguments!!.getInt(
-                        Constants.INTENT_EXTRA_NAME_ALBUM_LIST_SIZE, 0
-                    )
-                    ) {
-                        moreButton!!.visibility = View.GONE
-                    } else {
-                        moreButton!!.visibility = View.VISIBLE
-                        moreButton!!.setOnClickListener {
-                            val theAlbumListTitle = arguments!!.getInt(
-                                Constants.INTENT_EXTRA_NAME_ALBUM_LIST_TITLE, 0
-                            )
-                            val type = arguments!!.getString(
-                                Constants.INTENT_EXTRA_NAME_ALBUM_LIST_TYPE
-                            )
-                            val theSize = arguments!!.getInt(
-                                Constants.INTENT_EXTRA_NAME_ALBUM_LIST_SIZE, 0
-                            )
-                            val theOffset = arguments!!.getInt(
-                                Constants.INTENT_EXTRA_NAME_ALBUM_LIST_OFFSET, 0
-                            ) + theSize
-
-                            val bundle = Bundle()
-                            bundle.putInt(
-                                Constants.INTENT_EXTRA_NAME_ALBUM_LIST_TITLE, theAlbumListTitle
-                            )
-                            bundle.putString(Constants.INTENT_EXTRA_NAME_ALBUM_LIST_TYPE, type)
-                            bundle.putInt(Constants.INTENT_EXTRA_NAME_ALBUM_LIST_SIZE, theSize)
-                            bundle.putInt(Constants.INTENT_EXTRA_NAME_ALBUM_LIST_OFFSET, theOffset)
-                            Navigation.findNavController(view!!).navigate(
-                                R.id.selectAlbumFragment, bundle
-                            )
-                        }
-                    }
-                } else {
-                    moreButton!!.visibility = View.GONE
                 }
                 super.done(result)
+
+                // Further albums are loaded while scrolling instead of using the more button
+                moreButton!!.visibility = View.GONE
+                val loadedCount = result.first.getChildren().size
+                startPaging(size, offset, loadedCount) { service, pageOffset, pageSize ->
+                    if (Util.getShouldUseId3Tags(context))
+                        service.getAlbumList2(albumListType, pageSize, pageOffset, context)
+                    else
+                        service.getAlbumList(albumListType, pageSize, pageOffset, context)
+                }
             }
         }.execute()
     }
 
+    /**
+     * Appends further pages of the list to the current [entryAdapter] while the user scrolls.
+     * Paging starts only when the first page, starting at [offset], was full.
+     */
+    private fun startPaging(
+        pageSize: Int,
+        offset: Int,
+        loadedCount: Int,
+        loadPage: (service: MusicService, offset: Int, count: Int) -> MusicDirectory
+    ) {
+        val adapter = entryAdapter
+        if (adapter == null || pageSize <= 0 || loadedCount < pageSize) return
+
+        val context = requireContext()
+        pagedListLoader = PagedListLoader(
+            albumListView!!, adapter, pageSize, offset + loadedCount,
+            { pageOffset, count ->
+                loadPage(getMusicService(context), pageOffset, count).getChildren()
+            },
+            onError = { error -> CommunicationErrorHandler.handleError(error, context) }
+        ).also { it.start() }
+    }
+
     private fun selectAllOrNone() {
         var someUnselected = false
         val count = albumListView!!.count
@@ -1044,10 +1033,14 @@ class SelectAlbumFragment : Fragment() {
                 shareButton!!.isVisible = shareButtonVisible
             }
 
-            albumListView!!.adapter = EntryAdapter(
+            pagedListLoader?.stop()
+            pagedListLoader = null
+            // The adapter gets its own list, as paging appends to it
+            entryAdapter = EntryAdapter(
                 context,
-                imageLoaderProvider.getImageLoader(), entries, true
+                imageLoaderProvider.getImageLoader(), entries.toMutableList(), true
             )
+            albumListView!!.adapter = entryAdapter
 
             val playAll = arguments!!.getBoolean(Constants.INTENT_EXTRA_NAME_AUTOPLAY, false)
             if (playAll && songCount > 0) {
@@ -95,12 +95,16 @@ class SelectArtistFragment : Fragment() {
 
         val artists = artistListModel.getArtists(refresh, refreshArtistListView!!)
         artists.observe(
-            viewLifecycleOwner, Observer { changedArtists -> viewAdapter.setData(changedArtists) }
+            viewLifecycleOwner,
+            Observer { changedArtists ->
+                viewAdapter.setData(changedArtists, artistListModel.ignoredArticles)
+            }
         )
 
         viewManager = LinearLayoutManager(this.context)
         viewAdapter = ArtistRowAdapter(
             artists.value ?: listOf(),
+            artistListModel.ignoredArticles,
             getText(R.string.select_artist_all_folders).toString(),
             shouldShowHeader,
             { artist -> onItemClick(artist) },
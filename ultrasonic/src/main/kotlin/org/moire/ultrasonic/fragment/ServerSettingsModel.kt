@@ -14,6 +14,7 @@ import kotlinx.coroutines.runBlocking
 import org.moire.ultrasonic.data.ActiveServerProvider
 import org.moire.ultrasonic.data.ServerSetting
 import org.moire.ultrasonic.data.ServerSettingDao
+import org.moire.ultrasonic.service.ServerMetadataCaches
 import timber.log.Timber
 
 /**
@@ -22,6 +23,7 @@ import timber.log.Timber
 class ServerSettingsModel(
     private val repository: ServerSettingDao,
     private val activeServerProvider: ActiveServerProvider,
+    private val serverMetadataCaches: ServerMetadataCaches,
     private val context: Context
 ) : ViewModel() {
 
@@ -152,6 +154,7 @@ class ServerSettingsModel(
             val itemToBeDeleted = repository.findByIndex(index)
             if (itemToBeDeleted != null) {
                 repository.delete(itemToBeDeleted)
+                serverMetadataCaches.remove(itemToBeDeleted.id)
                 Timber.d("deleteItem deleted index: $index")
                 reindexSettings()
                 activeServerProvider.invalidateCache()
@@ -167,6 +170,7 @@ class ServerSettingsModel(
 
         appScope.launch {
             repository.update(serverSetting)
+            serverMetadataCaches.remove(serverSetting.id)
             activeServerProvider.invalidateCache()
             Timber.d("updateItem updated server setting: $serverSetting")
         }
@@ -0,0 +1,271 @@
+package org.moire.ultrasonic.log
+
+import android.util.Log
+import java.io.BufferedWriter
+import java.io.File
+import java.io.FileOutputStream
+import java.io.OutputStreamWriter
+import java.io.Writer
+import java.text.SimpleDateFormat
+import java.util.Date
+import java.util.Locale
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+import java.util.concurrent.locks.LockSupport
+import org.moire.ultrasonic.util.Util
+
+private const val QUEUE_CAPACITY = 4096 // Must be a power of two
+private const val FLUSH_RECORD_COUNT = 256
+private const val FLUSH_BYTE_COUNT = 32 * 1024
+private const val WRITE_BUFFER_SIZE = 64 * 1024
+private const val INDEX_MASK = QUEUE_CAPACITY - 1L
+private val FLUSH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1)
+private val STOP_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(2)
+
+/**
+ * Writes log records into numbered log files on a single background thread.
+ *
+ * Records are enqueued without locking into a preallocated ring buffer, so enqueueing a record
+ * doesn't allocate. When the ring is full, new records are dropped and counted, so logging
+ * never blocks the calling thread. The writer keeps the current log file open and flushes it
+ * when enough records were written, when an error was logged, or at least once per second.
+ * The length of the log file in bytes is tracked while writing, so the files are only listed
+ * once, when the writer starts.
+ *
+ * @param directory returns the directory of the log files, called on the writer thread
+ * @param logToLogcat logs the state of the writer itself, called on the writer thread
+ */
+internal class AsyncLogWriter(
+    private val directory: () -> File,
+    private val fileNamePattern: String,
+    private val fileNumberRegex: Regex,
+    private val maxFileLength: Long,
+    private val logToLogcat: (priority: Int, message: String, t: Throwable?) -> Unit
+) {
+    // Each slot holds the sequence number it expects next: its position while it is free,
+    // its position + 1 while it holds a record which wasn't yet written
+    private val sequences = AtomicLongArray(QUEUE_CAPACITY)
+    private val times = LongArray(QUEUE_CAPACITY)
+    private val priorities = IntArray(QUEUE_CAPACITY)
+    private val tags = arrayOfNulls<String>(QUEUE_CAPACITY)
+    private val messages = arrayOfNulls<String>(QUEUE_CAPACITY)
+    private val exceptions = arrayOfNulls<String>(QUEUE_CAPACITY)
+    private val tail = AtomicLong()
+    @Volatile private var head = 0L
+    private val droppedCount = AtomicLong()
+    private val thread = Thread({ writeLoop() }, "FileLogger")
+    @Volatile private var isRunning = true
+
+    // Only accessed by the writer thread
+    private val dateFormat = SimpleDateFormat("HH:mm:ss.SSS", Locale.getDefault())
+    private val date = Date()
+    private var writer: Writer? = null
+    private var fileNumber = 0
+    private var fileLength = 0L
+    private var unflushedBytes = 0
+    private var lastFlushTime = 0L
+
+    init {
+        for (i in 0 until QUEUE_CAPACITY) sequences.set(i, i.toLong())
+    }
+
+    /**
+     * Starts the writer thread
+     */
+    fun start() {
+        thread.isDaemon = true
+        thread.priority = Thread.MIN_PRIORITY
+        thread.start()
+    }
+
+    /**
+     * Writes the remaining records and closes the log file.
+     * Waits a short time for the writer thread to finish.
+     */
+    fun stop() {
+        isRunning = false
+        LockSupport.unpark(thread)
+        try {
+            thread.join(STOP_TIMEOUT_MILLIS)
+        } catch (ignored: InterruptedException) {
+            Thread.currentThread().interrupt()
+        }
+    }
+
+    /**
+     * Enqueues a record to be written. Never blocks, drops the record if the ring is full.
+     */
+    fun enqueue(priority: Int, tag: String?, message: String, t: Throwable?) {
+        val position = claimSlot()
+        if (position < 0) {
+            droppedCount.incrementAndGet()
+            return
+        }
+
+        val index = (position and INDEX_MASK).toInt()
+        times[index] = System.currentTimeMillis()
+        priorities[index] = priority
+        tags[index] = tag
+        messages[index] = message
+        exceptions[index] = t?.toString()
+        sequences.lazySet(index, position + 1)
+
+        if (priority >= Log.ERROR || position + 1 - head == FLUSH_RECORD_COUNT.toLong()) {
+            LockSupport.unpark(thread)
+        }
+    }
+
+    // Returns the claimed position in the ring, or -1 if the ring is full
+    private fun claimSlot(): Long {
+        var position = tail.get()
+        while (true) {
+            val sequence = sequences.get((position and INDEX_MASK).toInt())
+            if (sequence < position) return -1
+            if (sequence == position && tail.compareAndSet(position, position + 1)) return position
+            position = tail.get()
+        }
+    }
+
+    private fun hasQueuedRecords() = tail.get() != head
+
+    private fun writeLoop() {
+        try {
+            openFile(getLastFileNumber())
+            logToLogcat(Log.INFO, "Logging into file ${getFile(fileNumber).name}", null)
+            lastFlushTime = System.nanoTime()
+
+            while (isRunning || hasQueuedRecords()) {
+                val flushNeeded = writeQueuedRecords()
+
+                if (flushNeeded || unflushedBytes >= FLUSH_BYTE_COUNT ||
+                    System.nanoTime() - lastFlushTime >= FLUSH_INTERVAL_NANOS
+                ) {
+                    flush()
+                }
+
+                if (isRunning && !hasQueuedRecords()) {
+                    LockSupport.parkNanos(this, FLUSH_INTERVAL_NANOS)
+                }
+            }
+            flush()
+        } catch (all: Throwable) {
+            logToLogcat(Log.ERROR, "Failed to write log file", all)
+        } finally {
+            Util.close(writer)
+            writer = null
+        }
+    }
+
+    // Returns true if a record needs to be flushed immediately
+    private fun writeQueuedRecords(): Boolean {
+        var flushNeeded = false
+        var count = 0
+
+        while (count < FLUSH_RECORD_COUNT) {
+            val position = head
+            val index = (position and INDEX_MASK).toInt()
+            // The record at the head may be claimed but not yet filled in
+            if (sequences.get(index) != position + 1) break
+            count++
+
+            writeDroppedCount()
+            write(index)
+            if (priorities[index] >= Log.ERROR) flushNeeded = true
+
+            tags[index] = null
+            messages[index] = null
+            exceptions[index] = null
+            head = position + 1
+            sequences.lazySet(index, position + QUEUE_CAPACITY)
+        }
+
+        return flushNeeded
+    }
+
+    private fun writeDroppedCount() {
+        val dropped = droppedCount.getAndSet(0)
+        if (dropped == 0L) return
+
+        date.time = System.currentTimeMillis()
+        writeLine("${dateFormat.format(date)}: W ${FileLoggerTree.TAG} $dropped records dropped\n")
+    }
+
+    private fun write(index: Int) {
+        date.time = times[index]
+        writeLine(
+            "${dateFormat.format(date)}: ${logLevelToString(priorities[index])} " +
+                "${tags[index]} ${messages[index]} ${exceptions[index] ?: ""}\n"
+        )
+    }
+
+    private fun writeLine(line: String) {
+        if (fileLength > maxFileLength) {
+            Util.close(writer)
+            openFile(fileNumber + 1)
+            logToLogcat(
+                Log.INFO,
+                "Log file rotated, logging into file ${getFile(fileNumber).name}",
+                null
+            )
+        }
+
+        writer!!.write(line)
+        val length = utf8Length(line)
+        fileLength += length
+        unflushedBytes += length
+    }
+
+    private fun flush() {
+        if (unflushedBytes > 0) writer?.flush()
+        unflushedBytes = 0
+        lastFlushTime = System.nanoTime()
+    }
+
+    private fun openFile(number: Int) {
+        val file = getFile(number)
+        fileNumber = number
+        fileLength = file.length()
+        writer = BufferedWriter(
+            OutputStreamWriter(FileOutputStream(file, true), Charsets.UTF_8),
+            WRITE_BUFFER_SIZE
+        )
+    }
+
+    private fun getFile(number: Int): File {
+        return File(directory(), fileNamePattern.replace("*", number.toString()))
+    }
+
+    private fun getLastFileNumber(): Int {
+        return directory().list()
+            ?.mapNotNull { fileNumberRegex.matchEntire(it)?.groups?.get(1)?.value?.toIntOrNull() }
+            ?.max() ?: 1
+    }
+
+    private fun logLevelToString(logLevel: Int): String {
+        return when (logLevel) {
+            Log.VERBOSE -> "V"
+            Log.DEBUG -> "D"
+            Log.INFO -> "I"
+            Log.WARN -> "W"
+            Log.ERROR -> "E"
+            Log.ASSERT -> "A"
+            else -> "U"
+        }
+    }
+
+    // Returns the length of the UTF-8 encoding of the text, without encoding it
+    private fun utf8Length(text: String): Int {
+        var length = 0
+        for (c in text) {
+            length += when {
+                c.toInt() < 0x80 -> 1
+                c.toInt() < 0x800 -> 2
+                // A surrogate pair is encoded in four bytes
+                Character.isSurrogate(c) -> 2
+                else -> 3
+            }
+        }
+        return length
+    }
+}
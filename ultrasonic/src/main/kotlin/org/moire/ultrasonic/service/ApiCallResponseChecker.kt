@@ -1,20 +1,39 @@
 package org.moire.ultrasonic.service
 
 import java.io.IOException
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.FutureTask
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
 import org.moire.ultrasonic.api.subsonic.SubsonicAPIClient
 import org.moire.ultrasonic.api.subsonic.SubsonicAPIDefinition
 import org.moire.ultrasonic.api.subsonic.response.SubsonicResponse
 import org.moire.ultrasonic.data.ActiveServerProvider
+import org.moire.ultrasonic.util.TaskExecutors
 import retrofit2.Response
 import timber.log.Timber
 
+private const val NEGOTIATION_TIMEOUT_SECONDS = 30L
+
 /**
  * This call wraps Subsonic API calls so their results can be checked for errors, API version, etc
+ *
+ * The API version of the server is negotiated once, in the background, when the checker is
+ * created for the active server. Calls made before the negotiation finished wait for the same
+ * negotiation, afterwards they only read the negotiated version.
  */
 class ApiCallResponseChecker(
     private val subsonicAPIClient: SubsonicAPIClient,
     private val activeServerProvider: ActiveServerProvider
 ) {
+    @Volatile private var apiVersion: String? = null
+    private var negotiation: FutureTask<String>? = null
+
+    init {
+        // When the pool is full, the negotiation runs with the first call instead
+        TaskExecutors.io.tryExecute(Runnable { getNegotiation()?.run() })
+    }
+
     /**
      * Executes a Subsonic API call with response check
      */
@@ -23,18 +42,7 @@ class ApiCallResponseChecker(
         call: (SubsonicAPIDefinition) -> T
     ): T {
         // Check for API version when first contacting the server
-        if (activeServerProvider.getActiveServer().minimumApiVersion == null) {
-            try {
-                val response = subsonicAPIClient.api.ping().execute()
-                if (response?.body() != null) {
-                    val restApiVersion = response.body()!!.version.restApiVersion
-                    Timber.i("Server minimum API version set to %s", restApiVersion)
-                    activeServerProvider.setMinimumApiVersion(restApiVersion)
-                }
-            } catch (ignored: Exception) {
-                // This Ping is only used to get the API Version, if it fails, that's no problem.
-            }
-        }
+        if (apiVersion == null) awaitNegotiation()
 
         // This call will be now executed with the correct API Version, so it shouldn't fail
         val result = call.invoke(subsonicAPIClient.api)
@@ -42,6 +50,42 @@ class ApiCallResponseChecker(
         return result
     }
 
+    @Synchronized
+    private fun getNegotiation(): FutureTask<String>? {
+        if (apiVersion != null) return null
+        return negotiation ?: FutureTask { negotiate() }.also { negotiation = it }
+    }
+
+    private fun awaitNegotiation() {
+        val task = getNegotiation() ?: return
+
+        // Runs the negotiation on this thread if it didn't start yet, so the calls never wait
+        // for a free thread of the pool
+        task.run()
+        try {
+            apiVersion = task.get(NEGOTIATION_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+        } catch (e: ExecutionException) {
+            // The negotiation is only used to get the API Version, if it fails, that's no problem.
+            // It is retried by the next call.
+            synchronized(this) { if (negotiation === task) negotiation = null }
+        } catch (e: TimeoutException) {
+            Timber.w("Timed out waiting for the API version of the server")
+        }
+    }
+
+    private fun negotiate(): String {
+        val knownVersion = activeServerProvider.getActiveServer().minimumApiVersion
+        if (knownVersion != null) return knownVersion.also { apiVersion = it }
+
+        val response = subsonicAPIClient.api.ping().execute()
+        val restApiVersion = response?.body()?.version?.restApiVersion
+            ?: throw IOException("Failed to get the API version of the server")
+
+        Timber.i("Server minimum API version set to %s", restApiVersion)
+        activeServerProvider.setMinimumApiVersion(restApiVersion)
+        return restApiVersion.also { apiVersion = it }
+    }
+
     /**
      * Creates Exceptions from the results returned by the Subsonic API
      */
@@ -0,0 +1,143 @@
+package org.moire.ultrasonic.service
+
+import android.content.Context
+import android.os.SystemClock
+import java.util.concurrent.Future
+import java.util.concurrent.TimeUnit
+import org.moire.ultrasonic.data.ActiveServerProvider
+import org.moire.ultrasonic.util.CachedSettings
+import org.moire.ultrasonic.util.TaskExecutors
+import org.moire.ultrasonic.util.Util
+import timber.log.Timber
+
+private const val START_DELAY_SECONDS = 5L
+private val ALBUM_LIST_TYPES = listOf("newest", "recent", "frequent", "highest")
+
+/**
+ * Loads the library overviews of the active server in the background after startup or a server
+ * switch, so the first visit of the artists, album lists, playlists, genres and starred items
+ * is served from the metadata caches of [CachedMusicService].
+ *
+ * Only runs on unmetered networks. The requests stop when the responses received while
+ * pre-warming exceed the budget of the Library Preload setting, a budget of 0 disables it.
+ * The duration and the received bytes of each request, as counted by [receivedBytesCounter],
+ * are logged.
+ */
+class LibraryPrewarmer(
+    private val context: Context,
+    private val activeServerProvider: ActiveServerProvider,
+    private val receivedBytesCounter: ReceivedBytesCounter
+) {
+    // Only accessed while holding the lock of this object
+    private val readings = LinkedHashMap<String, Reading>()
+    private var scheduled: Future<*>? = null
+
+    @Volatile private var generation = 0
+
+    /**
+     * The duration and received bytes of a pre-warm request
+     */
+    class Reading(val durationMillis: Long, val bytes: Long) {
+        override fun toString(): String = "$durationMillis ms, $bytes bytes"
+    }
+
+    /**
+     * Starts pre-warming the caches of the active server after a short delay, so it doesn't
+     * compete with the requests of the first screen. A running pre-warm is abandoned.
+     */
+    @Synchronized
+    fun start() {
+        scheduled?.cancel(false)
+        val run = ++generation
+        if (ActiveServerProvider.isOffline(context)) return
+
+        scheduled = TaskExecutors.scheduler.schedule(
+            // Skipped when the pool is full, the caches are then loaded when they are visited
+            Runnable { TaskExecutors.io.tryExecute(Runnable { prewarm(run) }) },
+            START_DELAY_SECONDS,
+            TimeUnit.SECONDS
+        )
+    }
+
+    /**
+     * Returns the readings of the last pre-warm in a readable form, for the log
+     */
+    @Synchronized
+    fun getStatistics(): String {
+        return readings.entries.joinToString("\n") { "${it.key}: ${it.value}" }
+    }
+
+    private fun prewarm(run: Int) {
+        val networkState = CachedSettings.getNetworkState(context)
+        if (!networkState.isConnected || networkState.isMetered) {
+            Timber.d("Not pre-warming the library on a metered or missing network")
+            return
+        }
+
+        val budgetBytes = Util.getPrewarmBudgetMB(context) * 1024L * 1024L
+        if (budgetBytes == 0L) return
+
+        val service = MusicServiceFactory.getMusicService(context) as? CachedMusicService ?: return
+        synchronized(this) { readings.clear() }
+
+        var receivedBytes = 0L
+        for ((name, request) in getRequests(service)) {
+            if (run != generation) {
+                Timber.d("Pre-warming the library was abandoned")
+                return
+            }
+            if (receivedBytes >= budgetBytes) {
+                Timber.i("Pre-warming the library stopped after %d bytes", receivedBytes)
+                break
+            }
+            receivedBytes += measure(name, request)
+        }
+
+        Timber.i("Pre-warmed the library:\n%s", getStatistics())
+    }
+
+    private fun getRequests(service: CachedMusicService): List<Pair<String, () -> Any?>> {
+        val useId3Tags = Util.getShouldUseId3Tags(context)
+        val musicFolderId = activeServerProvider.getActiveServer().musicFolderId
+        val requests = mutableListOf<Pair<String, () -> Any?>>()
+
+        if (useId3Tags) {
+            requests.add("getArtists" to { service.getArtists(false, context) })
+        } else {
+            requests.add("getIndexes" to { service.getIndexes(musicFolderId, false, context) })
+        }
+        requests.add("getMusicFolders" to { service.getMusicFolders(false, context) })
+        requests.add("getPlaylists" to { service.getPlaylists(false, context) })
+        requests.add("getGenres" to { service.getGenres(false, context) })
+
+        // Only the ID3 variants are prefetched, the folder based ones aren't cached
+        if (useId3Tags) {
+            requests.add("getStarred2" to { service.prefetchStarred2(context) })
+            val pageSize = Util.getMaxAlbums(context)
+            for (type in ALBUM_LIST_TYPES) {
+                requests.add(
+                    "getAlbumList2($type)" to {
+                        service.prefetchAlbumList2(type, pageSize, 0, context)
+                    }
+                )
+            }
+        }
+        return requests
+    }
+
+    // Returns the response bytes the request received from the network
+    private fun measure(name: String, request: () -> Any?): Long {
+        val startTime = SystemClock.elapsedRealtime()
+        val bytes = receivedBytesCounter.measure {
+            try {
+                request()
+            } catch (all: Exception) {
+                Timber.w(all, "Failed to pre-warm %s", name)
+            }
+        }
+
+        val reading = Reading(SystemClock.elapsedRealtime() - startTime, bytes)
+        synchronized(this) { readings[name] = reading }
+        return bytes
+    }
+}
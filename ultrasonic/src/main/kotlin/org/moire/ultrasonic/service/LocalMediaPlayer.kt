@@ -18,7 +18,7 @@ import android.os.Looper
 import android.os.PowerManager
 import android.os.PowerManager.PARTIAL_WAKE_LOCK
 import android.os.PowerManager.WakeLock
-import java.io.File
+import android.os.SystemClock
 import java.net.URLEncoder
 import java.util.Locale
 import kotlin.math.abs
@@ -26,21 +26,27 @@ import kotlin.math.max
 import org.moire.ultrasonic.audiofx.EqualizerController
 import org.moire.ultrasonic.audiofx.VisualizerController
 import org.moire.ultrasonic.data.ActiveServerProvider.Companion.isOffline
+import org.moire.ultrasonic.domain.MusicDirectory
 import org.moire.ultrasonic.domain.PlayerState
 import org.moire.ultrasonic.fragment.PlayerFragment
 import org.moire.ultrasonic.receiver.MediaButtonIntentReceiver
-import org.moire.ultrasonic.util.CancellableTask
 import org.moire.ultrasonic.util.Constants
-import org.moire.ultrasonic.util.FileUtil
 import org.moire.ultrasonic.util.StreamProxy
+import org.moire.ultrasonic.util.TaskExecutors
 import org.moire.ultrasonic.util.Util
 import timber.log.Timber
 
+private const val MAX_GAP_MILLIS = 10000L
+
 /**
  * Represents a Media Player which uses the mobile's resources for playback
  */
 class LocalMediaPlayer(
     private val audioFocusHandler: AudioFocusHandler,
+    private val positionClock: PositionClock,
+    private val nowPlayingPublisher: NowPlayingPublisher,
+    private val playbackMetrics: PlaybackMetrics,
+    private val throughputEstimator: ThroughputEstimator,
     private val context: Context
 ) {
 
@@ -70,20 +76,53 @@ class LocalMediaPlayer(
 
     private var nextPlayerState = PlayerState.IDLE
     private var nextSetup = false
-    private var nextPlayingTask: CancellableTask? = null
+    private var isNextPartial = false
+    private var nextPlayingTask: CheckCompletionTask? = null
     private var mediaPlayer: MediaPlayer = MediaPlayer()
+
+    // All players share the audio session of the first one, the effects are attached to it
+    private val audioSessionId = mediaPlayer.audioSessionId
     private var nextMediaPlayer: MediaPlayer? = null
     private var mediaPlayerLooper: Looper? = null
     private var mediaPlayerHandler: Handler? = null
-    private var cachedPosition = 0
     private var proxy: StreamProxy? = null
     private var audioManager: AudioManager = context.getSystemService(AUDIO_SERVICE) as AudioManager
-    private var remoteControlClient: RemoteControlClient? = null
-    private var bufferTask: CancellableTask? = null
-    private var positionCache: PositionCache? = null
+    @Volatile private var remoteControlClient: RemoteControlClient? = null
+    private var bufferTask: BufferTask? = null
+
+    // The time play was requested, until the player started, for the metrics
+    private var playRequestTime = 0L
+
+    // The time the previous song completed, until the next one started, for the metrics
+    private var completionTime = 0L
     private var secondaryProgress = -1
     private val pm = context.getSystemService(POWER_SERVICE) as PowerManager
     private val wakeLock: WakeLock = pm.newWakeLock(PARTIAL_WAKE_LOCK, this.javaClass.name)
+    @Volatile private var remoteControlSong: MusicDirectory.Entry? = null
+
+    // The metadata of the remote control is only updated when the song changes
+    private val remoteControlTarget = object : NowPlayingPublisher.Target {
+        override fun onNowPlayingChanged(
+            nowPlaying: NowPlayingPublisher.NowPlaying,
+            albumArt: NowPlayingPublisher.AlbumArt
+        ) {
+            val client = remoteControlClient ?: return
+            val song = nowPlaying.song ?: return
+            if (song == remoteControlSong) return
+
+            val lockScreenBitmap = albumArt.get(Util.getMinDisplayMetric(context))
+            val duration = (song.duration ?: 0) * 1000L
+            client.editMetadata(true)
+                .putString(MediaMetadataRetriever.METADATA_KEY_ARTIST, song.artist)
+                .putString(MediaMetadataRetriever.METADATA_KEY_ALBUMARTIST, song.artist)
+                .putString(MediaMetadataRetriever.METADATA_KEY_ALBUM, song.album)
+                .putString(MediaMetadataRetriever.METADATA_KEY_TITLE, song.title)
+                .putLong(MediaMetadataRetriever.METADATA_KEY_DURATION, duration)
+                .putBitmap(RemoteControlClient.MetadataEditor.BITMAP_KEY_ARTWORK, lockScreenBitmap)
+                .apply()
+            remoteControlSong = song
+        }
+    }
 
     fun init() {
         Thread {
@@ -103,7 +142,7 @@ class LocalMediaPlayer(
             }
             try {
                 val i = Intent(AudioEffect.ACTION_OPEN_AUDIO_EFFECT_CONTROL_SESSION)
-                i.putExtra(AudioEffect.EXTRA_AUDIO_SESSION, mediaPlayer.audioSessionId)
+                i.putExtra(AudioEffect.EXTRA_AUDIO_SESSION, audioSessionId)
                 i.putExtra(AudioEffect.EXTRA_PACKAGE_NAME, context.packageName)
                 context.sendBroadcast(i)
             } catch (e: Throwable) {
@@ -116,10 +155,13 @@ class LocalMediaPlayer(
 
         // Create Equalizer and Visualizer on a new thread as this can potentially take some time
         Thread {
-            EqualizerController.create(context, mediaPlayer)
-            VisualizerController.create(mediaPlayer)
+            EqualizerController.create(context, audioSessionId)
+            VisualizerController.create(audioSessionId)
         }.start()
 
+        positionClock.setPositionSource { mediaPlayer.currentPosition }
+        nowPlayingPublisher.addTarget(remoteControlTarget)
+
         wakeLock.setReferenceCounted(false)
         Util.registerMediaButtonEventReceiver(context, true)
         setUpRemoteControlClient()
@@ -128,16 +170,22 @@ class LocalMediaPlayer(
 
     fun release() {
         reset()
+        Timber.i(
+            "Playback statistics:\n%s\n%s\n%s",
+            playbackMetrics.getStatistics(), throughputEstimator.getStatistics(),
+            TaskExecutors.getStatistics()
+        )
         try {
             val i = Intent(AudioEffect.ACTION_CLOSE_AUDIO_EFFECT_CONTROL_SESSION)
-            i.putExtra(AudioEffect.EXTRA_AUDIO_SESSION, mediaPlayer.audioSessionId)
+            i.putExtra(AudioEffect.EXTRA_AUDIO_SESSION, audioSessionId)
             i.putExtra(AudioEffect.EXTRA_PACKAGE_NAME, context.packageName)
             context.sendBroadcast(i)
             EqualizerController.release()
             VisualizerController.release()
             mediaPlayer.release()
 
-            mediaPlayer = MediaPlayer()
+            // Keeps the shared audio session, its id is only read once
+            mediaPlayer = createMediaPlayer()
 
             if (nextMediaPlayer != null) {
                 nextMediaPlayer!!.release()
@@ -151,6 +199,8 @@ class LocalMediaPlayer(
             }
             audioManager.unregisterRemoteControlClient(remoteControlClient)
             clearRemoteControl()
+            positionClock.setPositionSource(null)
+            nowPlayingPublisher.removeTarget(remoteControlTarget)
             Util.unregisterMediaButtonEventReceiver(context, true)
             wakeLock.release()
         } catch (exception: Throwable) {
@@ -163,11 +213,13 @@ class LocalMediaPlayer(
     fun setPlayerState(playerState: PlayerState) {
         Timber.i("%s -> %s (%s)", this.playerState.name, playerState.name, currentPlaying)
         this.playerState = playerState
+        syncPositionClock()
         if (playerState === PlayerState.STARTED) {
             audioFocusHandler.requestAudioFocus()
         }
         if (playerState === PlayerState.STARTED || playerState === PlayerState.PAUSED) {
             updateRemoteControl()
+            nextPlayingTask?.setupNextIfReady()
         }
         if (onPlayerStateChanged != null) {
             val mainHandler = Handler(context.mainLooper)
@@ -176,13 +228,23 @@ class LocalMediaPlayer(
             }
             mainHandler.post(myRunnable)
         }
-        if (playerState === PlayerState.STARTED && positionCache == null) {
-            positionCache = PositionCache()
-            val thread = Thread(positionCache)
-            thread.start()
-        } else if (playerState !== PlayerState.STARTED && positionCache != null) {
-            positionCache!!.stop()
-            positionCache = null
+    }
+
+    // Reads the position and duration of the player only when its state changes
+    private fun syncPositionClock() {
+        positionClock.duration = playerDuration
+        val position = when (playerState) {
+            PlayerState.IDLE, PlayerState.DOWNLOADING, PlayerState.PREPARING -> 0
+            else -> readPosition()
+        }
+        positionClock.sync(position, playerState === PlayerState.STARTED)
+    }
+
+    private fun readPosition(): Int {
+        return try {
+            mediaPlayer.currentPosition
+        } catch (x: Exception) {
+            positionClock.position
         }
     }
 
@@ -193,6 +255,7 @@ class LocalMediaPlayer(
     fun setCurrentPlaying(currentPlaying: DownloadFile?) {
         Timber.v("setCurrentPlaying %s", currentPlaying)
         this.currentPlaying = currentPlaying
+        positionClock.duration = playerDuration
         updateRemoteControl()
 
         if (onCurrentPlayingChanged != null) {
@@ -208,6 +271,7 @@ class LocalMediaPlayer(
     @Synchronized
     fun setNextPlaying(nextToPlay: DownloadFile) {
         nextPlaying = nextToPlay
+        nextPlayingTask?.cancel()
         nextPlayingTask = CheckCompletionTask(nextPlaying)
         nextPlayingTask?.start()
     }
@@ -218,6 +282,7 @@ class LocalMediaPlayer(
     @Synchronized
     fun clearNextPlaying(setIdle: Boolean) {
         nextSetup = false
+        isNextPartial = false
         nextPlaying = null
         if (nextPlayingTask != null) {
             nextPlayingTask!!.cancel()
@@ -247,6 +312,12 @@ class LocalMediaPlayer(
             nextPlayingTask = null
         }
         setCurrentPlaying(fileToPlay)
+        playRequestTime = if (fileToPlay != null && autoStart) SystemClock.elapsedRealtime() else 0
+
+        // Only a play following the completion directly continues the playback
+        if (playRequestTime == 0L || playRequestTime - completionTime > MAX_GAP_MILLIS) {
+            completionTime = 0
+        }
 
         if (fileToPlay != null) {
             bufferAndPlay(fileToPlay, position, autoStart)
@@ -257,18 +328,37 @@ class LocalMediaPlayer(
     fun playNext() {
         if (nextMediaPlayer == null || nextPlaying == null) return
 
+        val previousMediaPlayer = mediaPlayer
         mediaPlayer = nextMediaPlayer!!
+        nextMediaPlayer = null
+        releaseFinishedPlayer(previousMediaPlayer)
+
+        // Without setNextMediaPlayer the next player is prepared but not started yet
+        if (!nextSetup) {
+            try {
+                mediaPlayer.start()
+            } catch (x: Exception) {
+                handleError(x)
+            }
+        }
+        nextSetup = false
+        val isPartial = isNextPartial
+        isNextPartial = false
+        setNextPlayerState(PlayerState.IDLE)
 
         setCurrentPlaying(nextPlaying)
         setPlayerState(PlayerState.STARTED)
+        recordInterTrackGap()
 
-        attachHandlersToPlayer(mediaPlayer, nextPlaying!!, false)
+        attachHandlersToPlayer(mediaPlayer, nextPlaying!!, isPartial)
 
         postRunnable(onNextSongRequested)
 
-        // Proxy should not be being used here since the next player was already setup to play
-        proxy?.stop()
-        proxy = null
+        // The proxy is still streaming to the new player if it was prepared from the partial file
+        if (!isPartial) {
+            proxy?.stop()
+            proxy = null
+        }
     }
 
     @Synchronized
@@ -300,6 +390,10 @@ class LocalMediaPlayer(
 
         if (remoteControlClient == null) {
             remoteControlClient = createRemoteControlClient()
+            // The new client needs the metadata of the current song
+            remoteControlSong = null
+            nowPlayingPublisher.invalidate()
+            nowPlayingPublisher.update(playerState, currentPlaying)
         } else {
             // This is probably needed only in API <=17
             // "You must register your RemoteControlDisplay every time when the View which
@@ -336,28 +430,6 @@ class LocalMediaPlayer(
                 )
             }
         }
-
-        if (currentPlaying != null) {
-            val currentSong = currentPlaying!!.song
-            val lockScreenBitmap = FileUtil.getAlbumArtBitmap(
-                context, currentSong,
-                Util.getMinDisplayMetric(context), true
-            )
-            val artist = currentSong.artist
-            val album = currentSong.album
-            val title = currentSong.title
-            val currentSongDuration = currentSong.duration
-            var duration = 0L
-            if (currentSongDuration != null) duration = (currentSongDuration * 1000).toLong()
-            remoteControlClient!!.editMetadata(true)
-                .putString(MediaMetadataRetriever.METADATA_KEY_ARTIST, artist)
-                .putString(MediaMetadataRetriever.METADATA_KEY_ALBUMARTIST, artist)
-                .putString(MediaMetadataRetriever.METADATA_KEY_ALBUM, album)
-                .putString(MediaMetadataRetriever.METADATA_KEY_TITLE, title)
-                .putLong(MediaMetadataRetriever.METADATA_KEY_DURATION, duration)
-                .putBitmap(RemoteControlClient.MetadataEditor.BITMAP_KEY_ARTWORK, lockScreenBitmap)
-                .apply()
-        }
     }
 
     fun clearRemoteControl() {
@@ -404,7 +476,7 @@ class LocalMediaPlayer(
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
             flags = flags or RemoteControlClient.FLAG_KEY_MEDIA_POSITION_UPDATE
             remoteControlClient.setOnGetPlaybackPositionListener {
-                mediaPlayer.currentPosition.toLong()
+                positionClock.position.toLong()
             }
             remoteControlClient.setPlaybackPositionUpdateListener {
                 newPositionMs ->
@@ -421,25 +493,19 @@ class LocalMediaPlayer(
     fun seekTo(position: Int) {
         try {
             mediaPlayer.seekTo(position)
-            cachedPosition = position
+            positionClock.sync(position, playerState === PlayerState.STARTED)
             updateRemoteControl()
         } catch (x: Exception) {
             handleError(x)
         }
     }
 
-    @get:Synchronized
     val playerPosition: Int
-        get() = try {
-            when (playerState) {
-                PlayerState.IDLE -> 0
-                PlayerState.DOWNLOADING -> 0
-                PlayerState.PREPARING -> 0
-                else -> cachedPosition
-            }
-        } catch (x: Exception) {
-            handleError(x)
-            0
+        get() = when (playerState) {
+            PlayerState.IDLE -> 0
+            PlayerState.DOWNLOADING -> 0
+            PlayerState.PREPARING -> 0
+            else -> positionClock.position
         }
 
     @get:Synchronized
@@ -501,20 +567,8 @@ class LocalMediaPlayer(
 
             var dataSource = file.path
             if (partial) {
-                if (proxy == null) {
-                    proxy = StreamProxy(object : Supplier<DownloadFile?>() {
-                        override fun get(): DownloadFile {
-                            return currentPlaying!!
-                        }
-                    })
-                    proxy!!.start()
-                }
-                dataSource = String.format(
-                    Locale.getDefault(), "http://127.0.0.1:%d/%s",
-                    proxy!!.port, URLEncoder.encode(dataSource, Constants.UTF_8)
-                )
-                Timber.i("Data Source: %s", dataSource)
-            } else if (proxy != null) {
+                dataSource = getProxyDataSource(file.path)
+            } else if (proxy != null && !isNextPartial) {
                 proxy?.stop()
                 proxy = null
             }
@@ -552,10 +606,11 @@ class LocalMediaPlayer(
                         Timber.i("Restarting player from position %d", position)
                         seekTo(position)
                     }
-                    cachedPosition = position
                     if (start) {
                         mediaPlayer.start()
                         setPlayerState(PlayerState.STARTED)
+                        recordTimeToFirstAudio()
+                        recordInterTrackGap()
                     } else {
                         setPlayerState(PlayerState.PAUSED)
                     }
@@ -570,24 +625,47 @@ class LocalMediaPlayer(
         }
     }
 
+    // The local proxy streams the partial file, it waits for the data which isn't downloaded yet
+    private fun getProxyDataSource(path: String): String {
+        if (proxy == null) {
+            proxy = StreamProxy(
+                object : Supplier<DownloadFile?>() {
+                    override fun get(): DownloadFile {
+                        return currentPlaying!!
+                    }
+                },
+                object : Supplier<DownloadFile?>() {
+                    override fun get(): DownloadFile? {
+                        return nextPlaying
+                    }
+                }
+            )
+            proxy!!.start()
+        }
+        val dataSource = String.format(
+            Locale.getDefault(), "http://127.0.0.1:%d/%s",
+            proxy!!.port, URLEncoder.encode(path, Constants.UTF_8)
+        )
+        Timber.i("Data Source: %s", dataSource)
+        return dataSource
+    }
+
     @Synchronized
     private fun setupNext(downloadFile: DownloadFile) {
         try {
             val file = downloadFile.completeOrPartialFile
+            val partial = !downloadFile.isCompleteFileAvailable
 
             if (nextMediaPlayer != null) {
                 nextMediaPlayer!!.setOnCompletionListener(null)
                 nextMediaPlayer!!.release()
                 nextMediaPlayer = null
             }
-            nextMediaPlayer = MediaPlayer()
+            nextMediaPlayer = createMediaPlayer()
             nextMediaPlayer!!.setWakeMode(context, PowerManager.PARTIAL_WAKE_LOCK)
-            try {
-                nextMediaPlayer!!.audioSessionId = mediaPlayer.audioSessionId
-            } catch (e: Throwable) {
-                nextMediaPlayer!!.setAudioStreamType(AudioManager.STREAM_MUSIC)
-            }
-            nextMediaPlayer!!.setDataSource(file.path)
+            val dataSource = if (partial) getProxyDataSource(file.path) else file.path
+            nextMediaPlayer!!.setDataSource(dataSource)
+            isNextPartial = partial
             setNextPlayerState(PlayerState.PREPARING)
             nextMediaPlayer!!.setOnPreparedListener {
                 try {
@@ -623,7 +701,7 @@ class LocalMediaPlayer(
     ) {
         mediaPlayer.setOnErrorListener { _, what, extra ->
             Timber.w("Error on playing file (%d, %d): %s", what, extra, downloadFile)
-            val pos = cachedPosition
+            val pos = positionClock.position
             reset()
             downloadFile.setPlaying(false)
             doPlay(downloadFile, pos, true)
@@ -631,6 +709,17 @@ class LocalMediaPlayer(
             true
         }
 
+        // Stop the position clock while the player waits for data
+        mediaPlayer.setOnInfoListener { _, what, _ ->
+            when (what) {
+                MediaPlayer.MEDIA_INFO_BUFFERING_START -> positionClock.sync(readPosition(), false)
+                MediaPlayer.MEDIA_INFO_BUFFERING_END -> positionClock.sync(
+                    readPosition(), playerState === PlayerState.STARTED
+                )
+            }
+            false
+        }
+
         var duration = 0
         if (downloadFile.song.duration != null) {
             duration = downloadFile.song.duration!! * 1000
@@ -642,17 +731,15 @@ class LocalMediaPlayer(
                 // this callback the MediaPlayer will release its wakelock
                 // and allow the device to go to sleep.
                 wakeLock.acquire(60000)
-                val pos = cachedPosition
+                val pos = readPosition()
                 Timber.i("Ending position %d of %d", pos, duration)
                 if (!isPartial || downloadFile.isWorkDone && abs(duration - pos) < 1000) {
                     setPlayerState(PlayerState.COMPLETED)
+                    completionTime = SystemClock.elapsedRealtime()
                     if (Util.getGaplessPlaybackPreference(context) &&
                         nextPlaying != null &&
                         nextPlayerState === PlayerState.PREPARED
                     ) {
-                        if (nextSetup) {
-                            nextSetup = false
-                        }
                         playNext()
                     } else {
                         if (onSongCompleted != null) {
@@ -672,7 +759,9 @@ class LocalMediaPlayer(
                         doPlay(downloadFile, pos, true)
                         downloadFile.setPlaying(true)
                     } else {
+                        // The playback caught up with the download
                         Timber.i("Requesting restart from %d of %d", pos, duration)
+                        throughputEstimator.recordStall()
                         reset()
                         bufferTask = BufferTask(downloadFile, pos)
                         bufferTask!!.start()
@@ -682,6 +771,24 @@ class LocalMediaPlayer(
         })
     }
 
+    private fun recordTimeToFirstAudio() {
+        if (playRequestTime == 0L) return
+        playbackMetrics.record(
+            PlaybackMetrics.TIME_TO_FIRST_AUDIO,
+            SystemClock.elapsedRealtime() - playRequestTime
+        )
+        playRequestTime = 0
+    }
+
+    private fun recordInterTrackGap() {
+        if (completionTime == 0L) return
+        playbackMetrics.record(
+            PlaybackMetrics.INTER_TRACK_GAP,
+            SystemClock.elapsedRealtime() - completionTime
+        )
+        completionTime = 0
+    }
+
     @Synchronized
     fun reset() {
         if (bufferTask != null) {
@@ -694,11 +801,25 @@ class LocalMediaPlayer(
             setPlayerState(PlayerState.IDLE)
             mediaPlayer.setOnErrorListener(null)
             mediaPlayer.setOnCompletionListener(null)
+            mediaPlayer.setOnInfoListener(null)
         } catch (x: Exception) {
             handleError(x)
         }
     }
 
+    // Called from the completion callback of the player, so it is released after it returned.
+    // Its listeners are removed first, they would act on the player of the next song.
+    private fun releaseFinishedPlayer(player: MediaPlayer) {
+        player.setOnCompletionListener(null)
+        player.setOnErrorListener(null)
+        player.setOnInfoListener(null)
+        player.setOnPreparedListener(null)
+        player.setOnBufferingUpdateListener(null)
+
+        val release = Runnable { player.release() }
+        if (mediaPlayerHandler?.post(release) != true) release.run()
+    }
+
     @Synchronized
     fun resetMediaPlayer() {
         try {
@@ -707,40 +828,73 @@ class LocalMediaPlayer(
             Timber.w(x, "MediaPlayer was released but LocalMediaPlayer was not destroyed")
 
             // Recreate MediaPlayer
-            mediaPlayer = MediaPlayer()
+            mediaPlayer = createMediaPlayer()
         }
     }
 
+    // The equalizer and the visualizer keep working when a new player joins the shared session,
+    // they don't have to be recreated for each player
+    private fun createMediaPlayer(): MediaPlayer {
+        val player = MediaPlayer()
+        try {
+            player.audioSessionId = audioSessionId
+        } catch (e: Throwable) {
+            player.setAudioStreamType(AudioManager.STREAM_MUSIC)
+        }
+        return player
+    }
+
+    /**
+     * Starts the player as soon as enough of the file is downloaded,
+     * notified by the download instead of polling the length of the file
+     */
     private inner class BufferTask(
         private val downloadFile: DownloadFile,
         private val position: Int,
         private val autoStart: Boolean = true
-    ) : CancellableTask() {
+    ) : DownloadFile.BufferListener {
         private val expectedFileSize: Long
-        private val partialFile: File = downloadFile.partialFile
+        @Volatile private var isCancelled = false
 
-        override fun execute() {
+        fun start() {
             setPlayerState(PlayerState.DOWNLOADING)
-            while (!bufferComplete() && !isOffline(context)) {
-                Util.sleepQuietly(1000L)
-                if (isCancelled) {
-                    return
-                }
-            }
+            Timber.i("Buffering %s (%d bytes)", downloadFile.partialFile, expectedFileSize)
 
-            doPlay(downloadFile, position, autoStart)
+            // The partial file can't grow while offline, so it is played as it is
+            if (isOffline(context)) {
+                onBuffered(downloadFile)
+            } else {
+                downloadFile.addBufferListener(expectedFileSize, this)
+            }
         }
 
-        private fun bufferComplete(): Boolean {
-            val completeFileAvailable = downloadFile.isWorkDone
-            val size = partialFile.length()
+        fun cancel() {
+            Timber.i("Cancelling %s", this)
+            isCancelled = true
+            downloadFile.removeBufferListener(this)
+        }
 
-            Timber.i(
-                "Buffering %s (%d/%d, %s)",
-                partialFile, size, expectedFileSize, completeFileAvailable
-            )
+        override fun onBuffered(downloadFile: DownloadFile) {
+            // The download thread mustn't wait for the player
+            TaskExecutors.executeOrDefer(TaskExecutors.io, Runnable { startBuffered(downloadFile) })
+        }
 
-            return completeFileAvailable || size >= expectedFileSize
+        private fun startBuffered(downloadFile: DownloadFile) {
+            synchronized(this@LocalMediaPlayer) {
+                if (isCancelled) return
+                Timber.i(
+                    "Buffered %s (%d/%d, %s)", downloadFile.partialFile,
+                    downloadFile.partialFile.length(), expectedFileSize,
+                    downloadFile.isWorkDone
+                )
+                if (playRequestTime != 0L) {
+                    playbackMetrics.record(
+                        PlaybackMetrics.BUFFERING_TIME,
+                        SystemClock.elapsedRealtime() - playRequestTime
+                    )
+                }
+                doPlay(downloadFile, position, autoStart)
+            }
         }
 
         override fun toString(): String {
@@ -748,87 +902,75 @@ class LocalMediaPlayer(
         }
 
         init {
-            var bufferLength = Util.getBufferLength(context).toLong()
-            if (bufferLength == 0L) {
-                // Set to seconds in a day, basically infinity
-                bufferLength = 86400L
-            }
-
-            // Calculate roughly how many bytes BUFFER_LENGTH_SECONDS corresponds to.
-            val bitRate = downloadFile.bitRate
-            val byteCount = max(100000, bitRate * 1024L / 8L * bufferLength)
-
             // Find out how large the file should grow before resuming playback.
-            Timber.i("Buffering from position %d and bitrate %d", position, bitRate)
-            expectedFileSize = position * bitRate / 8 + byteCount
+            Timber.i("Buffering from position %d and bitrate %d", position, downloadFile.bitRate)
+            expectedFileSize = getBufferedFileSize(downloadFile, position)
         }
     }
 
-    private inner class CheckCompletionTask(downloadFile: DownloadFile?) : CancellableTask() {
-        private val downloadFile: DownloadFile?
-        private val partialFile: File?
-        override fun execute() {
-            Thread.currentThread().name = "CheckCompletionTask"
-            if (downloadFile == null) {
-                return
-            }
-
-            // Do an initial sleep so this prepare can't compete with main prepare
-            Util.sleepQuietly(5000L)
-            while (!bufferComplete()) {
-                Util.sleepQuietly(5000L)
-                if (isCancelled) {
-                    return
-                }
-            }
-
-            // Start the setup of the next media player
-            mediaPlayerHandler!!.post { setupNext(downloadFile) }
+    // Roughly how large the file must be to play it from the position without stopping
+    private fun getBufferedFileSize(downloadFile: DownloadFile, position: Int): Long {
+        var bufferLength = Util.getBufferLength(context).toLong()
+        if (bufferLength == 0L) {
+            // Set to seconds in a day, basically infinity
+            bufferLength = 86400L
         }
 
-        private fun bufferComplete(): Boolean {
-            val completeFileAvailable = downloadFile!!.isWorkDone
-            val state = (playerState === PlayerState.STARTED || playerState === PlayerState.PAUSED)
-
-            Timber.i("Buffering next %s (%d)", partialFile, partialFile!!.length())
+        // Calculate roughly how many bytes BUFFER_LENGTH_SECONDS corresponds to.
+        val bitRate = downloadFile.bitRate
+        val byteCount = max(100000, bitRate * 1024L / 8L * bufferLength)
+        return position * bitRate / 8 + byteCount
+    }
 
-            return completeFileAvailable && state
-        }
+    /**
+     * Sets up the next media player when as much of the next file is downloaded as the
+     * player buffers before starting, and the current player is playing, so the two prepares
+     * don't compete. The rest of the file is streamed through the proxy while it downloads.
+     */
+    private inner class CheckCompletionTask(
+        private val downloadFile: DownloadFile?
+    ) : DownloadFile.BufferListener {
+        @Volatile private var isCancelled = false
 
-        override fun toString(): String {
-            return String.format("CheckCompletionTask (%s)", downloadFile)
-        }
+        // Only accessed while holding the lock of the player
+        private var isBuffered = false
+        private var isSetupRequested = false
 
-        init {
+        fun start() {
             setNextPlayerState(PlayerState.IDLE)
-            this.downloadFile = downloadFile
-            partialFile = downloadFile?.partialFile
+            if (downloadFile != null) {
+                downloadFile.addBufferListener(getBufferedFileSize(downloadFile, 0), this)
+            }
         }
-    }
 
-    private inner class PositionCache : Runnable {
-        var isRunning = true
-        fun stop() {
-            isRunning = false
+        fun cancel() {
+            isCancelled = true
+            downloadFile?.removeBufferListener(this)
         }
 
-        override fun run() {
-            Thread.currentThread().name = "PositionCache"
-
-            // Stop checking position before the song reaches completion
-            while (isRunning) {
-                try {
-                    if (playerState === PlayerState.STARTED) {
-                        cachedPosition = mediaPlayer.currentPosition
-                    }
-                    Util.sleepQuietly(50L)
-                } catch (e: Exception) {
-                    Timber.w(e, "Crashed getting current position")
-                    isRunning = false
-                    positionCache = null
+        override fun onBuffered(downloadFile: DownloadFile) {
+            Timber.i("Buffered next %s", downloadFile)
+            // The download thread mustn't wait for the player
+            mediaPlayerHandler?.post {
+                synchronized(this@LocalMediaPlayer) {
+                    isBuffered = true
+                    setupNextIfReady()
                 }
             }
         }
+
+        // Called with the lock of the player, when the download or the state of the player changed
+        fun setupNextIfReady() {
+            if (isCancelled || !isBuffered || isSetupRequested || downloadFile == null) return
+            if (playerState !== PlayerState.STARTED && playerState !== PlayerState.PAUSED) return
+
+            isSetupRequested = true
+            mediaPlayerHandler?.post { if (!isCancelled) setupNext(downloadFile) }
+        }
+
+        override fun toString(): String {
+            return String.format("CheckCompletionTask (%s)", downloadFile)
+        }
     }
 
     private fun handleError(x: Exception) {
@@ -48,5 +48,6 @@ object MusicServiceFactory : KoinComponent {
     fun resetMusicService() {
         unloadKoinModules(musicServiceModule)
         loadKoinModules(musicServiceModule)
+        get<LibraryPrewarmer>().start()
     }
 }
@@ -0,0 +1,169 @@
+package org.moire.ultrasonic.service
+
+import android.content.Context
+import android.graphics.Bitmap
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.TimeUnit
+import org.moire.ultrasonic.domain.MusicDirectory
+import org.moire.ultrasonic.domain.PlayerState
+import org.moire.ultrasonic.provider.UltrasonicAppWidgetProvider4X1
+import org.moire.ultrasonic.provider.UltrasonicAppWidgetProvider4X2
+import org.moire.ultrasonic.provider.UltrasonicAppWidgetProvider4X3
+import org.moire.ultrasonic.provider.UltrasonicAppWidgetProvider4X4
+import org.moire.ultrasonic.util.FileUtil
+import org.moire.ultrasonic.util.TaskExecutors
+import timber.log.Timber
+
+private const val COALESCE_WINDOW_MILLIS = 50L
+private const val WIDGET_IMAGE_SIZE = 240
+
+/**
+ * Publishes the currently playing song and the state of the player to the notification,
+ * the app widgets and the lock screen remote control.
+ *
+ * Updates requested in a short time window are coalesced, and only the last one is published,
+ * on a background thread. Updates which don't change anything are skipped. The album art of the
+ * current song is decoded only once for each requested size, and shared by all the targets.
+ */
+class NowPlayingPublisher(private val context: Context) {
+    private val targets = CopyOnWriteArrayList<Target>()
+    private val publishLock = Any()
+    private var pendingIsPlaying = false
+    private var pendingSong: DownloadFile? = null
+    private var isPublicationScheduled = false
+
+    @Volatile private var lastPublished: NowPlaying? = null
+
+    // Only accessed while holding publishLock
+    private var albumArtSong: MusicDirectory.Entry? = null
+    private val albumArts = HashMap<Int, Bitmap?>()
+
+    /**
+     * The state published to the targets. The song is a copy, so it doesn't change later.
+     */
+    data class NowPlaying(val song: MusicDirectory.Entry?, val isPlaying: Boolean)
+
+    /**
+     * Receives the published updates, on a background thread
+     */
+    interface Target {
+        /**
+         * Called when the song or the state of the player changed
+         * @param albumArt: returns the album art of the song scaled to the given size
+         */
+        fun onNowPlayingChanged(nowPlaying: NowPlaying, albumArt: AlbumArt)
+    }
+
+    /**
+     * Provides the album art of the published song
+     */
+    interface AlbumArt {
+        /**
+         * Returns the album art scaled to the given size, or null if there isn't any
+         */
+        fun get(size: Int): Bitmap?
+    }
+
+    fun addTarget(target: Target) {
+        targets.addIfAbsent(target)
+    }
+
+    fun removeTarget(target: Target) {
+        targets.remove(target)
+    }
+
+    /**
+     * Requests the publication of the current state of the player.
+     * Returns immediately, the update is published after a short delay.
+     */
+    fun update(playerState: PlayerState, currentPlaying: DownloadFile?) {
+        synchronized(this) {
+            pendingIsPlaying = playerState === PlayerState.STARTED
+            pendingSong = currentPlaying
+            if (isPublicationScheduled) return
+            isPublicationScheduled = true
+        }
+
+        TaskExecutors.scheduler.schedule(
+            Runnable { TaskExecutors.executeOrDefer(TaskExecutors.io, Runnable { publish() }) },
+            COALESCE_WINDOW_MILLIS,
+            TimeUnit.MILLISECONDS
+        )
+    }
+
+    /**
+     * Forgets the last published update, so the next one is published even if it didn't change.
+     * Should be called when a target was hidden.
+     */
+    fun invalidate() {
+        lastPublished = null
+    }
+
+    private fun publish() {
+        val isPlaying: Boolean
+        val currentPlaying: DownloadFile?
+        synchronized(this) {
+            isPlaying = pendingIsPlaying
+            currentPlaying = pendingSong
+            isPublicationScheduled = false
+        }
+
+        synchronized(publishLock) {
+            val nowPlaying = NowPlaying(currentPlaying?.song?.copy(), isPlaying)
+            if (nowPlaying == lastPublished) return
+            lastPublished = nowPlaying
+
+            if (nowPlaying.song?.id != albumArtSong?.id ||
+                nowPlaying.song?.coverArt != albumArtSong?.coverArt
+            ) {
+                albumArts.clear()
+                albumArtSong = nowPlaying.song
+            }
+
+            val albumArt = object : AlbumArt {
+                override fun get(size: Int): Bitmap? = getAlbumArt(nowPlaying.song, size)
+            }
+
+            publishToWidgets(nowPlaying, albumArt)
+            for (target in targets) {
+                try {
+                    target.onNowPlayingChanged(nowPlaying, albumArt)
+                } catch (all: Exception) {
+                    Timber.w(all, "Failed to publish the now playing state to %s", target)
+                }
+            }
+        }
+    }
+
+    private fun getAlbumArt(song: MusicDirectory.Entry?, size: Int): Bitmap? {
+        if (song == null) return null
+        // Songs without album art are remembered too, so their files aren't checked again
+        if (albumArts.containsKey(size)) return albumArts[size]
+
+        val bitmap = try {
+            FileUtil.getAlbumArtBitmap(context, song, size, true)
+        } catch (all: Exception) {
+            Timber.w(all, "Failed to get the album art of %s", song)
+            null
+        }
+        albumArts[size] = bitmap
+        return bitmap
+    }
+
+    private fun publishToWidgets(nowPlaying: NowPlaying, albumArt: AlbumArt) {
+        val widgetAlbumArt = object : Supplier<Bitmap?>() {
+            override fun get(): Bitmap? = albumArt.get(WIDGET_IMAGE_SIZE)
+        }
+        val song = nowPlaying.song
+        val isPlaying = nowPlaying.isPlaying
+
+        UltrasonicAppWidgetProvider4X1.getInstance()
+            .notifyChange(context, song, isPlaying, false, widgetAlbumArt)
+        UltrasonicAppWidgetProvider4X2.getInstance()
+            .notifyChange(context, song, isPlaying, true, widgetAlbumArt)
+        UltrasonicAppWidgetProvider4X3.getInstance()
+            .notifyChange(context, song, isPlaying, false, widgetAlbumArt)
+        UltrasonicAppWidgetProvider4X4.getInstance()
+            .notifyChange(context, song, isPlaying, false, widgetAlbumArt)
+    }
+}
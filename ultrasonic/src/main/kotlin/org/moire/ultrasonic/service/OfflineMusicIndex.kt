@@ -0,0 +1,354 @@
+package org.moire.ultrasonic.service
+
+import android.content.Context
+import java.io.File
+import java.util.Locale
+import java.util.concurrent.atomic.AtomicBoolean
+import org.moire.ultrasonic.data.AppDatabase
+import org.moire.ultrasonic.data.OfflineEntry
+import org.moire.ultrasonic.data.OfflineEntryDao
+import org.moire.ultrasonic.domain.Artist
+import org.moire.ultrasonic.domain.MusicDirectory
+import org.moire.ultrasonic.domain.SearchCriteria
+import org.moire.ultrasonic.domain.SearchResult
+import org.moire.ultrasonic.util.FileUtil
+import org.moire.ultrasonic.util.TaskExecutors
+import timber.log.Timber
+
+private const val COMPLETE_MARKER = ".complete"
+private const val MAX_QUERY_PARAMETERS = 500
+private val TOKEN_SEPARATOR = Regex("[^\\p{L}\\p{N}]+")
+
+/**
+ * Persistent catalog of the files in the offline music directory and their tags.
+ *
+ * The catalog is updated when a [DownloadFile] completes or deletes a file, so browsing and
+ * searching offline music doesn't have to walk the file system and read the tags of every file.
+ * It is built from the file system the first time it is queried for a music directory. After
+ * that, the file system is rescanned in the background once per process, only reading the tags
+ * of the files whose size or modification time changed.
+ *
+ * Updates are applied in order on a background thread. The query methods are blocking,
+ * they must be called on a background thread.
+ */
+class OfflineMusicIndex(
+    private val context: Context,
+    private val database: AppDatabase,
+    private val dao: OfflineEntryDao
+) {
+    private val updateExecutor = TaskExecutors.newSerialExecutor("OfflineIndex")
+    private val isRescanNeeded = AtomicBoolean(true)
+
+    /**
+     * Adds a downloaded file to the index, using the tags of the [song] it was downloaded for
+     */
+    fun add(file: File, song: MusicDirectory.Entry) {
+        updateExecutor.execute { addFile(file, song) }
+    }
+
+    /**
+     * Removes a deleted file from the index, together with its directories if they became empty
+     */
+    fun remove(file: File) {
+        updateExecutor.execute { removeFile(file) }
+    }
+
+    @Synchronized
+    private fun addFile(file: File, song: MusicDirectory.Entry) {
+        val root = FileUtil.getMusicDirectory(context)
+        // The file will be found when the index is built
+        if (!isBuilt(root)) return
+
+        database.runInTransaction(Runnable {
+            addDirectories(file.parentFile, root)
+            val entry = createFileEntry(file, song)
+            dao.delete(entry.path)
+            dao.insertIfAbsent(entry)
+        })
+    }
+
+    @Synchronized
+    private fun removeFile(file: File) {
+        val root = FileUtil.getMusicDirectory(context)
+        if (!isBuilt(root)) return
+
+        database.runInTransaction(Runnable {
+            dao.delete(getIndexPath(file))
+
+            var directory = file.parentFile
+            while (directory != null && directory != root &&
+                dao.countChildren(directory.path) == 0
+            ) {
+                dao.delete(directory.path)
+                directory = directory.parentFile
+            }
+        })
+    }
+
+    /**
+     * Retrieves the top level directories of the offline music directory as Artists
+     */
+    fun getArtists(): List<Artist> {
+        val root = ensureBuilt()
+        return dao.getDirectories(root.path).map {
+            Artist(id = it.path, name = it.name, index = it.name.substring(0, 1))
+        }
+    }
+
+    /**
+     * Retrieves the files and directories contained in a directory
+     */
+    fun getMusicDirectory(path: String): MusicDirectory {
+        val root = ensureBuilt()
+        val result = MusicDirectory()
+        result.name = File(path).name
+        result.addAll(dao.getChildren(path).map { it.toMusicDirectoryEntry(root) })
+        return result
+    }
+
+    /**
+     * Searches the names and titles of the indexed files and directories. Top level directories
+     * are returned as Artists, other directories as albums and files as songs.
+     */
+    fun search(criteria: SearchCriteria): SearchResult {
+        val root = ensureBuilt()
+        val queryParts = tokenize(criteria.query)
+        if (queryParts.isEmpty()) return SearchResult(emptyList(), emptyList(), emptyList())
+
+        val matches = dao.search(queryParts.joinToString(" OR ") { "$it*" })
+            .map { it to getCloseness(queryParts, it) }
+            .sortedByDescending { it.second }
+
+        val artists = matches.filter { it.first.isDirectory && it.first.parent == root.path }
+            .drop(criteria.artistOffset).take(criteria.artistCount)
+            .map { (entry, closeness) ->
+                Artist(
+                    id = entry.path,
+                    name = entry.name,
+                    index = entry.name.substring(0, 1),
+                    closeness = closeness
+                )
+            }
+        val albums = matches.filter { it.first.isDirectory && it.first.parent != root.path }
+            .drop(criteria.albumOffset).take(criteria.albumCount)
+            .map { (entry, closeness) ->
+                entry.toMusicDirectoryEntry(root).apply {
+                    artist = getArtistDirectoryName(entry, root)
+                    this.closeness = closeness
+                }
+            }
+        val songs = matches.filter { !it.first.isDirectory }
+            .drop(criteria.songOffset).take(criteria.songCount)
+            .map { (entry, closeness) ->
+                entry.toMusicDirectoryEntry(root).apply { this.closeness = closeness }
+            }
+
+        return SearchResult(artists, albums, songs)
+    }
+
+    /**
+     * Retrieves random files of the offline music directory
+     */
+    fun getRandomSongs(count: Int): MusicDirectory {
+        val root = ensureBuilt()
+        val result = MusicDirectory()
+        result.addAll(dao.getRandomFiles(count).map { it.toMusicDirectoryEntry(root) })
+        return result
+    }
+
+    /**
+     * Retrieves the indexed files with the given paths, in the order of the paths.
+     * Paths which are not indexed are skipped.
+     */
+    fun getSongs(paths: List<String>): List<MusicDirectory.Entry> {
+        val root = ensureBuilt()
+        val entries = paths.map { getIndexPath(File(it)) }
+            .distinct()
+            .chunked(MAX_QUERY_PARAMETERS)
+            .flatMap { dao.findByPaths(it) }
+            .associateBy { it.path }
+
+        return paths.mapNotNull { entries[getIndexPath(File(it))]?.toMusicDirectoryEntry(root) }
+    }
+
+    private fun ensureBuilt(): File {
+        val root = FileUtil.getMusicDirectory(context)
+
+        if (!isBuilt(root)) {
+            synchronized(this) {
+                if (!isBuilt(root)) {
+                    dao.clear()
+                    scan(root)
+                }
+            }
+        } else if (isRescanNeeded.compareAndSet(true, false)) {
+            // Files may have been changed while the app wasn't running
+            updateExecutor.execute { synchronized(this) { scan(root) } }
+        }
+
+        return root
+    }
+
+    // The music directory itself is only added when the index was completely built
+    private fun isBuilt(root: File) = dao.findByPath(root.path) != null
+
+    private fun scan(root: File) {
+        Timber.i("Scanning the offline music directory %s", root)
+        val startTime = System.currentTimeMillis()
+
+        val readCount = scanRecursively(root)
+        dao.insertIfAbsent(createDirectoryEntry(root))
+        isRescanNeeded.set(false)
+
+        Timber.i(
+            "Scanned the offline music directory in %d ms, read the tags of %d files",
+            System.currentTimeMillis() - startTime, readCount
+        )
+    }
+
+    // Only reads the tags of the files which are new or were modified since they were indexed
+    private fun scanRecursively(directory: File): Int {
+        val subdirectories = mutableListOf<File>()
+        var readCount = 0
+
+        database.runInTransaction(Runnable {
+            val indexedChildren = dao.getChildren(directory.path).associateByTo(HashMap()) {
+                it.path
+            }
+            val scannedPaths = HashSet<String>()
+
+            for (file in FileUtil.listMediaFiles(directory)) {
+                val name = OfflineMusicService.getName(file) ?: continue
+                val path = getIndexPath(file)
+                if (!scannedPaths.add(path)) continue
+                val indexed = indexedChildren.remove(path)
+
+                if (file.isDirectory) {
+                    if (indexed == null) dao.insertIfAbsent(createDirectoryEntry(file))
+                    subdirectories.add(file)
+                } else if (indexed == null || indexed.size != file.length() ||
+                    indexed.lastModified != file.lastModified()
+                ) {
+                    val song = OfflineMusicService.createEntry(context, file, name)
+                    dao.delete(path)
+                    dao.insertIfAbsent(createFileEntry(file, song))
+                    readCount++
+                }
+            }
+
+            indexedChildren.keys.forEach { dao.deleteTree(it, it + File.separator) }
+        })
+
+        return readCount + subdirectories.sumBy { scanRecursively(it) }
+    }
+
+    private fun addDirectories(directory: File?, root: File) {
+        if (directory == null || directory == root || dao.findByPath(directory.path) != null) {
+            return
+        }
+
+        addDirectories(directory.parentFile, root)
+        dao.insertIfAbsent(createDirectoryEntry(directory))
+    }
+
+    private fun createDirectoryEntry(directory: File) = OfflineEntry(
+        id = 0,
+        path = directory.path,
+        parent = directory.parent ?: "",
+        isDirectory = true,
+        name = directory.name,
+        title = null,
+        artist = null,
+        album = null,
+        track = null,
+        discNumber = null,
+        year = null,
+        genre = null,
+        duration = null,
+        isVideo = false,
+        suffix = null,
+        size = 0,
+        lastModified = 0,
+        searchText = getSearchText(directory.name, null)
+    )
+
+    private fun createFileEntry(file: File, song: MusicDirectory.Entry): OfflineEntry {
+        val path = getIndexPath(file)
+        val name = FileUtil.getBaseName(File(path).name)
+        return OfflineEntry(
+            id = 0,
+            path = path,
+            parent = file.parent ?: "",
+            isDirectory = false,
+            name = name,
+            title = song.title,
+            artist = song.artist,
+            album = song.album,
+            track = song.track,
+            discNumber = song.discNumber,
+            year = song.year,
+            genre = song.genre,
+            duration = song.duration,
+            isVideo = song.isVideo,
+            suffix = FileUtil.getExtension(path),
+            size = file.length(),
+            lastModified = file.lastModified(),
+            searchText = getSearchText(name, song.title)
+        )
+    }
+
+    private fun OfflineEntry.toMusicDirectoryEntry(root: File): MusicDirectory.Entry {
+        val entry = MusicDirectory.Entry(
+            id = path,
+            parent = parent,
+            isDirectory = isDirectory,
+            title = title ?: name,
+            album = album,
+            artist = artist,
+            track = track,
+            year = year,
+            genre = genre,
+            suffix = suffix,
+            size = size,
+            duration = duration,
+            path = path.removePrefix(root.path + File.separator),
+            isVideo = isVideo,
+            discNumber = discNumber
+        )
+
+        val albumArt = FileUtil.getAlbumArtFile(context, entry)
+        if (albumArt.exists()) entry.coverArt = albumArt.path
+
+        return entry
+    }
+
+    private fun getArtistDirectoryName(entry: OfflineEntry, root: File): String {
+        return entry.path.removePrefix(root.path + File.separator)
+            .substringBefore(File.separatorChar)
+    }
+
+    private fun getCloseness(queryParts: List<String>, entry: OfflineEntry): Int {
+        val nameParts = tokenize(entry.name) + tokenize(entry.title ?: "")
+        return queryParts.count { queryPart -> nameParts.any { it.startsWith(queryPart) } }
+    }
+
+    // The words are indexed as they are tokenized from the queries
+    private fun getSearchText(name: String, title: String?): String {
+        return (tokenize(name) + tokenize(title ?: "")).joinToString(" ")
+    }
+
+    private fun tokenize(text: String): List<String> {
+        return text.toLowerCase(Locale.ROOT).split(TOKEN_SEPARATOR).filter { it.isNotEmpty() }
+    }
+
+    companion object {
+        /**
+         * Returns the path under which a downloaded file is indexed. Cached and pinned
+         * versions of the same song share the same path.
+         */
+        @JvmStatic
+        fun getIndexPath(file: File): String {
+            return File(file.parentFile, file.name.replace(COMPLETE_MARKER, "")).path
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package org.moire.ultrasonic.service
+
+import timber.log.Timber
+
+/**
+ * Collects timings of the media player, e.g. the time until the first audio is heard,
+ * so the effect of tuning the buffering can be measured.
+ *
+ * Only a summary of each metric is kept: the number of samples, the last, the average
+ * and the maximum value. The summaries are logged when the media player is released.
+ */
+class PlaybackMetrics {
+    private val summaries = LinkedHashMap<String, Summary>()
+
+    // The sum is kept instead of the average, so the rounding errors don't accumulate
+    private class Summary(
+        val count: Long,
+        val last: Long,
+        val total: Long,
+        val max: Long
+    ) {
+        override fun toString(): String {
+            return "count=$count, last=$last, average=${total / count}, max=$max"
+        }
+    }
+
+    /**
+     * Records a sample of a metric, in milliseconds
+     */
+    @Synchronized
+    fun record(name: String, valueMillis: Long) {
+        val previous = summaries[name]
+        summaries[name] = Summary(
+            (previous?.count ?: 0) + 1,
+            valueMillis,
+            (previous?.total ?: 0) + valueMillis,
+            maxOf(previous?.max ?: 0, valueMillis)
+        )
+        Timber.i("%s: %d ms", name, valueMillis)
+    }
+
+    /**
+     * Returns the summaries of all metrics in a readable form, for the log
+     */
+    @Synchronized
+    fun getStatistics(): String {
+        return summaries.entries.joinToString("\n") { "${it.key} (ms): ${it.value}" }
+    }
+
+    companion object {
+        /**
+         * From the request to play a song until the media player started playing it
+         */
+        const val TIME_TO_FIRST_AUDIO = "Time to first audio"
+
+        /**
+         * From the request to play a song until enough of it was downloaded to start the player
+         */
+        const val BUFFERING_TIME = "Buffering time"
+
+        /**
+         * From the completion of a song until the media player started playing the next one
+         */
+        const val INTER_TRACK_GAP = "Inter-track gap"
+    }
+}
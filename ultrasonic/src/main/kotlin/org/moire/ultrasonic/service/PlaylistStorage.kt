@@ -0,0 +1,142 @@
+package org.moire.ultrasonic.service
+
+import android.content.Context
+import java.io.BufferedWriter
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.OutputStreamWriter
+import org.moire.ultrasonic.domain.MusicDirectory
+import org.moire.ultrasonic.domain.Playlist
+import org.moire.ultrasonic.util.Constants
+import org.moire.ultrasonic.util.FileUtil
+import org.moire.ultrasonic.util.Util
+import timber.log.Timber
+
+private const val M3U_HEADER = "#EXTM3U\n"
+private const val WRITE_BUFFER_SIZE = 64 * 1024
+
+/**
+ * Stores the playlists of the servers as M3U files, so they can be played offline.
+ *
+ * A playlist file is only rewritten when its content changed, which is detected by comparing
+ * the hash of the new content with the hash of the file. The hashes and the playlist files of
+ * each directory are kept in memory, so the playlist directory is listed only once. They are
+ * keyed by the absolute path, so a changed cache location doesn't reuse stale entries.
+ * The paths of the songs are resolved by listing each album directory once.
+ */
+class PlaylistStorage(private val context: Context) {
+    // Only accessed while holding the lock of this object
+    private val contentHashes = HashMap<String, String>()
+    private val playlistFiles = HashMap<String, MutableSet<File>>()
+
+    /**
+     * Saves the songs of a playlist of the server, if they changed since the last save
+     */
+    @Throws(IOException::class)
+    fun save(server: String, name: String?, entries: List<MusicDirectory.Entry>) {
+        val playlistFile = FileUtil.getPlaylistFile(context, server, name)
+        val content = createContent(entries)
+        val hash = Util.md5Hex(content)
+
+        synchronized(this) {
+            if (getContentHash(playlistFile) == hash) {
+                Timber.d("Playlist %s didn't change, not saving it", name)
+                return
+            }
+
+            write(playlistFile, content)
+            contentHashes[playlistFile.absolutePath] = hash
+            getPlaylistFiles(server).add(playlistFile)
+        }
+    }
+
+    /**
+     * Deletes the playlist files of the server which aren't in the list of playlists anymore
+     */
+    @Synchronized
+    fun deleteRemovedPlaylists(server: String, playlists: List<Playlist>) {
+        val files = getPlaylistFiles(server)
+        val existing = playlists.map { FileUtil.getPlaylistFile(context, server, it.name) }.toSet()
+        val removed = files.filter { !existing.contains(it) }
+
+        for (file in removed) {
+            Timber.i("Deleting removed playlist %s", file)
+            Util.delete(file)
+            files.remove(file)
+            contentHashes.remove(file.absolutePath)
+        }
+    }
+
+    private fun getPlaylistFiles(server: String): MutableSet<File> {
+        val directory = FileUtil.getPlaylistDirectory(context, server)
+        return playlistFiles.getOrPut(directory.absolutePath) {
+            FileUtil.listFiles(directory)
+        }
+    }
+
+    // Hashes the file once, when it was written before this object was created
+    private fun getContentHash(file: File): String? {
+        // The file may have been deleted since, e.g. when the cache was cleared
+        if (!file.exists()) {
+            contentHashes.remove(file.absolutePath)
+            return null
+        }
+        contentHashes[file.absolutePath]?.let { return it }
+
+        return try {
+            val hash = Util.md5Hex(file.readText(charset(Constants.UTF_8)))
+            contentHashes[file.absolutePath] = hash
+            hash
+        } catch (e: IOException) {
+            Timber.w(e, "Failed to read playlist %s", file)
+            null
+        }
+    }
+
+    private fun createContent(entries: List<MusicDirectory.Entry>): String {
+        val musicDirectory = FileUtil.getMusicDirectory(context)
+        val directoryContents = HashMap<File, Set<String>>()
+        val content = StringBuilder(M3U_HEADER)
+
+        for (entry in entries) {
+            val songFile = FileUtil.getSongFile(musicDirectory, entry)
+            val directory = songFile.parentFile
+            val fileNames = directoryContents.getOrPut(directory) {
+                directory.list()?.toHashSet() ?: emptySet()
+            }
+
+            // Songs which aren't pinned are referenced by the name of their cached file
+            val path = if (fileNames.contains(songFile.name)) {
+                songFile.absolutePath
+            } else {
+                val name = songFile.name
+                File(
+                    directory,
+                    "${FileUtil.getBaseName(name)}.complete.${FileUtil.getExtension(name)}"
+                ).absolutePath
+            }
+            content.append(path).append('\n')
+        }
+
+        return content.toString()
+    }
+
+    // Writes into a temporary file first, so a failed write never leaves a truncated playlist
+    @Throws(IOException::class)
+    private fun write(file: File, content: String) {
+        val tmp = File("${file.path}.tmp")
+        try {
+            BufferedWriter(
+                OutputStreamWriter(FileOutputStream(tmp), Constants.UTF_8),
+                WRITE_BUFFER_SIZE
+            ).use { it.write(content) }
+
+            if (!tmp.renameTo(file)) {
+                throw IOException(String.format("Failed to rename %s to %s", tmp, file))
+            }
+        } finally {
+            Util.delete(tmp)
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package org.moire.ultrasonic.service
+
+import android.os.Handler
+import android.os.SystemClock
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import org.moire.ultrasonic.util.TaskExecutors
+import timber.log.Timber
+
+private const val RESYNC_INTERVAL_MILLIS = 5000L
+
+/**
+ * Keeps track of the playback position of the local media player without polling it.
+ *
+ * The position is extrapolated from the last position read from the player and the time it was
+ * read. It is synchronized with the player when its state changes, when it seeks, and every few
+ * seconds while playing, to correct the drift of the player.
+ *
+ * Listeners receive ticks with the current position at their own rate, which can be different
+ * while playing and while the player is idle. Reading the position never blocks.
+ */
+class PositionClock {
+    private class Anchor(val position: Int, val time: Long, val isRunning: Boolean)
+
+    @Volatile private var anchor = Anchor(0, SystemClock.elapsedRealtime(), false)
+    @Volatile private var positionSource: (() -> Int)? = null
+    private val subscriptions = mutableListOf<Subscription>()
+    private var resyncTask: ScheduledFuture<*>? = null
+
+    /**
+     * The duration of the current song in milliseconds, 0 if it is unknown
+     */
+    @Volatile
+    var duration = 0
+
+    /**
+     * The current position of the player in milliseconds
+     */
+    val position: Int
+        get() {
+            val current = anchor
+            if (!current.isRunning) return current.position
+
+            val extrapolated = current.position + (SystemClock.elapsedRealtime() - current.time)
+            val knownDuration = duration
+            return if (knownDuration > 0) minOf(extrapolated, knownDuration.toLong()).toInt()
+            else extrapolated.toInt()
+        }
+
+    /**
+     * True if the position is advancing
+     */
+    val isRunning: Boolean
+        get() = anchor.isRunning
+
+    /**
+     * Sets the function used to read the actual position of the player while playing.
+     * It is called on a background thread.
+     */
+    fun setPositionSource(source: (() -> Int)?) {
+        positionSource = source
+    }
+
+    /**
+     * Sets the position read from the player, and whether it is advancing.
+     * The listeners receive a tick immediately.
+     */
+    @Synchronized
+    fun sync(position: Int, isRunning: Boolean) {
+        val wasRunning = anchor.isRunning
+        anchor = Anchor(position, SystemClock.elapsedRealtime(), isRunning)
+
+        if (wasRunning != isRunning) {
+            resyncTask?.cancel(false)
+            resyncTask = if (isRunning) scheduleResync() else null
+            subscriptions.forEach { it.schedule(isRunning) }
+        }
+
+        subscriptions.forEach { it.tick() }
+    }
+
+    /**
+     * Starts delivering ticks to the listener
+     * @param playingIntervalMillis: the interval of the ticks while the position is advancing
+     * @param idleIntervalMillis: the interval of the ticks while the position doesn't change,
+     * 0 to only receive a tick when the state of the player changes
+     * @param handler: the handler used to call the listener, or null to call it directly
+     * on the thread of the tick
+     */
+    @Synchronized
+    fun subscribe(
+        listener: Listener,
+        playingIntervalMillis: Long,
+        idleIntervalMillis: Long,
+        handler: Handler?
+    ) {
+        unsubscribe(listener)
+        val subscription = Subscription(
+            listener, playingIntervalMillis, idleIntervalMillis, handler
+        )
+        subscriptions.add(subscription)
+        subscription.schedule(anchor.isRunning)
+        subscription.tick()
+    }
+
+    /**
+     * Stops delivering ticks to the listener
+     */
+    @Synchronized
+    fun unsubscribe(listener: Listener) {
+        val subscription = subscriptions.firstOrNull { it.listener === listener } ?: return
+        subscription.cancel()
+        subscriptions.remove(subscription)
+    }
+
+    private fun scheduleResync(): ScheduledFuture<*> {
+        return TaskExecutors.scheduler.scheduleWithFixedDelay(
+            Runnable { resync() },
+            RESYNC_INTERVAL_MILLIS,
+            RESYNC_INTERVAL_MILLIS,
+            TimeUnit.MILLISECONDS
+        )
+    }
+
+    private fun resync() {
+        val source = positionSource ?: return
+        val previous = anchor
+        try {
+            val position = source()
+            synchronized(this) {
+                // Don't overwrite a sync which happened while reading the position
+                if (anchor === previous && previous.isRunning) {
+                    anchor = Anchor(position, SystemClock.elapsedRealtime(), true)
+                }
+            }
+        } catch (exception: Exception) {
+            Timber.w(exception, "Failed to read the position of the player")
+        }
+    }
+
+    /**
+     * Receives the position of the player
+     */
+    interface Listener {
+        /**
+         * Called with the current position and duration of the song in milliseconds
+         */
+        fun onTick(position: Int, duration: Int)
+    }
+
+    private inner class Subscription(
+        val listener: Listener,
+        private val playingIntervalMillis: Long,
+        private val idleIntervalMillis: Long,
+        private val handler: Handler?
+    ) {
+        private var task: ScheduledFuture<*>? = null
+        private val isTickPending = AtomicBoolean(false)
+        private val deliverTick = Runnable {
+            isTickPending.set(false)
+            listener.onTick(position, duration)
+        }
+
+        fun schedule(isRunning: Boolean) {
+            task?.cancel(false)
+            val interval = if (isRunning) playingIntervalMillis else idleIntervalMillis
+            task = if (interval <= 0) null
+            else TaskExecutors.scheduler.scheduleAtFixedRate(
+                Runnable { tick() }, interval, interval, TimeUnit.MILLISECONDS
+            )
+        }
+
+        fun cancel() {
+            task?.cancel(false)
+            task = null
+            handler?.removeCallbacks(deliverTick)
+        }
+
+        // Skips the tick if the previous one wasn't delivered yet
+        fun tick() {
+            if (handler == null) {
+                deliverTick.run()
+            } else if (isTickPending.compareAndSet(false, true)) {
+                handler.post(deliverTick)
+            }
+        }
+    }
+}
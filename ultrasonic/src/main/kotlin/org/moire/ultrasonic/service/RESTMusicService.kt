@@ -21,10 +21,7 @@ package org.moire.ultrasonic.service
 import android.content.Context
 import android.graphics.Bitmap
 import android.text.TextUtils
-import java.io.BufferedWriter
-import java.io.File
 import java.io.FileOutputStream
-import java.io.FileWriter
 import java.io.IOException
 import java.io.InputStream
 import java.io.OutputStream
@@ -72,7 +69,8 @@ open class RESTMusicService(
     private val subsonicAPIClient: SubsonicAPIClient,
     private val fileStorage: PermanentFileStorage,
     private val activeServerProvider: ActiveServerProvider,
-    private val responseChecker: ApiCallResponseChecker
+    private val responseChecker: ApiCallResponseChecker,
+    private val playlistStorage: PlaylistStorage
 ) : MusicService {
 
     @Throws(Exception::class)
@@ -235,7 +233,10 @@ open class RESTMusicService(
         criteria: SearchCriteria
     ): SearchResult {
         val response = responseChecker.callWithResponseCheck { api ->
-            api.search(null, null, null, criteria.query, criteria.songCount, null, null)
+            api.search(
+                null, null, null, criteria.query, criteria.songCount,
+                criteria.songOffset, null
+            )
                 .execute()
         }
 
@@ -252,8 +253,9 @@ open class RESTMusicService(
         requireNotNull(criteria.query) { "Query param is null" }
         val response = responseChecker.callWithResponseCheck { api ->
             api.search2(
-                criteria.query, criteria.artistCount, null, criteria.albumCount, null,
-                criteria.songCount, null
+                criteria.query, criteria.artistCount, criteria.artistOffset,
+                criteria.albumCount, criteria.albumOffset, criteria.songCount, null,
+                criteria.songOffset
             ).execute()
         }
 
@@ -267,8 +269,9 @@ open class RESTMusicService(
         requireNotNull(criteria.query) { "Query param is null" }
         val response = responseChecker.callWithResponseCheck { api ->
             api.search3(
-                criteria.query, criteria.artistCount, null, criteria.albumCount, null,
-                criteria.songCount, null
+                criteria.query, criteria.artistCount, criteria.artistOffset,
+                criteria.albumCount, criteria.albumOffset, criteria.songCount, null,
+                criteria.songOffset
             ).execute()
         }
 
@@ -286,43 +289,11 @@ open class RESTMusicService(
         }
 
         val playlist = response.body()!!.playlist.toMusicDirectoryDomainEntity()
-        savePlaylist(name, context, playlist)
-
-        return playlist
-    }
-
-    @Throws(IOException::class)
-    private fun savePlaylist(
-        name: String?,
-        context: Context,
-        playlist: MusicDirectory
-    ) {
-        val playlistFile = FileUtil.getPlaylistFile(
-            context, activeServerProvider.getActiveServer().name, name
+        playlistStorage.save(
+            activeServerProvider.getActiveServer().name, name, playlist.getChildren()
         )
 
-        val fw = FileWriter(playlistFile)
-        val bw = BufferedWriter(fw)
-
-        try {
-            fw.write("#EXTM3U\n")
-            for (e in playlist.getChildren()) {
-                var filePath = FileUtil.getSongFile(context, e).absolutePath
-
-                if (!File(filePath).exists()) {
-                    val ext = FileUtil.getExtension(filePath)
-                    val base = FileUtil.getBaseName(filePath)
-                    filePath = "$base.complete.$ext"
-                }
-                fw.write(filePath + "\n")
-            }
-        } catch (e: IOException) {
-            Timber.w("Failed to save playlist: %s", name)
-            throw e
-        } finally {
-            bw.close()
-            fw.close()
-        }
+        return playlist
     }
 
     @Throws(Exception::class)
@@ -440,6 +411,17 @@ open class RESTMusicService(
         }
     }
 
+    @Throws(Exception::class)
+    override fun scrobble(
+        ids: List<String>,
+        times: List<Long>,
+        context: Context
+    ) {
+        responseChecker.callWithResponseCheck { api ->
+            api.scrobble(ids, times, true).execute()
+        }
+    }
+
     @Throws(Exception::class)
     override fun getAlbumList(
         type: String,
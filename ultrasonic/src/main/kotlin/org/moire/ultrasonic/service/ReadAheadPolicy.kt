@@ -0,0 +1,133 @@
+package org.moire.ultrasonic.service
+
+import android.content.Context
+import android.os.SystemClock
+import kotlin.math.max
+import org.moire.ultrasonic.data.ActiveServerProvider
+import org.moire.ultrasonic.domain.MusicDirectory
+import org.moire.ultrasonic.util.CachedSettings
+import org.moire.ultrasonic.util.TaskExecutors
+import org.moire.ultrasonic.util.Util
+import timber.log.Timber
+
+private const val MAX_READ_AHEAD_TRACKS = 3
+private const val MIN_READ_AHEAD_SECONDS = 10L
+private const val MIN_READ_AHEAD_BYTES = 100000L
+private const val METERED_BUDGET_BYTES = 5L * 1024 * 1024
+private const val METERED_BUDGET_WINDOW_MILLIS = 60L * 60 * 1000
+
+/**
+ * Decides which songs are read ahead by the [Downloader] when it has nothing else to download.
+ *
+ * The first seconds of the songs which are likely played next are downloaded into their
+ * partial files, so they start playing without buffering: the songs following the preloaded
+ * ones in the playlist, or the following songs of the album when the playlist ends.
+ * Songs added by the shuffle play buffer are part of the playlist.
+ *
+ * Reading ahead is unlimited on unmetered networks. On metered networks at most
+ * [METERED_BUDGET_BYTES] are read ahead per hour.
+ */
+class ReadAheadPolicy(private val context: Context) {
+    // Only accessed while holding the lock of the Downloader
+    private var budgetWindowStart = 0L
+    private var meteredBytes = 0L
+    private var albumSongsRequestedFor: String? = null
+
+    @Volatile private var albumSongs: AlbumSongs? = null
+
+    private class AlbumSongs(val songId: String, val following: List<MusicDirectory.Entry>)
+
+    /**
+     * Starts the read ahead of the next song which should be read ahead, if any.
+     * Must be called while holding the lock of the [downloader].
+     * @return the file which is read ahead
+     */
+    fun startNext(downloader: Downloader, currentIndex: Int): DownloadFile? {
+        val networkState = CachedSettings.getNetworkState(context)
+        if (!networkState.isConnected) return null
+
+        for (downloadFile in getCandidates(downloader, currentIndex)) {
+            val length = getReadAheadLength(downloadFile)
+            if (networkState.isMetered && !hasBudget(length)) {
+                Timber.d("The read ahead budget of the metered network is used up")
+                return null
+            }
+
+            if (downloadFile.readAhead(length)) {
+                if (networkState.isMetered) meteredBytes += length
+                return downloadFile
+            }
+        }
+        return null
+    }
+
+    private fun getCandidates(downloader: Downloader, currentIndex: Int): List<DownloadFile> {
+        val playlist = downloader.downloadList
+        val candidates = mutableListOf<DownloadFile>()
+
+        for (i in currentIndex + 1 until playlist.size) {
+            if (candidates.size == MAX_READ_AHEAD_TRACKS) break
+            if (!playlist[i].isWorkDone) candidates.add(playlist[i])
+        }
+
+        // At the end of the playlist the album of the current song is likely continued
+        if (currentIndex == playlist.size - 1 && currentIndex >= 0) {
+            val following = getFollowingAlbumSongs(playlist[currentIndex].song)
+            for (song in following.take(MAX_READ_AHEAD_TRACKS)) {
+                candidates.add(downloader.getDownloadFileForSong(song))
+            }
+        }
+        return candidates
+    }
+
+    // Enough to start playing without buffering, see the BufferTask of the LocalMediaPlayer
+    private fun getReadAheadLength(downloadFile: DownloadFile): Long {
+        val bufferLength = Util.getBufferLength(context).toLong()
+        val seconds = max(MIN_READ_AHEAD_SECONDS, bufferLength * 3 / 2)
+        return max(MIN_READ_AHEAD_BYTES, downloadFile.bitRate * 1024L / 8L * seconds)
+    }
+
+    private fun hasBudget(length: Long): Boolean {
+        val now = SystemClock.elapsedRealtime()
+        if (now - budgetWindowStart > METERED_BUDGET_WINDOW_MILLIS) {
+            budgetWindowStart = now
+            meteredBytes = 0
+        }
+        return meteredBytes + length <= METERED_BUDGET_BYTES
+    }
+
+    // The songs of the album are loaded in the background, they are used by later calls
+    private fun getFollowingAlbumSongs(song: MusicDirectory.Entry): List<MusicDirectory.Entry> {
+        albumSongs?.let { if (it.songId == song.id) return it.following }
+        if (albumSongsRequestedFor == song.id) return emptyList()
+
+        albumSongsRequestedFor = song.id
+        if (!TaskExecutors.io.tryExecute(Runnable { loadAlbumSongs(song) })) {
+            // Requested again by a later call
+            albumSongsRequestedFor = null
+        }
+        return emptyList()
+    }
+
+    private fun loadAlbumSongs(song: MusicDirectory.Entry) {
+        if (ActiveServerProvider.isOffline(context)) return
+
+        try {
+            val musicService = MusicServiceFactory.getMusicService(context)
+            val album = if (Util.getShouldUseId3Tags(context) && song.albumId != null) {
+                musicService.getAlbum(song.albumId, song.album, false, context)
+            } else if (song.parent != null) {
+                musicService.getMusicDirectory(song.parent, song.album, false, context)
+            } else {
+                return
+            }
+
+            val songs = album.getChildren(false, true).filter { !it.isVideo }
+            val index = songs.indexOfFirst { it.id == song.id }
+            val following = if (index < 0) emptyList() else songs.drop(index + 1)
+            albumSongs = AlbumSongs(song.id, following)
+        } catch (all: Exception) {
+            Timber.w(all, "Failed to load the album of %s for reading ahead", song)
+        }
+    }
+}
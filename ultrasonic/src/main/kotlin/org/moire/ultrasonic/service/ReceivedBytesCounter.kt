@@ -0,0 +1,57 @@
+package org.moire.ultrasonic.service
+
+import java.util.concurrent.atomic.AtomicLong
+import okhttp3.Interceptor
+import okhttp3.Response
+import okhttp3.ResponseBody
+import okio.Buffer
+import okio.ForwardingSource
+import okio.Okio
+
+/**
+ * Network [Interceptor] which counts the response bytes received from the network by the
+ * requests executed in [measure].
+ *
+ * The requests are counted on the thread which executes them, so only synchronous calls are
+ * measured. Responses served from the http cache don't reach network interceptors, so they
+ * aren't counted.
+ */
+class ReceivedBytesCounter : Interceptor {
+    private val counter = ThreadLocal<AtomicLong>()
+
+    /**
+     * Runs [block] and returns the response bytes received by the requests it executed
+     */
+    fun measure(block: () -> Unit): Long {
+        val received = AtomicLong()
+        counter.set(received)
+        try {
+            block()
+        } finally {
+            counter.remove()
+        }
+        return received.get()
+    }
+
+    override fun intercept(chain: Interceptor.Chain): Response {
+        val received = counter.get()
+        val response = chain.proceed(chain.request())
+        val body = response.body() ?: return response
+        if (received == null) return response
+
+        // The body is read after the interceptors returned, so its source counts the bytes
+        val source = object : ForwardingSource(body.source()) {
+            override fun read(sink: Buffer, byteCount: Long): Long {
+                val read = super.read(sink, byteCount)
+                if (read > 0) received.addAndGet(read)
+                return read
+            }
+        }
+        val countedBody = ResponseBody.create(
+            body.contentType(),
+            body.contentLength(),
+            Okio.buffer(source)
+        )
+        return response.newBuilder().body(countedBody).build()
+    }
+}
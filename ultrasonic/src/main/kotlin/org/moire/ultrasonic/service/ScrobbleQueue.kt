@@ -0,0 +1,184 @@
+package org.moire.ultrasonic.service
+
+import android.content.BroadcastReceiver
+import android.content.Context
+import android.content.Intent
+import android.content.IntentFilter
+import android.net.ConnectivityManager
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+import org.moire.ultrasonic.api.subsonic.ApiNotSupportedException
+import org.moire.ultrasonic.api.subsonic.SubsonicError
+import org.moire.ultrasonic.data.ActiveServerProvider
+import org.moire.ultrasonic.data.ScrobbleEntry
+import org.moire.ultrasonic.data.ScrobbleEntryDao
+import org.moire.ultrasonic.util.TaskExecutors
+import timber.log.Timber
+
+private const val MAX_BATCH_SIZE = 50
+private val COALESCE_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(10)
+private val MIN_RETRY_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(30)
+private val MAX_RETRY_DELAY_MILLIS = TimeUnit.HOURS.toMillis(1)
+
+/**
+ * Persistent queue of the played songs which are waiting to be scrobbled.
+ *
+ * Submissions are stored in the database with the time they were played, so they survive
+ * network failures and restarts of the app. They are sent in batches of multiple id and time
+ * pairs, shortly after the last submission, when the network becomes available, or after a
+ * retry delay which doubles after each failure.
+ *
+ * Submissions are sent to the server they were played from, when it is the active server.
+ */
+class ScrobbleQueue(
+    private val context: Context,
+    private val dao: ScrobbleEntryDao
+) {
+    private val flushLock = Any()
+    private var scheduledFlush: ScheduledFuture<*>? = null
+    private var scheduledFlushTime = 0L
+    private var failureCount = 0
+    private var isReceiverRegistered = false
+
+    private val connectivityReceiver = object : BroadcastReceiver() {
+        override fun onReceive(context: Context, intent: Intent) {
+            if (!isNetworkConnected()) return
+            synchronized(this@ScrobbleQueue) { failureCount = 0 }
+            scheduleFlush(0)
+        }
+    }
+
+    /**
+     * Starts sending the queued submissions, and listening to connectivity changes
+     */
+    @Synchronized
+    fun start() {
+        if (isReceiverRegistered) return
+        // The sticky broadcast received on registration flushes the queue if connected
+        context.registerReceiver(
+            connectivityReceiver,
+            IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION)
+        )
+        isReceiverRegistered = true
+    }
+
+    /**
+     * Stops listening to connectivity changes. Queued submissions are kept in the database.
+     */
+    @Synchronized
+    fun stop() {
+        if (!isReceiverRegistered) return
+        context.unregisterReceiver(connectivityReceiver)
+        isReceiverRegistered = false
+        scheduledFlush?.cancel(false)
+        scheduledFlush = null
+    }
+
+    /**
+     * Adds a submission of a song played on the active server
+     * @param time: the time the song was played, in milliseconds since the epoch
+     */
+    fun add(songId: String, time: Long) {
+        val serverId = ActiveServerProvider.getActiveServerId(context)
+        TaskExecutors.executeOrDefer(
+            TaskExecutors.io,
+            Runnable {
+                dao.insert(ScrobbleEntry(id = 0, serverId = serverId, songId = songId, time = time))
+                scheduleFlush(COALESCE_DELAY_MILLIS)
+            }
+        )
+    }
+
+    // Keeps the earlier flush if one is already scheduled
+    @Synchronized
+    private fun scheduleFlush(delayMillis: Long) {
+        val flushTime = System.currentTimeMillis() + delayMillis
+        val pending = scheduledFlush
+        if (pending != null && !pending.isDone && scheduledFlushTime <= flushTime) return
+
+        pending?.cancel(false)
+        scheduledFlushTime = flushTime
+        scheduledFlush = TaskExecutors.scheduler.schedule(
+            Runnable { TaskExecutors.executeOrDefer(TaskExecutors.io, Runnable { flush() }) },
+            delayMillis,
+            TimeUnit.MILLISECONDS
+        )
+    }
+
+    private fun flush() {
+        if (ActiveServerProvider.isOffline(context) || !isNetworkConnected()) return
+        val serverId = ActiveServerProvider.getActiveServerId(context)
+
+        synchronized(flushLock) {
+            while (true) {
+                val batch = dao.getOldest(serverId, MAX_BATCH_SIZE)
+                if (batch.isEmpty()) return
+
+                try {
+                    submit(batch)
+                } catch (exception: Exception) {
+                    scheduleRetry(batch.size, exception)
+                    return
+                }
+
+                synchronized(this) { failureCount = 0 }
+            }
+        }
+    }
+
+    // Deletes the submissions which were accepted, or which the server can never accept
+    private fun submit(batch: List<ScrobbleEntry>) {
+        val musicService = MusicServiceFactory.getMusicService(context)
+        try {
+            musicService.scrobble(batch.map { it.songId }, batch.map { it.time }, context)
+            dao.delete(batch.map { it.id })
+            Timber.i("Scrobbled %d submissions", batch.size)
+        } catch (exception: ApiNotSupportedException) {
+            // Servers older than API 1.8.0 only accept a single id, without the time
+            submitOneByOne(batch) { musicService.scrobble(it.songId, true, context) }
+        } catch (exception: SubsonicRESTException) {
+            if (!isPermanent(exception)) throw exception
+            // Only the submissions which can't be accepted are dropped
+            submitOneByOne(batch) {
+                musicService.scrobble(listOf(it.songId), listOf(it.time), context)
+            }
+        }
+    }
+
+    private fun submitOneByOne(batch: List<ScrobbleEntry>, scrobble: (ScrobbleEntry) -> Unit) {
+        for (entry in batch) {
+            try {
+                scrobble(entry)
+            } catch (exception: SubsonicRESTException) {
+                if (!isPermanent(exception)) throw exception
+                Timber.w(exception, "Server can't accept the scrobble of %s", entry.songId)
+            }
+            // Deleted right away, so a later failure doesn't send it again
+            dao.delete(listOf(entry.id))
+        }
+        Timber.i("Scrobbled %d submissions one by one", batch.size)
+    }
+
+    // Sending these again can never succeed, e.g. the song was removed from the server.
+    // Other errors, like wrong credentials, may be fixed before the retry.
+    private fun isPermanent(exception: SubsonicRESTException): Boolean {
+        return exception.error == SubsonicError.RequestedDataWasNotFound
+    }
+
+    @Synchronized
+    private fun scheduleRetry(batchSize: Int, exception: Exception) {
+        failureCount++
+        val delay = (MIN_RETRY_DELAY_MILLIS shl minOf(failureCount - 1, 16))
+            .coerceAtMost(MAX_RETRY_DELAY_MILLIS)
+        Timber.i(
+            exception, "Failed to scrobble %d submissions, retrying in %d s",
+            batchSize, TimeUnit.MILLISECONDS.toSeconds(delay)
+        )
+        scheduleFlush(delay)
+    }
+
+    private fun isNetworkConnected(): Boolean {
+        val manager = context.getSystemService(Context.CONNECTIVITY_SERVICE) as ConnectivityManager
+        return manager.activeNetworkInfo?.isConnected == true
+    }
+}
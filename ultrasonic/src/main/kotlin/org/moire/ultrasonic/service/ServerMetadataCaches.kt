@@ -0,0 +1,48 @@
+package org.moire.ultrasonic.service
+
+import timber.log.Timber
+
+private const val MAX_CACHED_SERVERS = 3
+
+/**
+ * Keeps the [ServerMetadataCache]s of the recently used servers, so switching back to one of
+ * them doesn't start with empty caches.
+ *
+ * The caches of at most [MAX_CACHED_SERVERS] servers are kept, the least recently used one is
+ * evicted first. The cached values are only softly referenced, so all servers share the memory
+ * which is available for caching. The caches of a server are dropped when it is edited or deleted.
+ */
+class ServerMetadataCaches {
+    private val caches = object : LinkedHashMap<String, ServerMetadataCache>(
+        MAX_CACHED_SERVERS, 0.75f, true
+    ) {
+        override fun removeEldestEntry(
+            eldest: MutableMap.MutableEntry<String, ServerMetadataCache>
+        ): Boolean {
+            val isFull = size > MAX_CACHED_SERVERS
+            if (isFull) Timber.d("Evicting the metadata cache of server %s", eldest.key)
+            return isFull
+        }
+    }
+
+    /**
+     * Returns the cache of the server, creating it when needed
+     */
+    @Synchronized
+    fun get(serverId: Int, url: String, userName: String): ServerMetadataCache {
+        return caches.getOrPut(getKey(serverId, url, userName)) { ServerMetadataCache() }
+    }
+
+    /**
+     * Drops the caches of the server with the given id, whatever its url and user were
+     */
+    @Synchronized
+    fun remove(serverId: Int) {
+        val removed = caches.keys.removeAll { it.startsWith("$serverId:") }
+        if (removed) Timber.d("Dropped the metadata cache of server %d", serverId)
+    }
+
+    private fun getKey(serverId: Int, url: String, userName: String): String {
+        return "$serverId:$url:$userName"
+    }
+}
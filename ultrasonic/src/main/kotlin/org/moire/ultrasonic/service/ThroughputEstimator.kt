@@ -0,0 +1,121 @@
+package org.moire.ultrasonic.service
+
+import android.os.SystemClock
+import timber.log.Timber
+
+private const val MIN_SAMPLE_BYTES = 64 * 1024L
+private const val MIN_SAMPLE_MILLIS = 250L
+private const val FAST_WEIGHT = 0.5
+private const val SLOW_WEIGHT = 0.1
+private const val SAFETY_FACTOR = 1.5
+private const val STALL_WINDOW_MILLIS = 5 * 60 * 1000L
+private const val MAX_STALL_STEPS = 2
+private val BIT_RATES = intArrayOf(32, 64, 80, 96, 112, 128, 160, 192, 256, 320)
+
+/**
+ * Estimates the download throughput from the transfers of the downloads, and selects the
+ * bit rate of the next download from it when the adaptive bit rate is enabled.
+ *
+ * Two moving averages are kept: a fast one, which follows a congested network quickly, and
+ * a slow one, which isn't fooled by short bursts. The lower one is used. The selected bit rate
+ * is lowered further for each stall of the playback within the last five minutes.
+ */
+class ThroughputEstimator {
+    // Only accessed while holding the lock of this object
+    private var fastKbps = 0.0
+    private var slowKbps = 0.0
+    private var sampleCount = 0L
+    private var pendingBytes = 0L
+    private var pendingMillis = 0L
+    private var lastStallTime = 0L
+    private var recentStalls = 0
+    private var lastSelectedBitRate = 0
+
+    /**
+     * Records a transfer of a download. Short transfers are added up until they are large
+     * enough, on their own they mostly measure the latency instead of the throughput.
+     */
+    @Synchronized
+    fun record(bytes: Long, elapsedMillis: Long) {
+        pendingBytes += bytes
+        pendingMillis += elapsedMillis
+        if (pendingBytes < MIN_SAMPLE_BYTES || pendingMillis < MIN_SAMPLE_MILLIS) return
+
+        val kbps = pendingBytes * 8.0 / pendingMillis
+        pendingBytes = 0
+        pendingMillis = 0
+        if (sampleCount == 0L) {
+            fastKbps = kbps
+            slowKbps = kbps
+        } else {
+            fastKbps += FAST_WEIGHT * (kbps - fastKbps)
+            slowKbps += SLOW_WEIGHT * (kbps - slowKbps)
+        }
+        sampleCount++
+    }
+
+    /**
+     * Records that the playback stopped because the download was too slow
+     */
+    @Synchronized
+    fun recordStall() {
+        val now = SystemClock.elapsedRealtime()
+        if (now - lastStallTime > STALL_WINDOW_MILLIS) recentStalls = 0
+        recentStalls++
+        lastStallTime = now
+        Timber.i("Playback stalled, %d stalls recently", recentStalls)
+    }
+
+    /**
+     * Returns the estimated throughput in kbps, or null if nothing was measured yet
+     */
+    @Synchronized
+    fun getEstimateKbps(): Double? = if (sampleCount == 0L) null else minOf(fastKbps, slowKbps)
+
+    /**
+     * Selects the highest bit rate the measured throughput can sustain, within the bounds
+     * @param maxBitRate the highest bit rate in kbps, 0 if it isn't limited
+     * @param minBitRate the lowest bit rate in kbps, 0 if it isn't limited
+     * @return the bit rate in kbps, 0 if it isn't limited
+     */
+    @Synchronized
+    fun selectBitRate(maxBitRate: Int, minBitRate: Int): Int {
+        val estimate = getEstimateKbps() ?: return maxBitRate
+        val stallSteps = if (SystemClock.elapsedRealtime() - lastStallTime > STALL_WINDOW_MILLIS)
+            0 else minOf(recentStalls, MAX_STALL_STEPS)
+
+        val upperBound = if (maxBitRate == 0) Int.MAX_VALUE else maxBitRate
+        val lowerBound = minOf(minBitRate, upperBound)
+        val sustainable = BIT_RATES.indexOfLast {
+            it <= upperBound && it * SAFETY_FACTOR <= estimate
+        }
+
+        // Unlimited stays unlimited while even the highest bit rate can be sustained easily
+        val isUnlimited = maxBitRate == 0 && stallSteps == 0 &&
+            BIT_RATES.last() * SAFETY_FACTOR <= estimate
+        val index = sustainable - stallSteps
+        val selected = when {
+            isUnlimited -> 0
+            index >= 0 -> maxOf(BIT_RATES[index], lowerBound)
+            else -> maxOf(BIT_RATES.first(), lowerBound)
+        }
+
+        if (selected != lastSelectedBitRate) {
+            Timber.i("Selected bit rate %d for an estimated %.0f kbps", selected, estimate)
+            lastSelectedBitRate = selected
+        }
+        return selected
+    }
+
+    /**
+     * Returns the readings of the estimator in a readable form, logged when the player is released
+     */
+    @Synchronized
+    fun getStatistics(): String {
+        return String.format(
+            "Throughput: fast=%.0f kbps, slow=%.0f kbps, samples=%d, " +
+                "recent stalls=%d, selected bit rate=%d",
+            fastKbps, slowKbps, sampleCount, recentStalls, lastSelectedBitRate
+        )
+    }
+}
@@ -0,0 +1,92 @@
+package org.moire.ultrasonic.util
+
+import android.content.BroadcastReceiver
+import android.content.Context
+import android.content.Intent
+import android.content.IntentFilter
+import android.content.SharedPreferences
+import android.net.ConnectivityManager
+import android.preference.PreferenceManager
+import timber.log.Timber
+
+/**
+ * Holds the current [SettingsSnapshot] and [NetworkState], so hot paths don't parse
+ * the preferences or query the ConnectivityManager on every call.
+ *
+ * The snapshot is only rebuilt when a preference changes, and the network state when
+ * the connectivity changes. Both are read without locking.
+ */
+object CachedSettings {
+    @Volatile private var settings: SettingsSnapshot? = null
+    @Volatile private var networkState: NetworkState? = null
+    private var isPreferenceListenerRegistered = false
+
+    // Kept in a field, as the preferences only keep a weak reference to their listeners
+    private val preferenceListener =
+        SharedPreferences.OnSharedPreferenceChangeListener { preferences, _ ->
+            settings = SettingsSnapshot.read(preferences)
+        }
+
+    private val connectivityReceiver = object : BroadcastReceiver() {
+        override fun onReceive(context: Context, intent: Intent) {
+            val state = NetworkState.read(context)
+            if (state != networkState) Timber.d("Network state changed: %s", state)
+            networkState = state
+        }
+    }
+
+    /**
+     * Returns the current snapshot of the settings
+     */
+    @JvmStatic
+    fun getSettings(context: Context): SettingsSnapshot {
+        return settings ?: readSettings(context)
+    }
+
+    /**
+     * Returns the current state of the active network
+     */
+    @JvmStatic
+    fun getNetworkState(context: Context): NetworkState {
+        return networkState ?: registerConnectivityReceiver(context)
+    }
+
+    /**
+     * Rebuilds the snapshot of the settings immediately. Should be called after writing a
+     * preference which is read right away, as the change listener is called later on the main
+     * thread when the preferences are edited on another thread.
+     */
+    @JvmStatic
+    fun refresh(context: Context) {
+        readSettings(context)
+    }
+
+    @Synchronized
+    private fun readSettings(context: Context): SettingsSnapshot {
+        val sharedPreferences = PreferenceManager.getDefaultSharedPreferences(
+            context.applicationContext
+        )
+        if (!isPreferenceListenerRegistered) {
+            sharedPreferences.registerOnSharedPreferenceChangeListener(preferenceListener)
+            isPreferenceListenerRegistered = true
+        }
+
+        val snapshot = SettingsSnapshot.read(sharedPreferences)
+        settings = snapshot
+        return snapshot
+    }
+
+    @Synchronized
+    private fun registerConnectivityReceiver(context: Context): NetworkState {
+        networkState?.let { return it }
+
+        val applicationContext = context.applicationContext
+        val state = NetworkState.read(applicationContext)
+        networkState = state
+        applicationContext.registerReceiver(
+            connectivityReceiver,
+            IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION)
+        )
+        return state
+    }
+}
@@ -0,0 +1,106 @@
+package org.moire.ultrasonic.util
+
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.RejectedExecutionHandler
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import timber.log.Timber
+
+private const val KEEP_ALIVE_SECONDS = 30L
+
+/**
+ * A named thread pool with a bounded number of threads and a bounded queue,
+ * which counts the tasks it runs.
+ *
+ * Threads are only created when tasks are submitted, and stop after being idle for a while.
+ * When both the threads and the queue are full, the task is rejected with a
+ * [RejectedExecutionException]. It is never run on the submitting thread, which is mostly the
+ * UI thread. Submitters which can't handle the exception use [tryExecute].
+ */
+class InstrumentedExecutor(
+    val name: String,
+    threadCount: Int,
+    queueLimit: Int,
+    threadPriority: Int = Thread.NORM_PRIORITY
+) : ThreadPoolExecutor(
+    threadCount,
+    threadCount,
+    KEEP_ALIVE_SECONDS,
+    TimeUnit.SECONDS,
+    LinkedBlockingQueue<Runnable>(queueLimit),
+    NamedThreadFactory(name, threadPriority)
+) {
+    private val rejectedCount = AtomicLong()
+    private val rejectionPolicy: RejectedExecutionHandler = ThreadPoolExecutor.AbortPolicy()
+
+    init {
+        allowCoreThreadTimeOut(true)
+        rejectedExecutionHandler = RejectedExecutionHandler { task, executor ->
+            rejectedCount.incrementAndGet()
+            Timber.w("%s rejected a task: %s", name, getStatistics())
+            rejectionPolicy.rejectedExecution(task, executor)
+        }
+    }
+
+    /**
+     * Executes the task, or drops it when the pool is full
+     * @return true if the task was accepted
+     */
+    fun tryExecute(task: Runnable): Boolean {
+        return try {
+            execute(task)
+            true
+        } catch (e: RejectedExecutionException) {
+            false
+        }
+    }
+
+    /**
+     * The number of threads currently running a task
+     */
+    val activeTaskCount: Int
+        get() = activeCount
+
+    /**
+     * The number of tasks waiting for a thread
+     */
+    val queuedTaskCount: Int
+        get() = queue.size
+
+    /**
+     * The number of tasks which have finished running
+     */
+    val completedTasks: Long
+        get() = completedTaskCount
+
+    /**
+     * The number of tasks which were rejected because the pool was full
+     */
+    val rejectedTaskCount: Long
+        get() = rejectedCount.get()
+
+    /**
+     * Returns the counters of the pool in a readable form, for diagnostics
+     */
+    fun getStatistics(): String {
+        return "$name: active=$activeTaskCount, queued=$queuedTaskCount, " +
+            "completed=$completedTasks, rejected=$rejectedTaskCount"
+    }
+
+    private class NamedThreadFactory(
+        private val name: String,
+        private val priority: Int
+    ) : ThreadFactory {
+        private val threadNumber = AtomicInteger()
+
+        override fun newThread(runnable: Runnable): Thread {
+            val thread = Thread(runnable, "$name-${threadNumber.incrementAndGet()}")
+            thread.priority = priority
+            return thread
+        }
+    }
+}
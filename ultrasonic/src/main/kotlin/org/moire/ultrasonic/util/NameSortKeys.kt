@@ -0,0 +1,84 @@
+package org.moire.ultrasonic.util
+
+import java.text.CollationKey
+import java.text.Collator
+import java.util.Locale
+import org.moire.ultrasonic.domain.Artist
+
+private const val MAX_CACHED_NAMES = 50000
+
+/**
+ * Creates sort keys for artist and album names, ignoring the leading articles
+ * returned by the server in Indexes.ignoredArticles, e.g. "The Beatles" is sorted as "Beatles".
+ *
+ * The articles are stripped and the CollationKey is created only once per name, so sorting
+ * a list only compares the cached keys.
+ */
+class NameSortKeys private constructor(ignoredArticles: String?) {
+    private val articlePrefixes = (ignoredArticles ?: DEFAULT_IGNORED_ARTICLES)
+        .split(' ')
+        .filter { it.isNotEmpty() }
+        .map { it.toLowerCase(Locale.ROOT) + " " }
+    private val collator = Collator.getInstance()
+    private val cache = object : LinkedHashMap<String, SortName>() {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, SortName>?) =
+            size > MAX_CACHED_NAMES
+    }
+
+    /**
+     * Returns the name without its leading article
+     */
+    fun getSortName(name: String?): String = getCached(name ?: "").name
+
+    /**
+     * Returns the key used to sort the name
+     */
+    fun getSortKey(name: String?): CollationKey = getCached(name ?: "").key
+
+    /**
+     * Returns the items sorted by their names
+     */
+    fun <T> sort(items: List<T>, getName: (T) -> String?): List<T> {
+        return items.map { it to getSortKey(getName(it)) }
+            .sortedBy { it.second }
+            .map { it.first }
+    }
+
+    /**
+     * Returns the Artists sorted by their names
+     */
+    fun sortArtists(artists: List<Artist>): List<Artist> = sort(artists) { it.name }
+
+    @Synchronized
+    private fun getCached(name: String): SortName {
+        return cache.getOrPut(name) {
+            val sortName = stripArticle(name)
+            SortName(sortName, collator.getCollationKey(sortName))
+        }
+    }
+
+    private fun stripArticle(name: String): String {
+        val lowerCaseName = name.toLowerCase(Locale.ROOT)
+        val prefix = articlePrefixes.firstOrNull {
+            lowerCaseName.startsWith(it) && name.length > it.length
+        } ?: return name
+        return name.substring(prefix.length)
+    }
+
+    private class SortName(val name: String, val key: CollationKey)
+
+    companion object {
+        const val DEFAULT_IGNORED_ARTICLES = "The El La Los Las Le Les"
+
+        private val instances = HashMap<String?, NameSortKeys>()
+
+        /**
+         * Returns the shared instance for the space separated list of ignored articles
+         */
+        @JvmStatic
+        @Synchronized
+        fun forArticles(ignoredArticles: String?): NameSortKeys {
+            return instances.getOrPut(ignoredArticles) { NameSortKeys(ignoredArticles) }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package org.moire.ultrasonic.util
+
+import android.content.Context
+import android.net.ConnectivityManager
+import androidx.core.net.ConnectivityManagerCompat
+
+/**
+ * The state of the active network, read once when the connectivity changes.
+ */
+data class NetworkState(
+    /**
+     * True if there is an active network, even if it isn't connected yet
+     */
+    val hasNetwork: Boolean,
+    val isConnected: Boolean,
+    val isWifi: Boolean,
+    /**
+     * True if the data sent over the active network may cost money, e.g. on mobile networks
+     */
+    val isMetered: Boolean
+) {
+    companion object {
+        /**
+         * Reads the state of the active network from the ConnectivityManager
+         */
+        @JvmStatic
+        fun read(context: Context): NetworkState {
+            val manager = context.getSystemService(Context.CONNECTIVITY_SERVICE)
+                as ConnectivityManager
+            val networkInfo = manager.activeNetworkInfo ?: return NetworkState(
+                hasNetwork = false, isConnected = false, isWifi = false, isMetered = true
+            )
+
+            return NetworkState(
+                hasNetwork = true,
+                isConnected = networkInfo.isConnected,
+                isWifi = networkInfo.type == ConnectivityManager.TYPE_WIFI,
+                isMetered = ConnectivityManagerCompat.isActiveNetworkMetered(manager)
+            )
+        }
+    }
+}
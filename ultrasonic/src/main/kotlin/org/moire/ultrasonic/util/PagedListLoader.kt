@@ -0,0 +1,88 @@
+package org.moire.ultrasonic.util
+
+import android.widget.AbsListView
+import android.widget.ArrayAdapter
+import android.widget.ListView
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
+import timber.log.Timber
+
+private const val DEFAULT_PREFETCH_PAGES = 1
+
+/**
+ * Loads a long list page by page while the user scrolls through a [ListView].
+ *
+ * Pages are fetched ahead of the scroll position and appended to the existing [adapter],
+ * so the adapter is never recreated. Every loaded page is kept, so actions on the whole
+ * list, like selecting or downloading all, see every loaded item. A page which failed to
+ * load is requested again on the next scroll.
+ *
+ * @param nextOffset offset of the first item that is not yet loaded
+ * @param loadPage loads [pageSize] items starting at the given offset, called on a
+ * background thread
+ */
+class PagedListLoader<T>(
+    private val listView: ListView,
+    private val adapter: ArrayAdapter<T>,
+    private val pageSize: Int,
+    nextOffset: Int,
+    private val loadPage: (offset: Int, count: Int) -> List<T>,
+    private val prefetchPages: Int = DEFAULT_PREFETCH_PAGES,
+    private val onError: (Throwable) -> Unit = {}
+) : AbsListView.OnScrollListener {
+    private val scope = CoroutineScope(Dispatchers.Main + Job())
+    private var nextOffset = nextOffset
+    private var endReached = false
+    private var isLoading = false
+
+    /**
+     * Starts observing [listView] scrolling.
+     */
+    fun start() {
+        listView.setOnScrollListener(this)
+    }
+
+    /**
+     * Stops loading pages. Should be called when the [listView] is destroyed.
+     */
+    fun stop() {
+        listView.setOnScrollListener(null)
+        scope.cancel()
+    }
+
+    override fun onScrollStateChanged(view: AbsListView, scrollState: Int) {}
+
+    override fun onScroll(
+        view: AbsListView,
+        firstVisibleItem: Int,
+        visibleItemCount: Int,
+        totalItemCount: Int
+    ) {
+        if (isLoading || adapter.count == 0) return
+
+        val lastVisible = firstVisibleItem + visibleItemCount
+        if (!endReached && totalItemCount - lastVisible <= prefetchPages * pageSize) appendPage()
+    }
+
+    private fun appendPage() {
+        isLoading = true
+        val offset = nextOffset
+        scope.launch {
+            try {
+                val page = withContext(Dispatchers.IO) { loadPage(offset, pageSize) }
+                endReached = page.size < pageSize
+                nextOffset = offset + page.size
+                adapter.addAll(page)
+            } catch (exception: Exception) {
+                Timber.w(exception, "Failed to load page at offset %d", offset)
+                onError(exception)
+            } finally {
+                isLoading = false
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.moire.ultrasonic.util
+
+import android.content.SharedPreferences
+
+/**
+ * The settings which are read on hot paths, e.g. in every iteration of the download loop,
+ * parsed once from the shared preferences.
+ *
+ * A snapshot never changes. [CachedSettings] creates a new one when a preference changes.
+ */
+data class SettingsSnapshot(
+    val activeServerId: Int,
+    val maxBitRateWifi: Int,
+    val maxBitRateMobile: Int,
+    val minBitRate: Int,
+    val preloadCount: Int,
+    val cacheSizeMB: Int,
+    val bufferLength: Int,
+    val directoryCacheTime: Int,
+    val viewRefreshInterval: Int,
+    val networkTimeout: Int,
+    val isWifiRequiredForDownload: Boolean,
+    val isScreenLitOnDownload: Boolean,
+    val isGaplessPlaybackEnabled: Boolean,
+    val isLockScreenEnabled: Boolean,
+    val isScrobblingEnabled: Boolean,
+    val isServerScalingEnabled: Boolean,
+    val isAdaptiveBitRateEnabled: Boolean
+) {
+    companion object {
+        /**
+         * Parses the settings from the shared preferences
+         */
+        @JvmStatic
+        fun read(preferences: SharedPreferences): SettingsSnapshot {
+            val preloadCount = preferences.parseInt(Constants.PREFERENCES_KEY_PRELOAD_COUNT, "-1")
+            val cacheSize = preferences.parseInt(Constants.PREFERENCES_KEY_CACHE_SIZE, "-1")
+
+            return SettingsSnapshot(
+                activeServerId = preferences.getInt(Constants.PREFERENCES_KEY_SERVER_INSTANCE, -1),
+                maxBitRateWifi = preferences.parseInt(
+                    Constants.PREFERENCES_KEY_MAX_BITRATE_WIFI, "0"
+                ),
+                maxBitRateMobile = preferences.parseInt(
+                    Constants.PREFERENCES_KEY_MAX_BITRATE_MOBILE, "0"
+                ),
+                minBitRate = preferences.parseInt(Constants.PREFERENCES_KEY_MIN_BITRATE, "64"),
+                preloadCount = if (preloadCount == -1) Int.MAX_VALUE else preloadCount,
+                cacheSizeMB = if (cacheSize == -1) Int.MAX_VALUE else cacheSize,
+                bufferLength = preferences.parseInt(Constants.PREFERENCES_KEY_BUFFER_LENGTH, "5"),
+                directoryCacheTime = preferences.parseInt(
+                    Constants.PREFERENCES_KEY_DIRECTORY_CACHE_TIME, "300"
+                ),
+                viewRefreshInterval = preferences.parseInt(
+                    Constants.PREFERENCES_KEY_VIEW_REFRESH, "1000"
+                ),
+                networkTimeout = preferences.parseInt(
+                    Constants.PREFERENCES_KEY_NETWORK_TIMEOUT, "15000"
+                ),
+                isWifiRequiredForDownload = preferences.getBoolean(
+                    Constants.PREFERENCES_KEY_WIFI_REQUIRED_FOR_DOWNLOAD, false
+                ),
+                isScreenLitOnDownload = preferences.getBoolean(
+                    Constants.PREFERENCES_KEY_SCREEN_LIT_ON_DOWNLOAD, false
+                ),
+                isGaplessPlaybackEnabled = preferences.getBoolean(
+                    Constants.PREFERENCES_KEY_GAPLESS_PLAYBACK, false
+                ),
+                isLockScreenEnabled = preferences.getBoolean(
+                    Constants.PREFERENCES_KEY_SHOW_LOCK_SCREEN_CONTROLS, false
+                ),
+                isScrobblingEnabled = preferences.getBoolean(
+                    Constants.PREFERENCES_KEY_SCROBBLE, false
+                ),
+                isServerScalingEnabled = preferences.getBoolean(
+                    Constants.PREFERENCES_KEY_SERVER_SCALING, false
+                ),
+                isAdaptiveBitRateEnabled = preferences.getBoolean(
+                    Constants.PREFERENCES_KEY_ADAPTIVE_BITRATE, false
+                )
+            )
+        }
+
+        // Numeric preferences edited in a ListPreference are stored as strings
+        private fun SharedPreferences.parseInt(key: String, defaultValue: String): Int {
+            return Integer.parseInt(getString(key, defaultValue) ?: defaultValue)
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package org.moire.ultrasonic.util
+
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ScheduledThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+
+private const val IO_THREADS = 8
+private const val IO_QUEUE_LIMIT = 256
+private const val TRANSFER_THREADS = 12
+private const val TRANSFER_QUEUE_LIMIT = 512
+private const val DEFER_DELAY_MILLIS = 250L
+
+/**
+ * The shared thread pools of the application. Work should be submitted to one of these
+ * instead of starting new Threads, so the number of threads stays bounded.
+ */
+object TaskExecutors {
+    /**
+     * Short blocking operations, e.g. server requests and file access
+     */
+    @JvmField
+    val io = InstrumentedExecutor("IO", IO_THREADS, IO_QUEUE_LIMIT)
+
+    /**
+     * Long running transfers, e.g. downloads and streaming to the media player.
+     * Kept apart from [io] so long transfers can't delay short requests.
+     */
+    @JvmField
+    val transfer = InstrumentedExecutor("Transfer", TRANSFER_THREADS, TRANSFER_QUEUE_LIMIT)
+
+    /**
+     * Player commands, executed one at a time in the order they were submitted.
+     * The queue is unbounded, a player command is never dropped.
+     */
+    @JvmField
+    val playerControl = InstrumentedExecutor("PlayerControl", 1, Int.MAX_VALUE)
+
+    /**
+     * Periodic and delayed checks, which must return quickly
+     */
+    @JvmField
+    val scheduler: ScheduledExecutorService = ScheduledThreadPoolExecutor(1) { runnable ->
+        Thread(runnable, "Scheduler").apply { isDaemon = true }
+    }
+
+    /**
+     * Creates a pool for work which must be executed one task at a time, in the order it was
+     * submitted. Its thread is named after the pool and stops when the pool is idle.
+     */
+    @JvmStatic
+    fun newSerialExecutor(name: String) = InstrumentedExecutor(name, 1, Int.MAX_VALUE)
+
+    /**
+     * Executes the task on the pool, or submits it again after a short delay while the pool is
+     * full. For work which mustn't be dropped, e.g. a change requested by the user.
+     * The task is never run on the calling thread.
+     */
+    @JvmStatic
+    fun executeOrDefer(executor: InstrumentedExecutor, task: Runnable) {
+        if (executor.tryExecute(task)) return
+        scheduler.schedule(
+            Runnable { executeOrDefer(executor, task) },
+            DEFER_DELAY_MILLIS,
+            TimeUnit.MILLISECONDS
+        )
+    }
+
+    /**
+     * Returns the counters of all pools in a readable form, for diagnostics
+     */
+    @JvmStatic
+    fun getStatistics(): String {
+        return listOf(io, transfer, playerControl).joinToString("\n") { it.getStatistics() }
+    }
+}
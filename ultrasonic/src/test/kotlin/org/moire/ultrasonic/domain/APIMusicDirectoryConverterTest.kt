@@ -3,6 +3,9 @@
 package org.moire.ultrasonic.domain
 
 import java.util.Calendar
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
 import org.amshove.kluent.`should be equal to`
 import org.amshove.kluent.`should equal`
 import org.junit.Test
@@ -104,4 +107,31 @@ class APIMusicDirectoryConverterTest {
             entry `should equal` entitiesList[index].toDomainEntity()
         }
     }
+
+    @Test
+    fun `Should convert podcast episodes lists concurrently`() {
+        val threadsCount = 8
+        val episodes = (0 until 5000).map {
+            MusicDirectoryChild(
+                id = "$it", streamId = "stream-$it",
+                publishDate = Calendar.getInstance().apply {
+                    timeInMillis = it * 3_600_000L * 7
+                }
+            )
+        }
+        val expectedDates = episodes.map { dateFormat.format(it.publishDate!!.time) }
+        val executor = Executors.newFixedThreadPool(threadsCount)
+
+        try {
+            val results = executor.invokeAll(
+                (0 until threadsCount).map {
+                    Callable { episodes.toDomainEntityList().map { entry -> entry.artist } }
+                }
+            )
+
+            results.forEach { it.get(1, TimeUnit.MINUTES) `should equal` expectedDates }
+        } finally {
+            executor.shutdownNow()
+        }
+    }
 }
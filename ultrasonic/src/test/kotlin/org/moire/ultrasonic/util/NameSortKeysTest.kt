@@ -0,0 +1,45 @@
+@file:Suppress("IllegalIdentifier")
+
+package org.moire.ultrasonic.util
+
+import org.amshove.kluent.`should be equal to`
+import org.amshove.kluent.`should equal`
+import org.junit.Test
+import org.moire.ultrasonic.domain.Artist
+
+/**
+ * Unit tests for [NameSortKeys].
+ */
+class NameSortKeysTest {
+    @Test
+    fun `Should strip ignored article from name`() {
+        val sortKeys = NameSortKeys.forArticles("The Los")
+
+        sortKeys.getSortName("The Beatles") `should be equal to` "Beatles"
+        sortKeys.getSortName("los Lobos") `should be equal to` "Lobos"
+        sortKeys.getSortName("Theatre") `should be equal to` "Theatre"
+        sortKeys.getSortName("The") `should be equal to` "The"
+    }
+
+    @Test
+    fun `Should sort artists ignoring articles`() {
+        val sortKeys = NameSortKeys.forArticles("The El La Los Las Le Les")
+        val artists = listOf(
+            Artist(id = "1", name = "The Police"),
+            Artist(id = "2", name = "ABBA"),
+            Artist(id = "3", name = "The Beatles"),
+            Artist(id = "4", name = "Oasis")
+        )
+
+        val sortedArtists = sortKeys.sortArtists(artists)
+
+        sortedArtists.map { it.id } `should equal` listOf("2", "3", "4", "1")
+    }
+
+    @Test
+    fun `Should use default articles when none are given`() {
+        val sortKeys = NameSortKeys.forArticles(null)
+
+        sortKeys.getSortName("Les Négresses Vertes") `should be equal to` "Négresses Vertes"
+    }
+}
@@ -0,0 +1,58 @@
+@file:Suppress("IllegalIdentifier")
+
+package org.moire.ultrasonic.util
+
+import android.content.SharedPreferences
+import com.nhaarman.mockito_kotlin.anyOrNull
+import com.nhaarman.mockito_kotlin.doReturn
+import com.nhaarman.mockito_kotlin.mock
+import com.nhaarman.mockito_kotlin.whenever
+import org.amshove.kluent.`should be equal to`
+import org.junit.Test
+import org.mockito.ArgumentMatchers.anyBoolean
+import org.mockito.ArgumentMatchers.anyInt
+import org.mockito.ArgumentMatchers.anyString
+
+/**
+ * Unit tests for [SettingsSnapshot].
+ */
+class SettingsSnapshotTest {
+    private val preferences = mock<SharedPreferences>()
+
+    @Test
+    fun `Should use defaults for missing preferences`() {
+        doReturn(-1).whenever(preferences).getInt(anyString(), anyInt())
+        whenever(preferences.getString(anyString(), anyOrNull())).thenAnswer { it.arguments[1] }
+        whenever(preferences.getBoolean(anyString(), anyBoolean())).thenAnswer { it.arguments[1] }
+
+        val settings = SettingsSnapshot.read(preferences)
+
+        settings.activeServerId `should be equal to` -1
+        settings.maxBitRateWifi `should be equal to` 0
+        settings.preloadCount `should be equal to` Int.MAX_VALUE
+        settings.cacheSizeMB `should be equal to` Int.MAX_VALUE
+        settings.bufferLength `should be equal to` 5
+        settings.directoryCacheTime `should be equal to` 300
+        settings.viewRefreshInterval `should be equal to` 1000
+        settings.isWifiRequiredForDownload `should be equal to` false
+    }
+
+    @Test
+    fun `Should parse numeric preferences stored as strings`() {
+        doReturn(2).whenever(preferences).getInt(anyString(), anyInt())
+        whenever(preferences.getString(anyString(), anyOrNull())).thenAnswer { it.arguments[1] }
+        doReturn("320").whenever(preferences)
+            .getString(Constants.PREFERENCES_KEY_MAX_BITRATE_WIFI, "0")
+        doReturn("3").whenever(preferences)
+            .getString(Constants.PREFERENCES_KEY_PRELOAD_COUNT, "-1")
+        doReturn(true).whenever(preferences).getBoolean(anyString(), anyBoolean())
+
+        val settings = SettingsSnapshot.read(preferences)
+
+        settings.activeServerId `should be equal to` 2
+        settings.maxBitRateWifi `should be equal to` 320
+        settings.maxBitRateMobile `should be equal to` 0
+        settings.preloadCount `should be equal to` 3
+        settings.isGaplessPlaybackEnabled `should be equal to` true
+    }
+}